@@ -0,0 +1,201 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the CPU cost of writing the body of each endpoint through {@link CompressingOutputStream}, with the default
+ * threshold of {@link CompressionInterceptor}, against writing it as is. The bytes sent are reported by the
+ * <code>bodyBytes</code> and <code>sentBytes</code> counters, whose ratio is the compression ratio.
+ * <p>
+ * The bodies are synthetic but have the shape and size of real responses. The zip payload is random, like the
+ * entries of an archive, and shows why archives are not compressed again.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CompressionBenchmark
+{
+   private static final int THRESHOLD = 1024;
+
+   /**
+    * Response bodies of the Launchpad endpoints
+    */
+   public enum Payload
+   {
+      /**
+       * <code>GET /commands/{commandName}</code>, a wizard with about 20 inputs and their value choices
+       */
+      METADATA
+      {
+         @Override
+         byte[] create(Random random)
+         {
+            return json(20, 8);
+         }
+      },
+      /**
+       * <code>POST /commands/{commandName}/validate</code>, the inputs of one step and a message
+       */
+      VALIDATION
+      {
+         @Override
+         byte[] create(Random random)
+         {
+            return json(4, 0);
+         }
+      },
+      /**
+       * <code>POST /commands/{commandName}/next</code>, the inputs of the next step
+       */
+      NEXT_STEP
+      {
+         @Override
+         byte[] create(Random random)
+         {
+            return json(8, 4);
+         }
+      },
+      /**
+       * <code>POST /commands/{commandName}/zip</code>, already compressed
+       */
+      ZIP
+      {
+         @Override
+         byte[] create(Random random)
+         {
+            byte[] body = new byte[150 * 1024];
+            random.nextBytes(body);
+            return body;
+         }
+      };
+
+      abstract byte[] create(Random random);
+
+      private static byte[] json(int inputs, int choices)
+      {
+         StringBuilder json = new StringBuilder("{\"metadata\":{\"deprecated\":false,\"category\":\"Openshift.io\","
+                  + "\"name\":\"Launchpad: New Project\",\"description\":\"Generate your project from a booster\"},"
+                  + "\"state\":{\"valid\":true,\"canExecute\":false,\"wizard\":true,\"canMoveToNextStep\":true,"
+                  + "\"canMoveToPreviousStep\":false},\"messages\":[],\"inputs\":[");
+         for (int i = 0; i < inputs; i++)
+         {
+            json.append(i == 0 ? "" : ",").append("{\"name\":\"input").append(i)
+                     .append("\",\"shortName\":\" \",\"valueType\":\"java.lang.String\",\"inputType\":")
+                     .append(choices > 0 ? "\"org.jboss.forge.inputType.DROPDOWN\"" : "\"org.jboss.forge.inputType.DEFAULT\"")
+                     .append(",\"enabled\":true,\"required\":true,\"deprecated\":false,\"label\":\"Input ").append(i)
+                     .append("\",\"description\":\"The value of input ").append(i).append("\",\"valueChoices\":[");
+            for (int c = 0; c < choices; c++)
+            {
+               json.append(c == 0 ? "" : ",").append("{\"id\":\"choice").append(c)
+                        .append("\",\"description\":\"Choice ").append(c).append(" of input ").append(i).append("\"}");
+            }
+            json.append("],\"class\":\"UISelectOne\",\"value\":\"choice0\"}");
+         }
+         return json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+      }
+   }
+
+   /**
+    * The body and sent bytes, summed over an iteration
+    */
+   @State(Scope.Thread)
+   @AuxCounters(AuxCounters.Type.EVENTS)
+   public static class Bytes
+   {
+      public long bodyBytes;
+      public long sentBytes;
+
+      @Setup(Level.Iteration)
+      public void reset()
+      {
+         bodyBytes = 0;
+         sentBytes = 0;
+      }
+   }
+
+   @Param
+   private Payload payload;
+
+   @Param({ "1", "6", "9" })
+   private int level;
+
+   private byte[] body;
+
+   private final OutputStream discard = new OutputStream()
+   {
+      @Override
+      public void write(int b)
+      {
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len)
+      {
+      }
+   };
+
+   @Setup
+   public void setup()
+   {
+      body = payload.create(new Random(42));
+   }
+
+   @Benchmark
+   public void identity(Bytes bytes) throws IOException
+   {
+      discard.write(body);
+      bytes.bodyBytes += body.length;
+      bytes.sentBytes += body.length;
+   }
+
+   @Benchmark
+   public void gzip(Bytes bytes) throws IOException
+   {
+      CompressingOutputStream stream = new CompressingOutputStream(discard, THRESHOLD, level, () -> {
+      });
+      // Written in chunks, as a message body writer does
+      for (int off = 0; off < body.length; off += 8192)
+      {
+         stream.write(body, off, Math.min(8192, body.length - off));
+      }
+      stream.finish();
+      bytes.bodyBytes += stream.getUncompressedBytes();
+      bytes.sentBytes += stream.getCompressedBytes();
+   }
+}
@@ -0,0 +1,127 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.rest;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link CorsFilter} configured as in {@link RestApplication}, for a simple and a preflight request. The
+ * request and response contexts are dynamic proxies backed by maps.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CorsFilterBenchmark
+{
+   private static final String ORIGIN = "https://launch.openshift.io";
+
+   private CorsFilter corsFilter;
+   private ContainerRequestContext request;
+   private ContainerRequestContext preflight;
+   private ContainerResponseContext response;
+   private Response aborted;
+
+   @Setup
+   public void setup()
+   {
+      corsFilter = new CorsFilter();
+      corsFilter.getAllowedOrigins().add("*");
+      corsFilter.setExposedHeaders("Content-Disposition");
+
+      Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+      headers.put(CorsFilter.ORIGIN, ORIGIN);
+      request = createRequest("POST", headers);
+
+      Map<String, String> preflightHeaders = new TreeMap<>(headers);
+      preflightHeaders.put(CorsFilter.ACCESS_CONTROL_REQUEST_METHOD, "POST");
+      preflightHeaders.put(CorsFilter.ACCESS_CONTROL_REQUEST_HEADERS, "Content-Type, Authorization");
+      preflight = createRequest("OPTIONS", preflightHeaders);
+
+      MultivaluedMap<String, Object> responseHeaders = new MultivaluedHashMap<>();
+      response = (ContainerResponseContext) Proxy.newProxyInstance(getClass().getClassLoader(),
+               new Class<?>[] { ContainerResponseContext.class }, (proxy, method, args) -> {
+                  if ("getHeaders".equals(method.getName()))
+                  {
+                     return responseHeaders;
+                  }
+                  throw new UnsupportedOperationException(method.getName());
+               });
+   }
+
+   @Benchmark
+   public ContainerResponseContext simpleRequest() throws IOException
+   {
+      corsFilter.filter(request);
+      corsFilter.filter(request, response);
+      return response;
+   }
+
+   @Benchmark
+   public Response preflightRequest() throws IOException
+   {
+      corsFilter.filter(preflight);
+      return aborted;
+   }
+
+   private ContainerRequestContext createRequest(String httpMethod, Map<String, String> headers)
+   {
+      Map<String, Object> properties = new TreeMap<>();
+      return (ContainerRequestContext) Proxy.newProxyInstance(getClass().getClassLoader(),
+               new Class<?>[] { ContainerRequestContext.class }, (proxy, method, args) -> {
+                  switch (method.getName())
+                  {
+                  case "getHeaderString":
+                     return headers.get(args[0]);
+                  case "getMethod":
+                     return httpMethod;
+                  case "getProperty":
+                     return properties.get(args[0]);
+                  case "setProperty":
+                     properties.put((String) args[0], args[1]);
+                     return null;
+                  case "abortWith":
+                     aborted = (Response) args[0];
+                     return null;
+                  default:
+                     throw new UnsupportedOperationException(method.getName());
+                  }
+               });
+   }
+}
@@ -0,0 +1,61 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.rest;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.json.JsonObject;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.openshift.launchpad.backend.util.JsonBuilder;
+
+/**
+ * Measures {@link LaunchpadResource#findArtifactId(JsonObject)} on the inputs of a new project
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class FindArtifactIdBenchmark
+{
+   private final JsonObject content = new JsonBuilder().createJson(3)
+            .addInput("type", "Spring Boot - HTTP")
+            .addInput("topLevelPackage", "com.example")
+            .addInput("version", "1.0.0-SNAPSHOT")
+            .addInput("groupId", "com.example")
+            .addInput("gitHubRepositoryName", "demo")
+            .addInput("gitHubRepositoryDescription", "A demo project")
+            .addInput("dependencies", "web", "actuator", "jpa", "h2")
+            .addInput("named", "demo")
+            .build();
+
+   @Benchmark
+   public String findArtifactId()
+   {
+      return LaunchpadResource.findArtifactId(content);
+   }
+}
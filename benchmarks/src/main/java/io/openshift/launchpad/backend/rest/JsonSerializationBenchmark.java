@@ -0,0 +1,194 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonBuilderFactory;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonWriter;
+import javax.ws.rs.core.MediaType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures building and writing the JSON response of <code>getCommandInfo</code> and <code>nextStep</code>, through
+ * the static {@link Json} methods and a {@link JsonWriter} as the container's JSON-P provider does, against the shared
+ * factories of {@link LaunchpadResource} and {@link JsonStructureWriter}.
+ * <p>
+ * Run with <code>-prof gc</code>: <code>gc.alloc.rate.norm</code> gives the bytes allocated per request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class JsonSerializationBenchmark
+{
+   /**
+    * The shape of the response of each endpoint
+    */
+   public enum Response
+   {
+      /**
+       * <code>GET /commands/{commandName}</code>, a wizard with about 20 inputs and their value choices
+       */
+      COMMAND_INFO(20, 8, false),
+      /**
+       * <code>POST /commands/{commandName}/next</code>, the validation and inputs of the next step
+       */
+      NEXT_STEP(8, 4, true);
+
+      private final int inputs;
+      private final int choices;
+      private final boolean messages;
+
+      Response(int inputs, int choices, boolean messages)
+      {
+         this.inputs = inputs;
+         this.choices = choices;
+         this.messages = messages;
+      }
+
+      JsonObject build(JsonBuilderFactory json)
+      {
+         JsonObjectBuilder builder = json.createObjectBuilder();
+         if (messages)
+         {
+            builder.add("messages", json.createArrayBuilder().add(json.createObjectBuilder()
+                     .add("severity", "WARN")
+                     .add("description", "The project name should be lower case")
+                     .add("input", "named")));
+         }
+         builder.add("metadata", json.createObjectBuilder()
+                  .add("deprecated", false)
+                  .add("category", "Openshift.io")
+                  .add("name", "Launchpad: New Project")
+                  .add("description", "Generate your project from a booster"));
+         builder.add("state", json.createObjectBuilder()
+                  .add("valid", true)
+                  .add("canExecute", false)
+                  .add("wizard", true)
+                  .add("canMoveToNextStep", true)
+                  .add("canMoveToPreviousStep", messages));
+         JsonArrayBuilder inputArray = json.createArrayBuilder();
+         for (int i = 0; i < inputs; i++)
+         {
+            JsonArrayBuilder valueChoices = json.createArrayBuilder();
+            for (int c = 0; c < choices; c++)
+            {
+               valueChoices.add(json.createObjectBuilder()
+                        .add("id", "choice" + c)
+                        .add("description", "Choice " + c + " of input " + i));
+            }
+            inputArray.add(json.createObjectBuilder()
+                     .add("name", "input" + i)
+                     .add("shortName", " ")
+                     .add("valueType", "java.lang.String")
+                     .add("inputType", choices > 0 ? "org.jboss.forge.inputType.DROPDOWN"
+                              : "org.jboss.forge.inputType.DEFAULT")
+                     .add("enabled", true)
+                     .add("required", true)
+                     .add("deprecated", false)
+                     .add("label", "Input " + i)
+                     .add("description", "The value of input " + i)
+                     .add("valueChoices", valueChoices)
+                     .add("class", "UISelectOne")
+                     .add("value", "choice0"));
+         }
+         return builder.add("inputs", inputArray).build();
+      }
+   }
+
+   /**
+    * Creates every builder with the static {@link Json} methods, which look up the JSON provider each time
+    */
+   private static final JsonBuilderFactory LOOKUP = new JsonBuilderFactory()
+   {
+      @Override
+      public JsonObjectBuilder createObjectBuilder()
+      {
+         return Json.createObjectBuilder();
+      }
+
+      @Override
+      public JsonArrayBuilder createArrayBuilder()
+      {
+         return Json.createArrayBuilder();
+      }
+
+      @Override
+      public java.util.Map<String, ?> getConfigInUse()
+      {
+         return Collections.emptyMap();
+      }
+   };
+
+   private static final JsonBuilderFactory SHARED = Json.createBuilderFactory(Collections.emptyMap());
+
+   @Param
+   private Response response;
+
+   private final JsonStructureWriter writer = new JsonStructureWriter();
+
+   private final OutputStream discard = new OutputStream()
+   {
+      @Override
+      public void write(int b)
+      {
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len)
+      {
+      }
+   };
+
+   @Benchmark
+   public void providerLookup()
+   {
+      JsonObject object = response.build(LOOKUP);
+      try (JsonWriter jsonWriter = Json.createWriterFactory(null).createWriter(discard, StandardCharsets.UTF_8))
+      {
+         jsonWriter.write(object);
+      }
+   }
+
+   @Benchmark
+   public void sharedFactories() throws IOException
+   {
+      JsonObject object = response.build(SHARED);
+      writer.writeTo(object, JsonObject.class, JsonObject.class, null, MediaType.APPLICATION_JSON_TYPE, null,
+               discard);
+   }
+}
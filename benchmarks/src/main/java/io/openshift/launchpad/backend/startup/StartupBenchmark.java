@@ -0,0 +1,186 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.startup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time from the start of the Swarm uberjar to the first successful <code>/launchpad/version</code> and
+ * to the first generated zip, with and without the class data sharing archive created by the <code>cds</code>
+ * profile.
+ * <p>
+ * Process startup does not fit JMH, so this is a plain program:
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar io.openshift.launchpad.backend.startup.StartupBenchmark \
+ *    ../target/launchpad-backend-swarm.jar [runs]
+ * </pre>
+ *
+ * The archive is looked up next to the jar, and the jar is started from its directory as in the deploy image. The
+ * output of the last start is written to <code>startup-benchmark.log</code>, next to the jar.
+ */
+public class StartupBenchmark
+{
+   private static final int PORT = 18081;
+   private static final long TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(5);
+   private static final String ZIP_FORM = "stepIndex=3&named=demo&groupId=com.example&artifactId=demo"
+            + "&version=1.0.0-SNAPSHOT";
+
+   public static void main(String[] args) throws Exception
+   {
+      if (args.length < 1)
+      {
+         System.err.println("Usage: StartupBenchmark <launchpad-backend-swarm.jar> [runs]");
+         System.exit(1);
+      }
+      Path jar = Paths.get(args[0]).toAbsolutePath();
+      int runs = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+      String name = jar.getFileName().toString();
+      Path archive = jar.resolveSibling(name.substring(0, name.lastIndexOf('.')) + ".jsa");
+
+      List<String> withoutArchive = Arrays.asList("-Xshare:auto");
+      report("without archive", jar, withoutArchive, runs);
+      if (Files.exists(archive))
+      {
+         List<String> withArchive = Arrays.asList("-XX:SharedArchiveFile=" + archive.getFileName(), "-Xshare:auto");
+         report("with archive", jar, withArchive, runs);
+      }
+      else
+      {
+         System.out.println("No archive found at " + archive + ", build with -Pcds to compare");
+      }
+   }
+
+   private static void report(String label, Path jar, List<String> options, int runs) throws Exception
+   {
+      long versionSum = 0;
+      long zipSum = 0;
+      for (int run = 0; run < runs; run++)
+      {
+         long[] result = run(jar, options);
+         System.out.printf("%s, run %d: version %dms, zip %dms%n", label, run + 1, result[0], result[1]);
+         versionSum += result[0];
+         zipSum += result[1];
+      }
+      System.out.printf("%s, average: version %dms, zip %dms%n", label, versionSum / runs, zipSum / runs);
+   }
+
+   /**
+    * @return the milliseconds to the first successful version and zip requests
+    */
+   private static long[] run(Path jar, List<String> options) throws Exception
+   {
+      List<String> command = new ArrayList<>();
+      command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+      command.addAll(options);
+      command.add("-Dswarm.http.port=" + PORT);
+      command.add("-jar");
+      command.add(jar.getFileName().toString());
+      ProcessBuilder builder = new ProcessBuilder(command).directory(jar.getParent().toFile())
+               .redirectErrorStream(true).redirectOutput(jar.resolveSibling("startup-benchmark.log").toFile());
+      long start = System.nanoTime();
+      Process process = builder.start();
+      try
+      {
+         long version = await(process, start, () -> request("GET", "/launchpad/version", null));
+         long zip = await(process, start,
+                  () -> request("POST", "/launchpad/commands/launchpad-new-project/zip", ZIP_FORM));
+         return new long[] { version, zip };
+      }
+      finally
+      {
+         process.destroy();
+         if (!process.waitFor(30, TimeUnit.SECONDS))
+         {
+            process.destroyForcibly().waitFor();
+         }
+      }
+   }
+
+   private static long await(Process process, long start, Request request) throws Exception
+   {
+      while (System.nanoTime() - start < TIMEOUT_NANOS)
+      {
+         if (!process.isAlive())
+         {
+            throw new IllegalStateException("The backend exited with " + process.exitValue());
+         }
+         if (request.succeeds())
+         {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+         }
+         Thread.sleep(20);
+      }
+      throw new IllegalStateException("The backend did not answer in time");
+   }
+
+   private static boolean request(String method, String path, String form)
+   {
+      try
+      {
+         HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + PORT + path)
+                  .openConnection();
+         connection.setRequestMethod(method);
+         if (form != null)
+         {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+            try (OutputStream os = connection.getOutputStream())
+            {
+               os.write(form.getBytes(StandardCharsets.UTF_8));
+            }
+         }
+         int status = connection.getResponseCode();
+         if (status == 200)
+         {
+            // The zip is generated while the response is written
+            try (InputStream is = connection.getInputStream())
+            {
+               byte[] buffer = new byte[8192];
+               while (is.read(buffer) != -1)
+               {
+                  // Discard
+               }
+            }
+         }
+         connection.disconnect();
+         return status == 200;
+      }
+      catch (IOException e)
+      {
+         // Not listening yet
+         return false;
+      }
+   }
+
+   @FunctionalInterface
+   private interface Request
+   {
+      boolean succeeds();
+   }
+}
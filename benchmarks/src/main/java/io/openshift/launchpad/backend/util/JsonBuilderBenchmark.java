@@ -0,0 +1,77 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.json.JsonObject;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the conversion of the zip download form to the JSON inputs of a command, as done by
+ * <code>LaunchpadResource.downloadZip</code>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class JsonBuilderBenchmark
+{
+   /**
+    * The form submitted by the front-end for a new project
+    */
+   static final Map<String, List<String>> FORM = new LinkedHashMap<>();
+
+   static
+   {
+      FORM.put("type", Collections.singletonList("Spring Boot - HTTP"));
+      FORM.put("named", Collections.singletonList("demo"));
+      FORM.put("topLevelPackage", Collections.singletonList("com.example"));
+      FORM.put("version", Collections.singletonList("1.0.0-SNAPSHOT"));
+      FORM.put("groupId", Collections.singletonList("com.example"));
+      FORM.put("artifactId", Collections.singletonList("demo"));
+      FORM.put("gitHubRepositoryName", Collections.singletonList("demo"));
+      FORM.put("gitHubRepositoryDescription", Collections.singletonList("A demo project"));
+      FORM.put("dependencies", Arrays.asList("web", "actuator", "jpa", "h2"));
+   }
+
+   @Benchmark
+   public JsonObject formToJson()
+   {
+      JsonBuilder jsonBuilder = new JsonBuilder().createJson(3);
+      for (Map.Entry<String, List<String>> entry : FORM.entrySet())
+      {
+         jsonBuilder.addInput(entry.getKey(), entry.getValue());
+      }
+      return jsonBuilder.build();
+   }
+}
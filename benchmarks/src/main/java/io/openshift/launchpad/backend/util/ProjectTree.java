@@ -0,0 +1,142 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Generated project trees of realistic sizes. The content is deterministic so that results can be compared between
+ * runs.
+ */
+public enum ProjectTree
+{
+   /**
+    * The layout and file sizes of a typical Spring Boot booster, about 30 files and 150KB
+    */
+   BOOSTER
+   {
+      @Override
+      void populate(Path root, Random random) throws IOException
+      {
+         text(root.resolve("pom.xml"), 6 * 1024, random);
+         text(root.resolve("README.adoc"), 4 * 1024, random);
+         text(root.resolve("mvnw"), 7 * 1024, random);
+         text(root.resolve("mvnw.cmd"), 5 * 1024, random);
+         text(root.resolve(".gitignore"), 200, random);
+         binary(root.resolve(".mvn/wrapper/maven-wrapper.jar"), 48 * 1024, random);
+         text(root.resolve(".mvn/wrapper/maven-wrapper.properties"), 120, random);
+         text(root.resolve(".openshiftio/application.yaml"), 3 * 1024, random);
+         text(root.resolve(".openshiftio/service.yaml"), 1024, random);
+         Path sources = root.resolve("src/main/java/io/openshift/booster");
+         text(sources.resolve("BoosterApplication.java"), 1200, random);
+         text(sources.resolve("service/Greeting.java"), 1100, random);
+         text(sources.resolve("service/GreetingController.java"), 1800, random);
+         text(sources.resolve("service/GreetingProperties.java"), 1100, random);
+         Path resources = root.resolve("src/main/resources");
+         text(resources.resolve("application.properties"), 300, random);
+         text(resources.resolve("application-local.properties"), 200, random);
+         text(resources.resolve("static/index.html"), 6 * 1024, random);
+         binary(resources.resolve("static/favicon.ico"), 5 * 1024, random);
+         Path fabric8 = root.resolve("src/main/fabric8");
+         text(fabric8.resolve("deployment.yml"), 900, random);
+         text(fabric8.resolve("route.yml"), 200, random);
+         text(fabric8.resolve("svc.yml"), 250, random);
+         Path tests = root.resolve("src/test/java/io/openshift/booster");
+         text(tests.resolve("AbstractBoosterApplicationTest.java"), 2 * 1024, random);
+         text(tests.resolve("LocalTest.java"), 1200, random);
+         text(tests.resolve("OpenShiftIT.java"), 1500, random);
+         text(root.resolve("src/test/resources/arquillian.xml"), 700, random);
+         text(root.resolve("licenses/licenses.xml"), 10 * 1024, random);
+         text(root.resolve("licenses/licenses.html"), 12 * 1024, random);
+         text(root.resolve("licenses/apache_software_license_2.0.txt"), 11 * 1024, random);
+      }
+   },
+   /**
+    * A large project of 5000 source files spread over 50 packages
+    */
+   LARGE
+   {
+      @Override
+      void populate(Path root, Random random) throws IOException
+      {
+         text(root.resolve("pom.xml"), 6 * 1024, random);
+         for (int pkg = 0; pkg < 50; pkg++)
+         {
+            Path dir = root.resolve("src/main/java/io/openshift/large/pkg" + pkg);
+            for (int file = 0; file < 100; file++)
+            {
+               text(dir.resolve("Class" + file + ".java"), 512 + random.nextInt(8 * 1024), random);
+            }
+         }
+      }
+   };
+
+   private static final String[] LINES = {
+            "package io.openshift.booster;\n",
+            "import java.util.concurrent.atomic.AtomicLong;\n",
+            "   private final AtomicLong counter = new AtomicLong();\n",
+            "   @RequestMapping(\"/api/greeting\")\n",
+            "   public Greeting greeting(@RequestParam(value = \"name\", defaultValue = \"World\") String name)\n",
+            "      return new Greeting(counter.incrementAndGet(), String.format(template, name));\n",
+            "      <groupId>org.springframework.boot</groupId>\n",
+            "      <artifactId>spring-boot-starter-web</artifactId>\n",
+            "  - apiVersion: v1\n    kind: Service\n",
+            "   }\n\n",
+            "}\n"
+   };
+
+   /**
+    * Creates the tree in a new temporary directory
+    *
+    * @return the project root
+    */
+   public Path create() throws IOException
+   {
+      Path root = Files.createTempDirectory("benchmark" + name());
+      populate(root, new Random(42));
+      return root;
+   }
+
+   abstract void populate(Path root, Random random) throws IOException;
+
+   private static void text(Path file, int size, Random random) throws IOException
+   {
+      StringBuilder content = new StringBuilder(size + 128);
+      while (content.length() < size)
+      {
+         content.append(LINES[random.nextInt(LINES.length)]);
+      }
+      content.setLength(size);
+      write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+   }
+
+   private static void binary(Path file, int size, Random random) throws IOException
+   {
+      byte[] content = new byte[size];
+      random.nextBytes(content);
+      write(file, content);
+   }
+
+   private static void write(Path file, byte[] content) throws IOException
+   {
+      Files.createDirectories(file.getParent());
+      Files.write(file, content);
+   }
+}
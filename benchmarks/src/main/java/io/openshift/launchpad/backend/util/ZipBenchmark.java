@@ -0,0 +1,107 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link Paths#zipSequential(String, Path, OutputStream)} and {@link ParallelZip} writing a generated project
+ * to a discarding stream
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ZipBenchmark
+{
+   @Param
+   private ProjectTree tree;
+
+   private Path project;
+
+   @Setup(Level.Trial)
+   public void createProject() throws IOException
+   {
+      project = tree.create();
+   }
+
+   @TearDown(Level.Trial)
+   public void deleteProject() throws IOException
+   {
+      Paths.deleteDirectory(project);
+   }
+
+   @Benchmark
+   public long zipSequential() throws IOException
+   {
+      CountingOutputStream os = new CountingOutputStream();
+      Paths.zipSequential("demo", project, os);
+      return os.count;
+   }
+
+   @Benchmark
+   public long zipParallel() throws IOException
+   {
+      CountingOutputStream os = new CountingOutputStream();
+      ParallelZip.getDefault().zip("demo", project, os);
+      return os.count;
+   }
+
+   @Benchmark
+   public byte[] zipToByteArray() throws IOException
+   {
+      return Paths.zip("demo", project);
+   }
+
+   /**
+    * Discards the archive, keeping only its size
+    */
+   private static class CountingOutputStream extends OutputStream
+   {
+      private long count;
+
+      @Override
+      public void write(int b)
+      {
+         count++;
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len)
+      {
+         count += len;
+      }
+   }
+}
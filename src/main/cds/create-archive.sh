@@ -0,0 +1,58 @@
+#!/bin/bash
+#
+# Creates a class data sharing archive for the Swarm uberjar: starts the jar once, exercises the version, metadata
+# and zip endpoints so that the classes they need are loaded, then dumps the loaded classes to an archive.
+#
+# The archive is only valid for the JVM build that created it, so run this with the JDK of the deploy image (11 or
+# later). Usage: create-archive.sh <jar> <archive> [port], the archive being created next to the jar.
+#
+
+set -e
+
+# The class path recorded in the archive must match the one of launch.sh, which starts the jar from its directory
+cd "$(dirname "$1")"
+JAR=$(basename "$1")
+ARCHIVE=$(basename "$2")
+PORT=${3:-18080}
+JAVA=${JAVA_HOME:+$JAVA_HOME/bin/}java
+CLASS_LIST=${ARCHIVE%.*}.classlist
+BASE_URL=http://localhost:${PORT}
+TIMEOUT=${CDS_TRAINING_TIMEOUT:-300}
+
+rm -f "${ARCHIVE}" "${CLASS_LIST}"
+
+echo "Training start of ${JAR} on port ${PORT}"
+"${JAVA}" -Xshare:off -XX:DumpLoadedClassList="${CLASS_LIST}" -Dswarm.http.port="${PORT}" -jar "${JAR}" &
+PID=$!
+trap 'kill ${PID} 2>/dev/null || true' EXIT
+
+# Ready once every command is warmed up
+for ((i = 0; i < TIMEOUT; i++)); do
+   if curl -sf "${BASE_URL}/health/ready" > /dev/null; then
+      break
+   fi
+   if ! kill -0 ${PID} 2>/dev/null; then
+      echo "The training start failed"
+      exit 1
+   fi
+   sleep 1
+done
+
+curl -sf "${BASE_URL}/launchpad/version" > /dev/null
+curl -sf "${BASE_URL}/launchpad/commands/launchpad-new-project" > /dev/null
+curl -sf -o /dev/null "${BASE_URL}/launchpad/commands/launchpad-new-project/zip" \
+   --data-urlencode "stepIndex=3" \
+   --data-urlencode "named=demo" \
+   --data-urlencode "groupId=com.example" \
+   --data-urlencode "artifactId=demo" \
+   --data-urlencode "version=1.0.0-SNAPSHOT" \
+   || echo "The training zip failed, its classes are not archived"
+
+# The class list is written as the classes are loaded
+kill ${PID}
+wait ${PID} || true
+trap - EXIT
+
+echo "Dumping $(wc -l < "${CLASS_LIST}") classes to ${ARCHIVE}"
+"${JAVA}" -Xshare:dump -XX:SharedClassListFile="${CLASS_LIST}" -XX:SharedArchiveFile="${ARCHIVE}" -cp "${JAR}"
+rm -f "${CLASS_LIST}"
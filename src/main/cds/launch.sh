@@ -0,0 +1,26 @@
+#!/bin/sh
+#
+# Starts the Swarm uberjar, with the class data sharing archive created by the cds profile when it is shipped next
+# to the jar. The archive is only used on JDK 11 or later, the JDKs the cds profile supports; older JVMs start without
+# it. -Xshare:auto falls back to loading the classes when the archive does not match the JVM.
+#
+cd "$(dirname "$0")"
+
+# Prints the feature release of the java on the path: 8 for 1.8.0_181, 11 for 11.0.2
+java_release() {
+   version=$(java -version 2>&1 | sed -n 's/.* version "\([^"]*\)".*/\1/p' | head -n 1)
+   case "$version" in
+      1.*) echo "$version" | cut -d. -f2 ;;
+      *) echo "$version" | cut -d. -f1 | cut -d- -f1 | cut -d+ -f1 ;;
+   esac
+}
+
+if [ -f launchpad-backend-swarm.jsa ]; then
+   release=$(java_release)
+   if [ "${release:-0}" -ge 11 ] 2>/dev/null; then
+      JAVA_OPTIONS="-XX:SharedArchiveFile=launchpad-backend-swarm.jsa -Xshare:auto ${JAVA_OPTIONS}"
+   else
+      echo "Not using launchpad-backend-swarm.jsa: it requires JDK 11 or later, found ${release:-unknown}" >&2
+   fi
+fi
+exec java ${JAVA_OPTIONS} -jar launchpad-backend-swarm.jar "$@"
@@ -17,10 +17,8 @@ package io.openshift.launchpad.backend;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.net.URISyntaxException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -35,6 +33,7 @@ import org.jboss.forge.furnace.repositories.AddonRepositoryMode;
 import org.jboss.forge.service.producer.FurnaceProducer;
 
 import io.openshift.launchpad.backend.event.FurnaceStartup;
+import io.openshift.launchpad.backend.startup.StartupMonitor;
 
 /**
  * Initializes Forge add-on repository
@@ -52,9 +51,14 @@ public class ForgeInitializer implements ServletContextListener
    @Inject
    Event<FurnaceStartup> event;
 
+   @Inject
+   StartupMonitor startupMonitor;
+
    @Override
    public void contextInitialized(ServletContextEvent sce)
    {
+      startupMonitor.recordMillis("jvm", ManagementFactory.getRuntimeMXBean().getUptime());
+      long phase = System.nanoTime();
       try
       {
          // Skip unnecessary build status checks in Forge
@@ -79,8 +83,11 @@ public class ForgeInitializer implements ServletContextListener
          furnaceProducer.setup(
                   Boolean.getBoolean("devMode") ? AddonRepositoryMode.MUTABLE : AddonRepositoryMode.IMMUTABLE,
                   repoDir);
+         phase = startupMonitor.record("furnace_setup", phase);
          furnaceProducer.start();
+         phase = startupMonitor.record("furnace_start", phase);
          event.fire(new FurnaceStartup());
+         startupMonitor.record("startup_observers", phase);
       }
       catch (URISyntaxException | IOException e)
       {
@@ -93,29 +100,6 @@ public class ForgeInitializer implements ServletContextListener
    {
    }
 
-   private static Path rootPath;
-
-   public static Path getRoot()
-   {
-      if (rootPath == null)
-      {
-         rootPath = Paths.get(System.getenv().getOrDefault("OPENSHIFT_TMP_DIR",
-                  "/tmp"), "workspace");
-         if (!Files.exists(rootPath))
-         {
-            try
-            {
-               Files.createDirectory(rootPath);
-            }
-            catch (IOException e)
-            {
-               e.printStackTrace();
-            }
-         }
-      }
-      return rootPath;
-   }
-
    /**
     * @return the version
     */
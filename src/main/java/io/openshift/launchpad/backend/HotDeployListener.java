@@ -4,16 +4,24 @@
  * Licensed under the Eclipse Public License version 1.0, available at
  * http://www.eclipse.org/legal/epl-v10.html
  */
-
 package io.openshift.launchpad.backend;
 
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Event;
 import javax.enterprise.event.Observes;
 import javax.inject.Inject;
 
 import org.jboss.forge.addon.manager.watch.AddonWatchService;
+import org.jboss.forge.furnace.addons.AddonRegistry;
+import org.jboss.forge.service.producer.FurnaceProducer;
 
+import io.openshift.launchpad.backend.event.AddonsRedeployed;
 import io.openshift.launchpad.backend.event.FurnaceStartup;
 
 /**
@@ -21,19 +29,62 @@ import io.openshift.launchpad.backend.event.FurnaceStartup;
  *
  * @author <a href="mailto:ggastald@redhat.com">George Gastaldi</a>
  */
+@ApplicationScoped
 public class HotDeployListener
 {
    private final static Logger log = Logger.getLogger(HotDeployListener.class.getName());
 
+   private static final long REGISTRY_CHECK_INTERVAL_SECONDS = 2;
+
    @Inject
    AddonWatchService addonWatchService;
 
+   @Inject
+   FurnaceProducer furnaceProducer;
+
+   @Inject
+   Event<AddonsRedeployed> redeployEvent;
+
+   @Resource
+   ManagedScheduledExecutorService scheduledExecutorService;
+
+   private volatile long registryVersion;
+
    void init(@Observes FurnaceStartup startup)
    {
       if (Boolean.getBoolean("devMode"))
       {
          addonWatchService.start();
          addonWatchService.getMonitoredAddons().forEach(addonId -> log.info("Monitoring " + addonId));
+         registryVersion = getAddonRegistry().getVersion();
+         scheduledExecutorService.scheduleWithFixedDelay(this::checkRegistryVersion,
+                  REGISTRY_CHECK_INTERVAL_SECONDS, REGISTRY_CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
+      }
+   }
+
+   /**
+    * Fires {@link AddonsRedeployed} when the addon registry changed since the last check
+    */
+   void checkRegistryVersion()
+   {
+      try
+      {
+         long version = getAddonRegistry().getVersion();
+         if (version != registryVersion)
+         {
+            registryVersion = version;
+            log.info("Addon registry changed, notifying observers");
+            redeployEvent.fire(new AddonsRedeployed());
+         }
       }
+      catch (Exception e)
+      {
+         log.log(Level.WARNING, "Error while checking the addon registry", e);
+      }
+   }
+
+   private AddonRegistry getAddonRegistry()
+   {
+      return furnaceProducer.getFurnace().getAddonRegistry();
    }
 }
@@ -0,0 +1,116 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.admission;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Adjusts the limit of a {@link ConcurrencyLimiter} from the observed latency, in the style of TCP congestion control
+ * (additive increase, multiplicative decrease).
+ * <p>
+ * While the latency stays under the target and the limit is in use, the limit grows by one for every <i>limit</i>
+ * samples. When a sample goes over the target, the limit is multiplied by the backoff ratio. Samples started before
+ * the last decrease are ignored for decreases, so that a single slow period is not counted several times.
+ */
+public class AdaptiveLimit
+{
+   private final ConcurrencyLimiter limiter;
+   private final long targetNanos;
+   private final int minLimit;
+   private final int maxLimit;
+   private final double backoff;
+   private final LongSupplier nanoClock;
+
+   private double estimate;
+   private long lastDecreaseNanos;
+
+   /**
+    * @param limiter the limiter whose limit is adjusted, starting from its current limit
+    * @param targetNanos the latency to stay under
+    * @param minLimit the lowest limit
+    * @param maxLimit the highest limit
+    * @param backoff the ratio applied to the limit when the latency goes over the target, eg. <code>0.9</code>
+    */
+   public AdaptiveLimit(ConcurrencyLimiter limiter, long targetNanos, int minLimit, int maxLimit, double backoff)
+   {
+      this(limiter, targetNanos, minLimit, maxLimit, backoff, System::nanoTime);
+   }
+
+   /**
+    * @param nanoClock the source of the {@link System#nanoTime()} values
+    */
+   AdaptiveLimit(ConcurrencyLimiter limiter, long targetNanos, int minLimit, int maxLimit, double backoff,
+            LongSupplier nanoClock)
+   {
+      this.nanoClock = nanoClock;
+      this.limiter = limiter;
+      this.targetNanos = targetNanos;
+      this.minLimit = Math.max(1, minLimit);
+      this.maxLimit = Math.max(this.minLimit, maxLimit);
+      this.backoff = backoff;
+      this.estimate = Math.min(this.maxLimit, Math.max(this.minLimit, limiter.getLimit()));
+      this.lastDecreaseNanos = nanoClock.getAsLong();
+      limiter.setLimit((int) estimate);
+   }
+
+   /**
+    * Records the latency of an operation
+    *
+    * @param startNanos the {@link System#nanoTime()} at which the operation started
+    * @param latencyNanos how long the operation took
+    */
+   public synchronized void onSample(long startNanos, long latencyNanos)
+   {
+      int current = limiter.getLimit();
+      if (current != (int) estimate && current > 0)
+      {
+         // Changed at runtime through the admission endpoint
+         estimate = Math.min(maxLimit, Math.max(minLimit, current));
+      }
+      if (latencyNanos > targetNanos)
+      {
+         if (startNanos - lastDecreaseNanos > 0)
+         {
+            estimate = Math.max(minLimit, estimate * backoff);
+            lastDecreaseNanos = nanoClock.getAsLong();
+            apply();
+         }
+      }
+      else if (2 * limiter.getInFlight() >= limiter.getLimit())
+      {
+         // Only grow a limit that is actually in use
+         estimate = Math.min(maxLimit, estimate + 1 / estimate);
+         apply();
+      }
+   }
+
+   /**
+    * @return the current limit
+    */
+   public synchronized int getLimit()
+   {
+      return (int) estimate;
+   }
+
+   private void apply()
+   {
+      int limit = (int) estimate;
+      if (limit != limiter.getLimit())
+      {
+         limiter.setLimit(limit);
+      }
+   }
+}
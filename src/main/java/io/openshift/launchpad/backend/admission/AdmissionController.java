@@ -0,0 +1,206 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.admission;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+
+import io.openshift.launchpad.backend.metrics.Endpoint;
+import io.openshift.launchpad.backend.metrics.LaunchpadMetrics;
+import io.openshift.launchpad.backend.util.Configuration;
+
+/**
+ * Holds a {@link ConcurrencyLimiter} for each endpoint class of {@link io.openshift.launchpad.backend.rest.LaunchpadResource},
+ * so that a burst of expensive generation requests cannot starve the cheap ones.
+ * <p>
+ * Each limit is configured with <code>LAUNCHPAD_BACKEND_ADMISSION_LIMIT_&lt;ENDPOINT&gt;</code> and each queue with
+ * <code>LAUNCHPAD_BACKEND_ADMISSION_QUEUE_&lt;ENDPOINT&gt;</code>. Unless disabled, the limits of the generation
+ * endpoints are then adjusted by an {@link AdaptiveLimit} from the measured execution latency.
+ */
+@ApplicationScoped
+public class AdmissionController
+{
+   private static final String LAUNCHPAD_BACKEND_ADMISSION_LIMIT = "LAUNCHPAD_BACKEND_ADMISSION_LIMIT";
+   private static final String LAUNCHPAD_BACKEND_ADMISSION_QUEUE = "LAUNCHPAD_BACKEND_ADMISSION_QUEUE";
+   private static final String LAUNCHPAD_BACKEND_ADMISSION_TIMEOUT = "LAUNCHPAD_BACKEND_ADMISSION_TIMEOUT";
+   private static final String LAUNCHPAD_BACKEND_ADMISSION_RETRY_AFTER = "LAUNCHPAD_BACKEND_ADMISSION_RETRY_AFTER";
+   private static final String LAUNCHPAD_BACKEND_ADAPTIVE_LIMIT_ENABLED = "LAUNCHPAD_BACKEND_ADAPTIVE_LIMIT_ENABLED";
+   private static final String LAUNCHPAD_BACKEND_ADAPTIVE_LIMIT_TARGET = "LAUNCHPAD_BACKEND_ADAPTIVE_LIMIT_TARGET";
+   private static final String LAUNCHPAD_BACKEND_ADAPTIVE_LIMIT_MIN = "LAUNCHPAD_BACKEND_ADAPTIVE_LIMIT_MIN";
+   private static final String LAUNCHPAD_BACKEND_ADAPTIVE_LIMIT_MAX = "LAUNCHPAD_BACKEND_ADAPTIVE_LIMIT_MAX";
+   private static final String LAUNCHPAD_BACKEND_ADAPTIVE_LIMIT_BACKOFF = "LAUNCHPAD_BACKEND_ADAPTIVE_LIMIT_BACKOFF";
+
+   private final Map<Endpoint, ConcurrencyLimiter> limiters = new EnumMap<>(Endpoint.class);
+   private final Map<Endpoint, AdaptiveLimit> adaptiveLimits = new EnumMap<>(Endpoint.class);
+   private long timeoutMillis;
+   private int retryAfterSeconds;
+
+   @Inject
+   LaunchpadMetrics metrics;
+
+   @PostConstruct
+   void init()
+   {
+      int processors = Runtime.getRuntime().availableProcessors();
+      timeoutMillis = TimeUnit.SECONDS.toMillis(Configuration.getLong(LAUNCHPAD_BACKEND_ADMISSION_TIMEOUT, 10));
+      retryAfterSeconds = Configuration.getInt(LAUNCHPAD_BACKEND_ADMISSION_RETRY_AFTER, 5);
+      for (Endpoint endpoint : Endpoint.values())
+      {
+         int defaultLimit;
+         switch (endpoint)
+         {
+         case ZIP:
+         case MISSIONCONTROL:
+            defaultLimit = Math.max(2, processors);
+            break;
+         case JOB:
+            // Jobs are bounded by their own queue
+            defaultLimit = 0;
+            break;
+         case BATCH:
+            // A batch already generates its projects in parallel
+            defaultLimit = 1;
+            break;
+         default:
+            defaultLimit = 4 * processors;
+         }
+         String key = endpoint.name();
+         ConcurrencyLimiter limiter = new ConcurrencyLimiter(
+                  Configuration.getInt(LAUNCHPAD_BACKEND_ADMISSION_LIMIT + "_" + key, defaultLimit),
+                  Configuration.getInt(LAUNCHPAD_BACKEND_ADMISSION_QUEUE + "_" + key, 50));
+         limiters.put(endpoint, limiter);
+         String labels = "endpoint=\"" + endpoint.getLabel() + "\"";
+         metrics.registerGauge("admission_limit", "Maximum concurrent requests admitted", labels,
+                  limiter::getLimit);
+         metrics.registerGauge("admission_queued", "Requests waiting to be admitted", labels, limiter::getQueued);
+         metrics.registerCounter("admission_rejected_total", "Requests rejected with 503", labels,
+                  limiter::getRejected);
+      }
+      if (Configuration.getBoolean(LAUNCHPAD_BACKEND_ADAPTIVE_LIMIT_ENABLED, true))
+      {
+         long targetNanos = TimeUnit.MILLISECONDS
+                  .toNanos(Configuration.getLong(LAUNCHPAD_BACKEND_ADAPTIVE_LIMIT_TARGET, 5000));
+         int min = Configuration.getInt(LAUNCHPAD_BACKEND_ADAPTIVE_LIMIT_MIN, 1);
+         int max = Configuration.getInt(LAUNCHPAD_BACKEND_ADAPTIVE_LIMIT_MAX, 4 * processors);
+         double backoff = Double.parseDouble(Configuration.get(LAUNCHPAD_BACKEND_ADAPTIVE_LIMIT_BACKOFF, "0.9"));
+         for (Endpoint endpoint : new Endpoint[] { Endpoint.ZIP, Endpoint.MISSIONCONTROL })
+         {
+            ConcurrencyLimiter limiter = limiters.get(endpoint);
+            // A limit of 0 means no limit, which is kept as is
+            if (limiter.getLimit() > 0)
+            {
+               adaptiveLimits.put(endpoint, new AdaptiveLimit(limiter, targetNanos, min, max, backoff));
+            }
+         }
+      }
+   }
+
+   /**
+    * Records how long a generation took to execute, so that the limit of its endpoint can be adjusted
+    *
+    * @param startNanos the {@link System#nanoTime()} at which the execution started
+    */
+   public void onExecuted(Endpoint endpoint, long startNanos, long latencyNanos)
+   {
+      AdaptiveLimit adaptiveLimit = adaptiveLimits.get(endpoint);
+      if (adaptiveLimit != null)
+      {
+         adaptiveLimit.onSample(startNanos, latencyNanos);
+      }
+   }
+
+   /**
+    * Classifies a request of {@link io.openshift.launchpad.backend.rest.LaunchpadResource} by its path
+    *
+    * @param path the request path, relative to the application
+    * @return the endpoint class, or <code>null</code> if the request is not limited
+    */
+   public Endpoint classify(String method, String path)
+   {
+      String[] segments = (path.startsWith("/") ? path.substring(1) : path).split("/");
+      if (segments.length < 3 || !"launchpad".equals(segments[0]))
+      {
+         return null;
+      }
+      if ("commands".equals(segments[1]))
+      {
+         if (segments.length == 3)
+         {
+            return "GET".equals(method) ? Endpoint.METADATA : null;
+         }
+         switch (segments[3])
+         {
+         case "validate":
+            return Endpoint.VALIDATE;
+         case "next":
+            return Endpoint.NEXT;
+         case "zip":
+            return Endpoint.ZIP;
+         case "missioncontrol":
+            return Endpoint.MISSIONCONTROL;
+         case "sessions":
+            return Endpoint.SESSION;
+         case "jobs":
+            return Endpoint.JOB;
+         case "batch":
+            return Endpoint.BATCH;
+         default:
+            return null;
+         }
+      }
+      if ("sessions".equals(segments[1]) && "POST".equals(method))
+      {
+         return Endpoint.SESSION;
+      }
+      return null;
+   }
+
+   public ConcurrencyLimiter getLimiter(Endpoint endpoint)
+   {
+      return limiters.get(endpoint);
+   }
+
+   /**
+    * @return how long a request waits to be admitted
+    */
+   public long getTimeoutMillis()
+   {
+      return timeoutMillis;
+   }
+
+   /**
+    * @return the value of the <code>Retry-After</code> header of rejected requests
+    */
+   public int getRetryAfterSeconds()
+   {
+      return retryAfterSeconds;
+   }
+
+   public JsonObject getStatistics()
+   {
+      JsonObjectBuilder builder = Json.createObjectBuilder();
+      limiters.forEach((endpoint, limiter) -> builder.add(endpoint.getLabel(), limiter.getStatistics()));
+      return builder.build();
+   }
+}
@@ -0,0 +1,225 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.admission;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+
+/**
+ * Limits the number of concurrent requests of an endpoint class. Requests over the limit wait in a bounded queue. The
+ * limit and queue size can be changed at any time.
+ */
+public class ConcurrencyLimiter
+{
+   private final ReentrantLock lock = new ReentrantLock();
+   private final Condition available = lock.newCondition();
+
+   private int limit;
+   private int maxQueue;
+   private int inFlight;
+   private int queued;
+   private long accepted;
+   private long rejected;
+   private long timeouts;
+
+   /**
+    * @param limit the maximum number of concurrent requests, <code>0</code> for no limit
+    * @param maxQueue the maximum number of requests waiting for a permit
+    */
+   public ConcurrencyLimiter(int limit, int maxQueue)
+   {
+      this.limit = limit;
+      this.maxQueue = maxQueue;
+   }
+
+   /**
+    * Waits for a permit, which must be given back with {@link #release()}
+    *
+    * @return <code>false</code> if the queue is full or no permit became available before the timeout
+    */
+   public boolean acquire(long timeout, TimeUnit unit) throws InterruptedException
+   {
+      lock.lock();
+      try
+      {
+         if (!hasPermit())
+         {
+            if (queued >= maxQueue)
+            {
+               rejected++;
+               return false;
+            }
+            queued++;
+            try
+            {
+               long remaining = unit.toNanos(timeout);
+               while (!hasPermit())
+               {
+                  if (remaining <= 0)
+                  {
+                     timeouts++;
+                     return false;
+                  }
+                  remaining = available.awaitNanos(remaining);
+               }
+            }
+            finally
+            {
+               queued--;
+            }
+         }
+         inFlight++;
+         accepted++;
+         return true;
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+   public void release()
+   {
+      lock.lock();
+      try
+      {
+         inFlight--;
+         available.signal();
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+   public int getLimit()
+   {
+      lock.lock();
+      try
+      {
+         return limit;
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Changes the limit. Requests already in flight are not affected when the limit is lowered.
+    */
+   public void setLimit(int limit)
+   {
+      lock.lock();
+      try
+      {
+         this.limit = limit;
+         available.signalAll();
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+   public void setMaxQueue(int maxQueue)
+   {
+      lock.lock();
+      try
+      {
+         this.maxQueue = maxQueue;
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+   public int getInFlight()
+   {
+      lock.lock();
+      try
+      {
+         return inFlight;
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * @return the number of requests waiting for a permit
+    */
+   public int getQueued()
+   {
+      lock.lock();
+      try
+      {
+         return queued;
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * @return the number of requests rejected because the queue was full or the wait timed out
+    */
+   public long getRejected()
+   {
+      lock.lock();
+      try
+      {
+         return rejected + timeouts;
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+   public JsonObject getStatistics()
+   {
+      lock.lock();
+      try
+      {
+         return Json.createObjectBuilder()
+                  .add("limit", limit)
+                  .add("maxQueue", maxQueue)
+                  .add("inFlight", inFlight)
+                  .add("queued", queued)
+                  .add("accepted", accepted)
+                  .add("rejected", rejected)
+                  .add("timeouts", timeouts)
+                  .build();
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+   private boolean hasPermit()
+   {
+      return limit <= 0 || inFlight < limit;
+   }
+}
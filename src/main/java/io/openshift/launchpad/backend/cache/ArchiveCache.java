@@ -0,0 +1,472 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.cache;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonValue;
+
+import io.openshift.launchpad.backend.ForgeInitializer;
+import io.openshift.launchpad.backend.event.AddonsRedeployed;
+import io.openshift.launchpad.backend.event.FurnaceStartup;
+import io.openshift.launchpad.backend.rest.MetadataCache;
+import io.openshift.launchpad.backend.util.Configuration;
+import io.openshift.launchpad.backend.util.Paths;
+
+/**
+ * Stores generated project archives on disk, keyed by a hash of the command name and its canonical inputs.
+ * <p>
+ * The least recently used archives are evicted once the total size goes over the configured limit. The whole cache is
+ * invalidated when the backend version returned by {@link ForgeInitializer#getVersion()} changes or the addons are
+ * redeployed. Archives are opened under the cache lock, so an archive evicted while being served is still read to the
+ * end. One evicted between {@link #getArchiveSize(String)} and {@link #open(String)} cannot be served anymore.
+ */
+@ApplicationScoped
+public class ArchiveCache
+{
+   private static final Logger log = Logger.getLogger(ArchiveCache.class.getName());
+
+   private static final String LAUNCHPAD_BACKEND_ARCHIVE_CACHE_ENABLED = "LAUNCHPAD_BACKEND_ARCHIVE_CACHE_ENABLED";
+   private static final String LAUNCHPAD_BACKEND_ARCHIVE_CACHE_DIR = "LAUNCHPAD_BACKEND_ARCHIVE_CACHE_DIR";
+   private static final String LAUNCHPAD_BACKEND_ARCHIVE_CACHE_MAX_SIZE = "LAUNCHPAD_BACKEND_ARCHIVE_CACHE_MAX_SIZE";
+
+   private static final String ARCHIVE_SUFFIX = ".zip";
+   private static final String PARTIAL_SUFFIX = ".partial";
+
+   private final boolean enabled;
+   private final Path directory;
+   private final long maxSize;
+
+   private final Map<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+   private long size;
+   private String version;
+
+   private final LongAdder hits = new LongAdder();
+   private final LongAdder misses = new LongAdder();
+   private final LongAdder evictions = new LongAdder();
+
+   public ArchiveCache()
+   {
+      this(Configuration.getBoolean(LAUNCHPAD_BACKEND_ARCHIVE_CACHE_ENABLED, true),
+               java.nio.file.Paths.get(Configuration.get(LAUNCHPAD_BACKEND_ARCHIVE_CACHE_DIR,
+                        java.nio.file.Paths.get(System.getProperty("java.io.tmpdir"), "launchpad-archives")
+                                 .toString())),
+               Configuration.getLong(LAUNCHPAD_BACKEND_ARCHIVE_CACHE_MAX_SIZE, 512L * 1024 * 1024));
+   }
+
+   public ArchiveCache(boolean enabled, Path directory, long maxSize)
+   {
+      this.enabled = enabled;
+      this.directory = directory;
+      this.maxSize = maxSize;
+   }
+
+   void start(@Observes FurnaceStartup startup)
+   {
+      if (enabled)
+      {
+         // Archives left by a previous run may have been generated by another version
+         clear();
+      }
+   }
+
+   void onRedeploy(@Observes AddonsRedeployed event)
+   {
+      clear();
+   }
+
+   public boolean isEnabled()
+   {
+      return enabled;
+   }
+
+   /**
+    * Creates the cache key of the given command inputs. Inputs are sorted by name, so the order in which a client sends
+    * them does not matter.
+    *
+    * @param content the JSON produced by {@link io.openshift.launchpad.backend.util.JsonBuilder}
+    */
+   public String createKey(String commandName, JsonObject content)
+   {
+      Map<String, JsonValue> inputs = new TreeMap<>();
+      JsonArray array = content.getJsonArray("inputs");
+      if (array != null)
+      {
+         for (JsonValue input : array)
+         {
+            JsonObject object = (JsonObject) input;
+            inputs.put(object.getString("name"), object.get("value"));
+         }
+      }
+      StringBuilder canonical = new StringBuilder(commandName).append('\n')
+               .append(content.getInt("stepIndex", 0)).append('\n');
+      inputs.forEach((name, value) -> canonical.append(name).append('=').append(value).append('\n'));
+      return MetadataCache.sha256(canonical.toString());
+   }
+
+   /**
+    * Looks up the cached archive for the given key, counting a miss if it is not cached
+    *
+    * @return the size of the archive in bytes, or <code>-1</code> if it is not cached
+    */
+   public long getArchiveSize(String key)
+   {
+      if (!enabled)
+      {
+         return -1;
+      }
+      checkVersion();
+      synchronized (this)
+      {
+         Long archiveSize = entries.get(key);
+         if (archiveSize != null)
+         {
+            return archiveSize;
+         }
+      }
+      misses.increment();
+      return -1;
+   }
+
+   /**
+    * Opens the cached archive for the given key
+    *
+    * @return an open channel on the archive, or <code>null</code> if it is not cached
+    */
+   public FileChannel open(String key)
+   {
+      if (!enabled)
+      {
+         return null;
+      }
+      checkVersion();
+      synchronized (this)
+      {
+         if (entries.get(key) != null)
+         {
+            try
+            {
+               FileChannel channel = FileChannel.open(archive(key), StandardOpenOption.READ);
+               hits.increment();
+               return channel;
+            }
+            catch (IOException e)
+            {
+               log.log(Level.WARNING, "Error while opening cached archive " + key, e);
+               remove(key);
+            }
+         }
+      }
+      misses.increment();
+      return null;
+   }
+
+   /**
+    * Wraps the given stream so that the bytes written to it are also stored in the cache. The archive is added once
+    * {@link Writer#commit()} is called.
+    *
+    * @return the wrapping stream, which only writes to the given stream if the cache is disabled or cannot be written
+    *         to
+    */
+   public Writer store(String key, OutputStream os)
+   {
+      if (enabled)
+      {
+         try
+         {
+            Files.createDirectories(directory);
+            Path partial = Files.createTempFile(directory, key, PARTIAL_SUFFIX);
+            String archiveVersion;
+            synchronized (this)
+            {
+               archiveVersion = version;
+            }
+            return new Writer(key, os, partial, Files.newOutputStream(partial), archiveVersion);
+         }
+         catch (IOException e)
+         {
+            log.log(Level.WARNING, "Error while creating cached archive " + key, e);
+         }
+      }
+      return new Writer(key, os, null, null, null);
+   }
+
+   /**
+    * Removes every archive
+    */
+   public void clear()
+   {
+      synchronized (this)
+      {
+         entries.clear();
+         size = 0;
+         version = ForgeInitializer.getVersion();
+      }
+      try
+      {
+         if (Files.isDirectory(directory))
+         {
+            Paths.deleteDirectory(directory);
+         }
+      }
+      catch (NoSuchFileException e)
+      {
+         // Already deleted
+      }
+      catch (IOException e)
+      {
+         log.log(Level.WARNING, "Error while clearing " + directory, e);
+      }
+   }
+
+   public JsonObject getStatistics()
+   {
+      return Json.createObjectBuilder()
+               .add("enabled", enabled)
+               .add("entries", getEntryCount())
+               .add("size", getSize())
+               .add("maxSize", maxSize)
+               .add("hits", getHits())
+               .add("misses", getMisses())
+               .add("evictions", getEvictions())
+               .build();
+   }
+
+   public synchronized int getEntryCount()
+   {
+      return entries.size();
+   }
+
+   /**
+    * @return the total size of the cached archives, in bytes
+    */
+   public synchronized long getSize()
+   {
+      return size;
+   }
+
+   public long getHits()
+   {
+      return hits.sum();
+   }
+
+   public long getMisses()
+   {
+      return misses.sum();
+   }
+
+   public long getEvictions()
+   {
+      return evictions.sum();
+   }
+
+   /**
+    * Copies the whole archive to the given stream with {@link FileChannel#transferTo(long, long, WritableByteChannel)}.
+    * The stream is wrapped with {@link Channels#newChannel(OutputStream)}, so the bytes still go through a heap buffer:
+    * serving from the cache saves generating and zipping the project, not the copy.
+    */
+   public static void transfer(FileChannel channel, OutputStream os) throws IOException
+   {
+      WritableByteChannel target = Channels.newChannel(os);
+      long size = channel.size();
+      long position = 0;
+      while (position < size)
+      {
+         position += channel.transferTo(position, size - position, target);
+      }
+      os.flush();
+   }
+
+   private void checkVersion()
+   {
+      String current = ForgeInitializer.getVersion();
+      boolean changed;
+      synchronized (this)
+      {
+         changed = !Objects.equals(version, current);
+      }
+      if (changed)
+      {
+         log.info("Backend version changed to " + current + ", clearing the archive cache");
+         clear();
+      }
+   }
+
+   private void add(String key, Path partial, long archiveSize, String archiveVersion) throws IOException
+   {
+      List<String> evicted = new ArrayList<>();
+      synchronized (this)
+      {
+         if (!Objects.equals(version, archiveVersion) || archiveSize > maxSize)
+         {
+            Files.deleteIfExists(partial);
+            return;
+         }
+         Files.move(partial, archive(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+         Long previous = entries.put(key, archiveSize);
+         size += archiveSize - (previous == null ? 0 : previous);
+         Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+         while (size > maxSize && iterator.hasNext())
+         {
+            Map.Entry<String, Long> eldest = iterator.next();
+            if (!eldest.getKey().equals(key))
+            {
+               iterator.remove();
+               size -= eldest.getValue();
+               evicted.add(eldest.getKey());
+            }
+         }
+      }
+      for (String evictedKey : evicted)
+      {
+         evictions.increment();
+         Files.deleteIfExists(archive(evictedKey));
+      }
+   }
+
+   private void remove(String key)
+   {
+      Long removed = entries.remove(key);
+      if (removed != null)
+      {
+         size -= removed;
+      }
+   }
+
+   private Path archive(String key)
+   {
+      return directory.resolve(key + ARCHIVE_SUFFIX);
+   }
+
+   /**
+    * Copies an archive to the cache while it is written to the response
+    */
+   public class Writer extends FilterOutputStream
+   {
+      private final String key;
+      private final Path partial;
+      private final String archiveVersion;
+      private OutputStream file;
+      private long written;
+
+      Writer(String key, OutputStream os, Path partial, OutputStream file, String archiveVersion)
+      {
+         super(os);
+         this.key = key;
+         this.partial = partial;
+         this.file = file;
+         this.archiveVersion = archiveVersion;
+      }
+
+      @Override
+      public void write(int b) throws IOException
+      {
+         out.write(b);
+         if (file != null)
+         {
+            file.write(b);
+            written++;
+         }
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException
+      {
+         out.write(b, off, len);
+         if (file != null)
+         {
+            file.write(b, off, len);
+            written += len;
+         }
+      }
+
+      /**
+       * Adds the written archive to the cache
+       */
+      public void commit()
+      {
+         if (file != null)
+         {
+            try
+            {
+               file.close();
+               file = null;
+               add(key, partial, written, archiveVersion);
+            }
+            catch (IOException e)
+            {
+               log.log(Level.WARNING, "Error while storing cached archive " + key, e);
+               abort();
+            }
+         }
+      }
+
+      /**
+       * Discards the written archive. Does nothing once committed.
+       */
+      public void abort()
+      {
+         try
+         {
+            if (file != null)
+            {
+               file.close();
+               file = null;
+            }
+            if (partial != null)
+            {
+               Files.deleteIfExists(partial);
+            }
+         }
+         catch (IOException e)
+         {
+            log.log(Level.FINE, "Error while deleting " + partial, e);
+         }
+      }
+
+      @Override
+      public void close() throws IOException
+      {
+         // The response stream is owned by the container
+         out.flush();
+      }
+   }
+}
@@ -0,0 +1,291 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.cleanup;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.json.Json;
+import javax.json.JsonObject;
+
+import io.openshift.launchpad.backend.event.FurnaceStartup;
+import io.openshift.launchpad.backend.util.Configuration;
+import io.openshift.launchpad.backend.util.Paths;
+
+/**
+ * Deletes the temporary project directories created while generating projects.
+ * <p>
+ * Directories are queued and deleted by a configurable number of parallel workers. A failed deletion is retried with
+ * exponential backoff. When the queue grows past its limit, the directory is deleted on the calling thread instead,
+ * slowing down producers rather than letting the disk fill up. Directories can also be emptied rather than deleted, so
+ * that they can be reused. The directories left behind by a previous run are swept by the
+ * {@link io.openshift.launchpad.backend.workspace.WorkspaceManager} that created them.
+ */
+@ApplicationScoped
+public class DirectoryReaper
+{
+   private static final Logger log = Logger.getLogger(DirectoryReaper.class.getName());
+
+   /**
+    * The prefix of the temporary directories created for each generated project
+    */
+   public static final String PROJECT_DIR_PREFIX = "projectDir";
+
+   private static final String LAUNCHPAD_BACKEND_REAPER_WORKERS = "LAUNCHPAD_BACKEND_REAPER_WORKERS";
+   private static final String LAUNCHPAD_BACKEND_REAPER_QUEUE_LIMIT = "LAUNCHPAD_BACKEND_REAPER_QUEUE_LIMIT";
+   private static final String LAUNCHPAD_BACKEND_REAPER_MAX_RETRIES = "LAUNCHPAD_BACKEND_REAPER_MAX_RETRIES";
+   private static final String LAUNCHPAD_BACKEND_REAPER_RETRY_DELAY = "LAUNCHPAD_BACKEND_REAPER_RETRY_DELAY";
+
+   private final int workers = Configuration.getInt(LAUNCHPAD_BACKEND_REAPER_WORKERS, 2);
+   private final int queueLimit = Configuration.getInt(LAUNCHPAD_BACKEND_REAPER_QUEUE_LIMIT, 1000);
+   private final int maxRetries = Configuration.getInt(LAUNCHPAD_BACKEND_REAPER_MAX_RETRIES, 5);
+   private final long retryDelayMillis = Configuration.getLong(LAUNCHPAD_BACKEND_REAPER_RETRY_DELAY, 500);
+
+   private final BlockingQueue<Task> queue = new LinkedBlockingQueue<>();
+   private final List<Future<?>> workerFutures = new ArrayList<>();
+   private final AtomicInteger pendingRetries = new AtomicInteger();
+   private final LongAdder deleted = new LongAdder();
+   private final LongAdder retries = new LongAdder();
+   private final LongAdder failures = new LongAdder();
+   private final LongAdder callerDeletes = new LongAdder();
+
+   @Resource
+   ManagedExecutorService executorService;
+
+   @Resource
+   ManagedScheduledExecutorService scheduledExecutorService;
+
+   void start(@Observes FurnaceStartup startup)
+   {
+      for (int i = 0; i < workers; i++)
+      {
+         workerFutures.add(executorService.submit(this::work));
+      }
+   }
+
+   @PreDestroy
+   void stop()
+   {
+      workerFutures.forEach(future -> future.cancel(true));
+   }
+
+   /**
+    * Schedules the deletion of the given directory
+    */
+   public void delete(Path directory)
+   {
+      if (queue.size() >= queueLimit)
+      {
+         // Backpressure: the caller pays for the deletion
+         callerDeletes.increment();
+         process(new Task(directory, 0, null, null));
+      }
+      else
+      {
+         queue.offer(new Task(directory, 0, null, null));
+      }
+   }
+
+   /**
+    * Schedules the deletion of the content of the given directory
+    *
+    * @param onEmptied run once the directory is empty
+    * @param onFailed run instead if the deletion fails for good
+    */
+   public void empty(Path directory, Runnable onEmptied, Runnable onFailed)
+   {
+      if (queue.size() >= queueLimit)
+      {
+         callerDeletes.increment();
+         process(new Task(directory, 0, onEmptied, onFailed));
+      }
+      else
+      {
+         queue.offer(new Task(directory, 0, onEmptied, onFailed));
+      }
+   }
+
+   /**
+    * @return the queue depth, lag and deletion counters
+    */
+   public JsonObject getStatistics()
+   {
+      return Json.createObjectBuilder()
+               .add("workers", workers)
+               .add("queueSize", getQueueSize())
+               .add("queueLimit", queueLimit)
+               .add("lagMillis", getLagMillis())
+               .add("pendingRetries", getPendingRetries())
+               .add("deleted", getDeleted())
+               .add("retries", getRetries())
+               .add("failures", getFailures())
+               .add("callerDeletes", getCallerDeletes())
+               .build();
+   }
+
+   /**
+    * @return the number of directories waiting to be deleted
+    */
+   public int getQueueSize()
+   {
+      return queue.size();
+   }
+
+   /**
+    * @return how long the oldest queued directory has been waiting, in milliseconds
+    */
+   public long getLagMillis()
+   {
+      Task head = queue.peek();
+      return head == null ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - head.enqueuedAt);
+   }
+
+   public int getPendingRetries()
+   {
+      return pendingRetries.get();
+   }
+
+   public long getDeleted()
+   {
+      return deleted.sum();
+   }
+
+   public long getRetries()
+   {
+      return retries.sum();
+   }
+
+   public long getFailures()
+   {
+      return failures.sum();
+   }
+
+   /**
+    * @return the number of directories deleted on the calling thread because the queue was full
+    */
+   public long getCallerDeletes()
+   {
+      return callerDeletes.sum();
+   }
+
+   private void work()
+   {
+      try
+      {
+         while (!Thread.currentThread().isInterrupted())
+         {
+            process(queue.take());
+         }
+      }
+      catch (InterruptedException e)
+      {
+         // Shutting down
+      }
+   }
+
+   private void process(Task task)
+   {
+      try
+      {
+         log.fine("Deleting " + task.directory);
+         if (task.onEmptied != null)
+         {
+            Paths.deleteContents(task.directory);
+            deleted.increment();
+            task.onEmptied.run();
+         }
+         else
+         {
+            Paths.deleteDirectory(task.directory);
+            deleted.increment();
+         }
+      }
+      catch (NoSuchFileException e)
+      {
+         // Already deleted
+         deleted.increment();
+      }
+      catch (IOException | RuntimeException e)
+      {
+         if (task.attempt < maxRetries)
+         {
+            retry(task, e);
+         }
+         else
+         {
+            failures.increment();
+            log.log(Level.SEVERE, "Error while deleting " + task.directory + ", giving up", e);
+            if (task.onFailed != null)
+            {
+               task.onFailed.run();
+            }
+         }
+      }
+   }
+
+   private void retry(Task task, Exception cause)
+   {
+      long delay = retryDelayMillis << task.attempt;
+      log.log(Level.WARNING, "Error while deleting " + task.directory + ", retrying in " + delay + "ms", cause);
+      retries.increment();
+      pendingRetries.incrementAndGet();
+      scheduledExecutorService.schedule(() -> {
+         pendingRetries.decrementAndGet();
+         // Keeps the original enqueue time, so that the lag includes the failed attempts
+         queue.offer(new Task(task.directory, task.attempt + 1, task.onEmptied, task.onFailed, task.enqueuedAt));
+      }, delay, TimeUnit.MILLISECONDS);
+   }
+
+   private static class Task
+   {
+      private final Path directory;
+      private final int attempt;
+      private final Runnable onEmptied;
+      private final Runnable onFailed;
+      private final long enqueuedAt;
+
+      Task(Path directory, int attempt, Runnable onEmptied, Runnable onFailed)
+      {
+         this(directory, attempt, onEmptied, onFailed, System.nanoTime());
+      }
+
+      Task(Path directory, int attempt, Runnable onEmptied, Runnable onFailed, long enqueuedAt)
+      {
+         this.directory = directory;
+         this.attempt = attempt;
+         this.onEmptied = onEmptied;
+         this.onFailed = onFailed;
+         this.enqueuedAt = enqueuedAt;
+      }
+   }
+}
@@ -0,0 +1,206 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.command;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jboss.forge.addon.ui.controller.CommandController;
+
+/**
+ * A bounded pool of initialized {@link CommandController} instances for a single command.
+ * <p>
+ * A {@link CommandController} keeps the input values it was populated with, so a controller handed out by
+ * {@link #acquire()} is never returned to the pool: the caller closes it once the request is done and the pool
+ * recycles the free slot by initializing a fresh controller in the background. Every request therefore starts from a
+ * clean state without paying the initialization cost on the request thread.
+ */
+public class CommandControllerPool implements AutoCloseable
+{
+   private static final Logger log = Logger.getLogger(CommandControllerPool.class.getName());
+
+   private final String commandName;
+   private final int size;
+   private final BlockingQueue<CommandController> idle;
+   private final Callable<CommandController> factory;
+   private final Executor executor;
+
+   private final AtomicInteger pending = new AtomicInteger();
+   private final LongAdder hits = new LongAdder();
+   private final LongAdder misses = new LongAdder();
+   private volatile boolean closed;
+
+   /**
+    * @param commandName the command this pool holds controllers for
+    * @param size the maximum number of idle controllers. Zero disables pooling
+    * @param factory creates and initializes a new controller
+    * @param executor the {@link Executor} used to initialize controllers in the background
+    */
+   public CommandControllerPool(String commandName, int size, Callable<CommandController> factory,
+            Executor executor)
+   {
+      this.commandName = commandName;
+      this.size = Math.max(0, size);
+      this.idle = new ArrayBlockingQueue<>(Math.max(1, size));
+      this.factory = factory;
+      this.executor = executor;
+   }
+
+   /**
+    * Returns an initialized controller, creating one on the calling thread if the pool is empty. The caller owns
+    * the returned controller and must close it.
+    */
+   public CommandController acquire() throws Exception
+   {
+      CommandController controller = idle.poll();
+      if (controller != null)
+      {
+         hits.increment();
+      }
+      else
+      {
+         misses.increment();
+         controller = factory.call();
+      }
+      refill();
+      return controller;
+   }
+
+   /**
+    * Initializes a single controller on the calling thread and adds it to the pool
+    */
+   public void warmUp() throws Exception
+   {
+      offer(factory.call());
+   }
+
+   /**
+    * Schedules the initialization of as many controllers as needed to fill the pool
+    */
+   public void refill()
+   {
+      int current;
+      while (!closed && (current = pending.get()) + idle.size() < size)
+      {
+         if (pending.compareAndSet(current, current + 1))
+         {
+            try
+            {
+               executor.execute(this::create);
+            }
+            catch (RejectedExecutionException e)
+            {
+               pending.decrementAndGet();
+               log.log(Level.FINE, "Could not schedule controller initialization for " + commandName, e);
+               break;
+            }
+         }
+      }
+   }
+
+   /**
+    * Closes and removes every idle controller. The pool refills on the next {@link #acquire()} or {@link #refill()}
+    */
+   public void clear()
+   {
+      CommandController controller;
+      while ((controller = idle.poll()) != null)
+      {
+         closeQuietly(controller);
+      }
+   }
+
+   @Override
+   public void close()
+   {
+      closed = true;
+      clear();
+   }
+
+   public String getCommandName()
+   {
+      return commandName;
+   }
+
+   public int getSize()
+   {
+      return size;
+   }
+
+   public int getIdleCount()
+   {
+      return idle.size();
+   }
+
+   /**
+    * @return how many times {@link #acquire()} was served from the pool
+    */
+   public long getHits()
+   {
+      return hits.sum();
+   }
+
+   /**
+    * @return how many times {@link #acquire()} had to initialize a controller on the calling thread
+    */
+   public long getMisses()
+   {
+      return misses.sum();
+   }
+
+   private void create()
+   {
+      try
+      {
+         offer(factory.call());
+      }
+      catch (Exception e)
+      {
+         log.log(Level.WARNING, "Error while initializing controller for " + commandName, e);
+      }
+      finally
+      {
+         pending.decrementAndGet();
+      }
+   }
+
+   private void offer(CommandController controller)
+   {
+      if (closed || size == 0 || !idle.offer(controller))
+      {
+         closeQuietly(controller);
+      }
+   }
+
+   private void closeQuietly(CommandController controller)
+   {
+      try
+      {
+         controller.close();
+      }
+      catch (Exception e)
+      {
+         log.log(Level.FINE, "Error while closing controller for " + commandName, e);
+      }
+   }
+}
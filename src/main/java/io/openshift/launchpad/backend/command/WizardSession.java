@@ -0,0 +1,111 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.command;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jboss.forge.addon.ui.controller.WizardCommandController;
+
+/**
+ * A wizard kept alive between requests so that moving between steps does not replay the whole wizard.
+ * <p>
+ * The underlying {@link WizardCommandController} is not thread-safe: callers must synchronize on the session while
+ * using it.
+ */
+public class WizardSession
+{
+   private final String id;
+   private final String commandName;
+   private final WizardCommandController controller;
+   private final Map<Integer, Long> inputSizes = new HashMap<>();
+   private long estimatedSize;
+   private volatile long lastAccess;
+   private int stepIndex;
+
+   WizardSession(String id, String commandName, WizardCommandController controller, long baseSize)
+   {
+      this.id = id;
+      this.commandName = commandName;
+      this.controller = controller;
+      this.estimatedSize = baseSize;
+      this.lastAccess = System.currentTimeMillis();
+   }
+
+   public String getId()
+   {
+      return id;
+   }
+
+   public String getCommandName()
+   {
+      return commandName;
+   }
+
+   public WizardCommandController getController()
+   {
+      return controller;
+   }
+
+   /**
+    * @return the index of the current wizard step, starting at zero
+    */
+   public int getStepIndex()
+   {
+      return stepIndex;
+   }
+
+   public void setStepIndex(int stepIndex)
+   {
+      this.stepIndex = stepIndex;
+   }
+
+   /**
+    * @return the estimated number of bytes retained by this session
+    */
+   public long getEstimatedSize()
+   {
+      return estimatedSize;
+   }
+
+   long getLastAccess()
+   {
+      return lastAccess;
+   }
+
+   void touch()
+   {
+      lastAccess = System.currentTimeMillis();
+   }
+
+   /**
+    * @return the estimated number of bytes of the input applied to the current step
+    */
+   long getInputSize()
+   {
+      Long size = inputSizes.get(stepIndex);
+      return size == null ? 0 : size;
+   }
+
+   /**
+    * Records the size of the input applied to the current step, replacing the one previously applied to it
+    */
+   void setInputSize(long bytes)
+   {
+      estimatedSize += bytes - getInputSize();
+      inputSizes.put(stepIndex, bytes);
+   }
+}
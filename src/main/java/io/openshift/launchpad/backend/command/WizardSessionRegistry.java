@@ -0,0 +1,204 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.command;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jboss.forge.addon.ui.controller.WizardCommandController;
+
+/**
+ * Keeps track of the live {@link WizardSession} instances.
+ * <p>
+ * The registry is bounded by a maximum number of sessions and by the estimated memory they retain. Each session is
+ * accounted for a fixed base size (the initialized controller) plus the size of the input last applied to each of its
+ * steps, so that moving back and forth between steps does not inflate the estimate. A single session is also bounded,
+ * so that one client cannot take the whole budget. Sessions that are not accessed for longer than the idle timeout are closed by {@link #evictExpired()}.
+ */
+public class WizardSessionRegistry implements AutoCloseable
+{
+   private static final Logger log = Logger.getLogger(WizardSessionRegistry.class.getName());
+
+   private final int maxSessions;
+   private final long idleTimeoutMillis;
+   private final long maxMemory;
+   private final long sessionBaseSize;
+   private final long maxSessionSize;
+
+   private final Map<String, WizardSession> sessions = new ConcurrentHashMap<>();
+   private final AtomicLong estimatedMemory = new AtomicLong();
+
+   /**
+    * @param maxSessions the maximum number of live sessions
+    * @param idleTimeoutMillis the time after which an unused session is evicted
+    * @param maxMemory the maximum estimated number of bytes retained by all sessions
+    * @param sessionBaseSize the estimated number of bytes retained by a session without any input
+    * @param maxSessionSize the maximum estimated number of bytes retained by a single session
+    */
+   public WizardSessionRegistry(int maxSessions, long idleTimeoutMillis, long maxMemory, long sessionBaseSize,
+            long maxSessionSize)
+   {
+      this.maxSessions = maxSessions;
+      this.idleTimeoutMillis = idleTimeoutMillis;
+      this.maxMemory = maxMemory;
+      this.sessionBaseSize = sessionBaseSize;
+      this.maxSessionSize = maxSessionSize;
+   }
+
+   /**
+    * Registers a new session for the given controller
+    *
+    * @return the new session or <code>null</code> if the registry is full, in which case the controller is left open
+    */
+   public WizardSession open(String commandName, WizardCommandController controller)
+   {
+      if (!hasCapacity())
+      {
+         evictExpired();
+         if (!hasCapacity())
+         {
+            return null;
+         }
+      }
+      WizardSession session = new WizardSession(UUID.randomUUID().toString(), commandName, controller,
+               sessionBaseSize);
+      sessions.put(session.getId(), session);
+      estimatedMemory.addAndGet(sessionBaseSize);
+      return session;
+   }
+
+   /**
+    * @return the session with the given id or <code>null</code> if it does not exist or has expired
+    */
+   public WizardSession get(String id)
+   {
+      WizardSession session = sessions.get(id);
+      if (session == null)
+      {
+         return null;
+      }
+      if (isExpired(session, System.currentTimeMillis()))
+      {
+         close(id);
+         return null;
+      }
+      session.touch();
+      return session;
+   }
+
+   /**
+    * Accounts the input about to be applied to the current step of the session, in place of the one previously applied
+    * to that step. The caller must hold the lock of the session.
+    *
+    * @param bytes the estimated size of the input
+    * @return <code>false</code> if the input would take the session or the registry over its budget, in which case
+    *         nothing is accounted and the input must not be applied
+    */
+   public boolean recordInput(WizardSession session, long bytes)
+   {
+      long delta = bytes - session.getInputSize();
+      if (delta > 0)
+      {
+         if (session.getEstimatedSize() + delta > maxSessionSize)
+         {
+            return false;
+         }
+         if (estimatedMemory.addAndGet(delta) > maxMemory)
+         {
+            estimatedMemory.addAndGet(-delta);
+            return false;
+         }
+      }
+      else
+      {
+         estimatedMemory.addAndGet(delta);
+      }
+      session.setInputSize(bytes);
+      return true;
+   }
+
+   /**
+    * Removes the session and closes its controller
+    *
+    * @return <code>true</code> if the session existed
+    */
+   public boolean close(String id)
+   {
+      WizardSession session = sessions.remove(id);
+      if (session == null)
+      {
+         return false;
+      }
+      synchronized (session)
+      {
+         estimatedMemory.addAndGet(-session.getEstimatedSize());
+         try
+         {
+            session.getController().close();
+         }
+         catch (Exception e)
+         {
+            log.log(Level.FINE, "Error while closing wizard session " + id, e);
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Closes every session that has been idle for longer than the idle timeout
+    */
+   public void evictExpired()
+   {
+      long now = System.currentTimeMillis();
+      sessions.values().stream()
+               .filter(session -> isExpired(session, now))
+               .map(WizardSession::getId)
+               .forEach(this::close);
+   }
+
+   @Override
+   public void close()
+   {
+      sessions.keySet().forEach(this::close);
+   }
+
+   public int size()
+   {
+      return sessions.size();
+   }
+
+   /**
+    * @return the estimated number of bytes retained by all live sessions
+    */
+   public long getEstimatedMemory()
+   {
+      return estimatedMemory.get();
+   }
+
+   private boolean hasCapacity()
+   {
+      return sessions.size() < maxSessions && estimatedMemory.get() + sessionBaseSize <= maxMemory;
+   }
+
+   private boolean isExpired(WizardSession session, long now)
+   {
+      return now - session.getLastAccess() > idleTimeoutMillis;
+   }
+}
@@ -0,0 +1,15 @@
+/*
+ * Copyright 2017 Red Hat, Inc. and/or its affiliates.
+ *
+ * Licensed under the Eclipse Public License version 1.0, available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ */
+package io.openshift.launchpad.backend.event;
+
+/**
+ * Fired when the set of deployed Forge addons changes after startup (eg. hot deployment in devMode)
+ */
+public class AddonsRedeployed
+{
+
+}
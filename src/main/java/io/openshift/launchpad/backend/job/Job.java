@@ -0,0 +1,270 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.job;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.UUID;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import io.openshift.launchpad.backend.cache.ArchiveCache;
+import io.openshift.launchpad.backend.rest.MetadataCache;
+import io.openshift.launchpad.backend.workspace.Workspace;
+import io.openshift.launchpad.backend.workspace.WorkspaceManager;
+
+/**
+ * A generation request running in the background. Once complete, the response of the request is kept until it expires:
+ * streamed entities are written to a file in a {@link Workspace} on disk, so that they count against the workspace
+ * quota and are swept at startup, other entities are kept in memory. Only requests with the same
+ * <code>Authorization</code> header as the one that submitted the job get its result.
+ */
+public class Job
+{
+   private static final String RESULT_FILE = "result";
+
+   public enum Status
+   {
+      QUEUED, RUNNING, COMPLETED, FAILED
+   }
+
+   private final String id = UUID.randomUUID().toString();
+   private final String commandName;
+   private final String owner;
+   private final WorkspaceManager workspaceManager;
+   private final long submittedAt = System.currentTimeMillis();
+   private final long submittedNanos = System.nanoTime();
+
+   private volatile Status status = Status.QUEUED;
+   private volatile long startedAt;
+   private volatile long finishedAt;
+   private volatile String error;
+
+   private int resultStatus;
+   private String resultType;
+   private String resultDisposition;
+   private String resultEntity;
+   private Workspace resultWorkspace;
+   private Path resultFile;
+
+   /**
+    * @param authorization the <code>Authorization</code> header of the submitting request, or <code>null</code>
+    * @param workspaceManager creates the workspaces of the streamed results
+    */
+   Job(String commandName, String authorization, WorkspaceManager workspaceManager)
+   {
+      this.commandName = commandName;
+      this.owner = hash(authorization);
+      this.workspaceManager = workspaceManager;
+   }
+
+   public String getId()
+   {
+      return id;
+   }
+
+   public String getCommandName()
+   {
+      return commandName;
+   }
+
+   public Status getStatus()
+   {
+      return status;
+   }
+
+   /**
+    * @return the {@link System#nanoTime()} at which the job was queued
+    */
+   public long getSubmittedNanos()
+   {
+      return submittedNanos;
+   }
+
+   /**
+    * @param authorization the <code>Authorization</code> header of a request, or <code>null</code>
+    * @return <code>true</code> if the job was submitted with the same header
+    */
+   public boolean isOwnedBy(String authorization)
+   {
+      return Objects.equals(owner, hash(authorization));
+   }
+
+   public boolean isDone()
+   {
+      return status == Status.COMPLETED || status == Status.FAILED;
+   }
+
+   long getFinishedAt()
+   {
+      return finishedAt;
+   }
+
+   void started()
+   {
+      startedAt = System.currentTimeMillis();
+      status = Status.RUNNING;
+   }
+
+   /**
+    * Keeps the given response as the result of the job, writing a {@link StreamingOutput} entity to a workspace
+    *
+    * @throws io.openshift.launchpad.backend.workspace.WorkspaceQuotaExceededException if the disk quota is used up
+    */
+   public void complete(Response response) throws IOException
+   {
+      Object entity = response.getEntity();
+      synchronized (this)
+      {
+         resultStatus = response.getStatus();
+         MediaType mediaType = response.getMediaType();
+         resultType = mediaType == null ? null : mediaType.toString();
+         resultDisposition = response.getHeaderString(HttpHeaders.CONTENT_DISPOSITION);
+         if (entity instanceof StreamingOutput)
+         {
+            try
+            {
+               writeResult((StreamingOutput) entity);
+            }
+            finally
+            {
+               // Releases what the entity holds even if it could not be written
+               if (entity instanceof Closeable)
+               {
+                  ((Closeable) entity).close();
+               }
+            }
+         }
+         else if (entity != null)
+         {
+            resultEntity = entity.toString();
+         }
+      }
+      finishedAt = System.currentTimeMillis();
+      status = Status.COMPLETED;
+   }
+
+   private void writeResult(StreamingOutput entity) throws IOException
+   {
+      Workspace workspace = workspaceManager.createOnDisk();
+      Path file = workspace.getPath().resolve(RESULT_FILE);
+      try
+      {
+         try (OutputStream os = Files.newOutputStream(file))
+         {
+            entity.write(os);
+         }
+         workspace.checkSize(file);
+      }
+      catch (IOException | RuntimeException e)
+      {
+         workspace.delete();
+         throw e;
+      }
+      resultWorkspace = workspace;
+      resultFile = file;
+   }
+
+   void failed(Throwable cause)
+   {
+      error = cause.getMessage() == null ? cause.getClass().getName() : cause.getMessage();
+      finishedAt = System.currentTimeMillis();
+      status = Status.FAILED;
+   }
+
+   /**
+    * @return the response of a completed job
+    */
+   public synchronized Response toResponse() throws IOException
+   {
+      Response.ResponseBuilder builder = Response.status(resultStatus);
+      if (resultType != null)
+      {
+         builder.type(resultType);
+      }
+      if (resultDisposition != null)
+      {
+         builder.header(HttpHeaders.CONTENT_DISPOSITION, resultDisposition);
+      }
+      if (resultFile != null)
+      {
+         // Opened now, so that the result can be served even if the job expires meanwhile
+         FileChannel channel = FileChannel.open(resultFile, StandardOpenOption.READ);
+         StreamingOutput contents = os -> {
+            try (FileChannel fileChannel = channel)
+            {
+               ArchiveCache.transfer(fileChannel, os);
+            }
+         };
+         return builder.entity(contents).header(HttpHeaders.CONTENT_LENGTH, channel.size()).build();
+      }
+      return builder.entity(resultEntity).build();
+   }
+
+   /**
+    * Deletes the workspace of the result, if any
+    */
+   synchronized void discard()
+   {
+      if (resultWorkspace != null)
+      {
+         resultWorkspace.delete();
+         resultWorkspace = null;
+         resultFile = null;
+      }
+   }
+
+   private static String hash(String authorization)
+   {
+      return authorization == null ? null : MetadataCache.sha256(authorization);
+   }
+
+   public JsonObject toJson()
+   {
+      JsonObjectBuilder builder = Json.createObjectBuilder()
+               .add("jobId", id)
+               .add("commandName", commandName)
+               .add("status", status.name())
+               .add("submittedAt", submittedAt);
+      long started = startedAt;
+      if (started > 0)
+      {
+         builder.add("queuedMillis", started - submittedAt);
+      }
+      long finished = finishedAt;
+      if (finished > 0)
+      {
+         builder.add("runMillis", finished - started);
+      }
+      if (error != null)
+      {
+         builder.add("error", error);
+      }
+      return builder.build();
+   }
+}
@@ -0,0 +1,186 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.job;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import io.openshift.launchpad.backend.workspace.WorkspaceManager;
+
+/**
+ * Runs {@link Job}s on a bounded pool of workers. Jobs are rejected once the queue is full, and completed jobs are
+ * kept until they expire.
+ */
+public class JobQueue implements AutoCloseable
+{
+   private static final Logger log = Logger.getLogger(JobQueue.class.getName());
+
+   private final ThreadPoolExecutor executor;
+   private final long resultTtlMillis;
+   private final WorkspaceManager workspaceManager;
+   private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+   private final LongAdder submitted = new LongAdder();
+   private final LongAdder rejected = new LongAdder();
+   private final LongAdder failed = new LongAdder();
+
+   /**
+    * The work done by a {@link Job}, which completes it
+    */
+   @FunctionalInterface
+   public interface Task
+   {
+      void run(Job job) throws Exception;
+   }
+
+   /**
+    * @param workers the number of jobs running at the same time
+    * @param queueLimit the number of jobs waiting for a worker, above which jobs are rejected
+    * @param resultTtlMillis how long a finished job is kept
+    * @param threadFactory creates the worker threads
+    * @param workspaceManager creates the workspaces holding the streamed results
+    */
+   public JobQueue(int workers, int queueLimit, long resultTtlMillis, ThreadFactory threadFactory,
+            WorkspaceManager workspaceManager)
+   {
+      this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+               new ArrayBlockingQueue<>(Math.max(1, queueLimit)), threadFactory);
+      this.resultTtlMillis = resultTtlMillis;
+      this.workspaceManager = workspaceManager;
+   }
+
+   /**
+    * Queues a job
+    *
+    * @param authorization the <code>Authorization</code> header of the request, required to get the result
+    * @return the queued job, or <code>null</code> if the queue is full
+    */
+   public Job submit(String commandName, String authorization, Task task)
+   {
+      Job job = new Job(commandName, authorization, workspaceManager);
+      jobs.put(job.getId(), job);
+      try
+      {
+         executor.execute(() -> run(job, task));
+      }
+      catch (RejectedExecutionException e)
+      {
+         jobs.remove(job.getId());
+         rejected.increment();
+         return null;
+      }
+      submitted.increment();
+      return job;
+   }
+
+   /**
+    * @return the job with the given id, or <code>null</code> if it does not exist or expired
+    */
+   public Job get(String id)
+   {
+      return jobs.get(id);
+   }
+
+   /**
+    * Removes the jobs finished for longer than the result TTL
+    */
+   public void evictExpired()
+   {
+      long expiredBefore = System.currentTimeMillis() - resultTtlMillis;
+      for (Iterator<Job> iterator = jobs.values().iterator(); iterator.hasNext();)
+      {
+         Job job = iterator.next();
+         if (job.isDone() && job.getFinishedAt() < expiredBefore)
+         {
+            iterator.remove();
+            job.discard();
+         }
+      }
+   }
+
+   @Override
+   public void close()
+   {
+      executor.shutdownNow();
+      jobs.values().forEach(Job::discard);
+      jobs.clear();
+   }
+
+   /**
+    * @return the number of jobs waiting for a worker
+    */
+   public int getQueueSize()
+   {
+      return executor.getQueue().size();
+   }
+
+   /**
+    * @return the number of jobs being run
+    */
+   public int getRunning()
+   {
+      return executor.getActiveCount();
+   }
+
+   public long getSubmitted()
+   {
+      return submitted.sum();
+   }
+
+   /**
+    * @return the number of jobs rejected because the queue was full
+    */
+   public long getRejected()
+   {
+      return rejected.sum();
+   }
+
+   public long getFailed()
+   {
+      return failed.sum();
+   }
+
+   private void run(Job job, Task task)
+   {
+      job.started();
+      try
+      {
+         task.run(job);
+      }
+      catch (Exception e)
+      {
+         log.log(Level.WARNING, "Job " + job.getId() + " failed", e);
+         failed.increment();
+         job.failed(e);
+      }
+      finally
+      {
+         if (!job.isDone())
+         {
+            job.failed(new IllegalStateException("Job did not complete"));
+         }
+      }
+   }
+}
@@ -0,0 +1,35 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.metrics;
+
+/**
+ * The {@link io.openshift.launchpad.backend.rest.LaunchpadResource} endpoint classes measured by
+ * {@link LaunchpadMetrics}
+ */
+public enum Endpoint
+{
+   METADATA, VALIDATE, NEXT, SESSION, ZIP, MISSIONCONTROL, JOB, BATCH;
+
+   private final String label = name().toLowerCase();
+
+   /**
+    * @return the value used for the <code>endpoint</code> label
+    */
+   public String getLabel()
+   {
+      return label;
+   }
+}
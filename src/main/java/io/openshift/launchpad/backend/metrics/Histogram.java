@@ -0,0 +1,90 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A latency histogram with fixed buckets. Recording a value does not allocate.
+ */
+public class Histogram
+{
+   /**
+    * Upper bounds of the buckets, in nanoseconds
+    */
+   static final long[] BUCKETS = {
+            TimeUnit.MILLISECONDS.toNanos(1),
+            TimeUnit.MILLISECONDS.toNanos(5),
+            TimeUnit.MILLISECONDS.toNanos(10),
+            TimeUnit.MILLISECONDS.toNanos(25),
+            TimeUnit.MILLISECONDS.toNanos(50),
+            TimeUnit.MILLISECONDS.toNanos(100),
+            TimeUnit.MILLISECONDS.toNanos(250),
+            TimeUnit.MILLISECONDS.toNanos(500),
+            TimeUnit.SECONDS.toNanos(1),
+            TimeUnit.MILLISECONDS.toNanos(2500),
+            TimeUnit.SECONDS.toNanos(5),
+            TimeUnit.SECONDS.toNanos(10),
+            TimeUnit.SECONDS.toNanos(30)
+   };
+
+   private final LongAdder[] counts = new LongAdder[BUCKETS.length + 1];
+   private final LongAdder sum = new LongAdder();
+
+   public Histogram()
+   {
+      for (int i = 0; i < counts.length; i++)
+      {
+         counts[i] = new LongAdder();
+      }
+   }
+
+   /**
+    * @param nanos the measured duration in nanoseconds
+    */
+   public void record(long nanos)
+   {
+      int bucket = 0;
+      while (bucket < BUCKETS.length && nanos > BUCKETS[bucket])
+      {
+         bucket++;
+      }
+      counts[bucket].increment();
+      sum.add(nanos);
+   }
+
+   /**
+    * @return the number of recorded values in each bucket, the last one being unbounded
+    */
+   long[] getCounts()
+   {
+      long[] result = new long[counts.length];
+      for (int i = 0; i < counts.length; i++)
+      {
+         result[i] = counts[i].sum();
+      }
+      return result;
+   }
+
+   /**
+    * @return the sum of the recorded values, in nanoseconds
+    */
+   long getSum()
+   {
+      return sum.sum();
+   }
+}
@@ -0,0 +1,242 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import javax.enterprise.context.ApplicationScoped;
+
+/**
+ * Collects the latency of each {@link Phase} of the Launchpad endpoints, per command and {@link Endpoint}, together
+ * with gauges and counters registered by the other components.
+ * <p>
+ * The histograms of a command are created once by {@link #registerCommand(String)}, so recording a phase is a map
+ * lookup, a {@link System#nanoTime()} call and two {@link java.util.concurrent.atomic.LongAdder} updates. The metrics
+ * are rendered in the Prometheus text exposition format by {@link #write(StringBuilder)}.
+ */
+@ApplicationScoped
+public class LaunchpadMetrics
+{
+   private static final String PREFIX = "launchpad_";
+   private static final double NANOS_PER_SECOND = 1_000_000_000d;
+
+   private final Map<String, Histogram[][]> histograms = new ConcurrentHashMap<>();
+   private final AtomicInteger[] inFlight = new AtomicInteger[Endpoint.values().length];
+   private final Map<String, Family> families = new LinkedHashMap<>();
+
+   public LaunchpadMetrics()
+   {
+      for (int i = 0; i < inFlight.length; i++)
+      {
+         inFlight[i] = new AtomicInteger();
+      }
+   }
+
+   /**
+    * Creates the histograms of the given command. Phases recorded for unregistered commands are ignored.
+    */
+   public void registerCommand(String commandName)
+   {
+      histograms.computeIfAbsent(commandName, name -> {
+         Histogram[][] byEndpoint = new Histogram[Endpoint.values().length][Phase.values().length];
+         for (Histogram[] byPhase : byEndpoint)
+         {
+            for (int i = 0; i < byPhase.length; i++)
+            {
+               byPhase[i] = new Histogram();
+            }
+         }
+         return byEndpoint;
+      });
+   }
+
+   /**
+    * Marks the start of a request
+    *
+    * @return the start time, to be passed to {@link #record(String, Endpoint, Phase, long)} and
+    *         {@link #finish(String, Endpoint, long)}
+    */
+   public long start(Endpoint endpoint)
+   {
+      inFlight[endpoint.ordinal()].incrementAndGet();
+      return System.nanoTime();
+   }
+
+   /**
+    * Records the time elapsed since <code>startNanos</code> for the given phase
+    *
+    * @return the current time, to be used as the start of the next phase
+    */
+   public long record(String commandName, Endpoint endpoint, Phase phase, long startNanos)
+   {
+      long now = System.nanoTime();
+      Histogram[][] byEndpoint = histograms.get(commandName);
+      if (byEndpoint != null)
+      {
+         byEndpoint[endpoint.ordinal()][phase.ordinal()].record(now - startNanos);
+      }
+      return now;
+   }
+
+   /**
+    * Records the total time of a request started with {@link #start(Endpoint)}
+    */
+   public void finish(String commandName, Endpoint endpoint, long startNanos)
+   {
+      record(commandName, endpoint, Phase.TOTAL, startNanos);
+      inFlight[endpoint.ordinal()].decrementAndGet();
+   }
+
+   /**
+    * @return the number of requests in flight for the given endpoint
+    */
+   public int getInFlight(Endpoint endpoint)
+   {
+      return inFlight[endpoint.ordinal()].get();
+   }
+
+   /**
+    * Registers a value that can go up and down
+    *
+    * @param name the metric name, without the <code>launchpad_</code> prefix
+    * @param labels the Prometheus labels, e.g. <code>command="launchpad-new-project"</code>, or <code>null</code>
+    */
+   public void registerGauge(String name, String help, String labels, LongSupplier value)
+   {
+      register(name, help, "gauge", labels, value);
+   }
+
+   /**
+    * Registers a value that only goes up
+    *
+    * @param name the metric name, without the <code>launchpad_</code> prefix
+    * @param labels the Prometheus labels, e.g. <code>command="launchpad-new-project"</code>, or <code>null</code>
+    */
+   public void registerCounter(String name, String help, String labels, LongSupplier value)
+   {
+      register(name, help, "counter", labels, value);
+   }
+
+   private synchronized void register(String name, String help, String type, String labels, LongSupplier value)
+   {
+      families.computeIfAbsent(PREFIX + name, key -> new Family(help, type)).samples.put(labels, value);
+   }
+
+   /**
+    * Writes every metric in the Prometheus text exposition format, version 0.0.4
+    */
+   public void write(StringBuilder out)
+   {
+      String name = PREFIX + "requests_in_flight";
+      writeHeader(out, name, "Requests currently being processed", "gauge");
+      for (Endpoint endpoint : Endpoint.values())
+      {
+         writeSample(out, name, "endpoint=\"" + endpoint.getLabel() + "\"", getInFlight(endpoint));
+      }
+      writeHistograms(out);
+      synchronized (this)
+      {
+         for (Map.Entry<String, Family> family : families.entrySet())
+         {
+            writeHeader(out, family.getKey(), family.getValue().help, family.getValue().type);
+            for (Map.Entry<String, LongSupplier> sample : family.getValue().samples.entrySet())
+            {
+               writeSample(out, family.getKey(), sample.getKey(), sample.getValue().getAsLong());
+            }
+         }
+      }
+   }
+
+   private void writeHistograms(StringBuilder out)
+   {
+      String name = PREFIX + "phase_duration_seconds";
+      writeHeader(out, name, "Time spent in each phase of a request", "histogram");
+      for (Map.Entry<String, Histogram[][]> command : new TreeMap<>(histograms).entrySet())
+      {
+         for (Endpoint endpoint : Endpoint.values())
+         {
+            for (Phase phase : Phase.values())
+            {
+               Histogram histogram = command.getValue()[endpoint.ordinal()][phase.ordinal()];
+               long[] counts = histogram.getCounts();
+               long count = 0;
+               for (long bucketCount : counts)
+               {
+                  count += bucketCount;
+               }
+               if (count == 0)
+               {
+                  continue;
+               }
+               String labels = "command=\"" + command.getKey() + "\",endpoint=\"" + endpoint.getLabel()
+                        + "\",phase=\"" + phase.getLabel() + "\"";
+               long cumulative = 0;
+               for (int i = 0; i < counts.length; i++)
+               {
+                  cumulative += counts[i];
+                  String le = i < Histogram.BUCKETS.length ? toSeconds(Histogram.BUCKETS[i]) : "+Inf";
+                  writeSample(out, name + "_bucket", labels + ",le=\"" + le + "\"", cumulative);
+               }
+               out.append(name).append("_sum{").append(labels).append("} ")
+                        .append(toSeconds(histogram.getSum())).append('\n');
+               writeSample(out, name + "_count", labels, cumulative);
+            }
+         }
+      }
+   }
+
+   private static void writeHeader(StringBuilder out, String name, String help, String type)
+   {
+      out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+      out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+   }
+
+   private static void writeSample(StringBuilder out, String name, String labels, long value)
+   {
+      out.append(name);
+      if (labels != null)
+      {
+         out.append('{').append(labels).append('}');
+      }
+      out.append(' ').append(value).append('\n');
+   }
+
+   private static String toSeconds(long nanos)
+   {
+      return Double.toString(nanos / NANOS_PER_SECOND);
+   }
+
+   /**
+    * Samples sharing a metric name, keyed by their labels
+    */
+   private static class Family
+   {
+      private final String help;
+      private final String type;
+      private final Map<String, LongSupplier> samples = new LinkedHashMap<>();
+
+      Family(String help, String type)
+      {
+         this.help = help;
+         this.type = type;
+      }
+   }
+}
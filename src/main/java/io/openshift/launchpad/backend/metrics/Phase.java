@@ -0,0 +1,81 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.metrics;
+
+/**
+ * The phases of a request measured by {@link LaunchpadMetrics}
+ */
+public enum Phase
+{
+   /**
+    * The whole request
+    */
+   TOTAL,
+   /**
+    * Waiting in the job queue
+    */
+   QUEUE,
+   /**
+    * Creating or acquiring an initialized command controller
+    */
+   CONTROLLER,
+   /**
+    * Populating the controller inputs
+    */
+   POPULATE,
+   /**
+    * Validating the controller inputs
+    */
+   VALIDATE,
+   /**
+    * Moving the wizard between steps
+    */
+   NAVIGATE,
+   /**
+    * Executing the command
+    */
+   EXECUTE,
+   /**
+    * Writing the generated project from a booster snapshot instead of executing the command
+    */
+   SNAPSHOT,
+   /**
+    * Describing the controller as JSON
+    */
+   DESCRIBE,
+   /**
+    * Deleting the .openshiftio directory of a generated project
+    */
+   CLEANUP,
+   /**
+    * Zipping the generated project
+    */
+   ZIP,
+   /**
+    * Uploading the generated project to Mission Control
+    */
+   UPLOAD;
+
+   private final String label = name().toLowerCase();
+
+   /**
+    * @return the value used for the <code>phase</code> label
+    */
+   public String getLabel()
+   {
+      return label;
+   }
+}
@@ -0,0 +1,170 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.missioncontrol;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.jboss.resteasy.plugins.providers.multipart.MultipartFormDataOutput;
+
+import io.openshift.launchpad.backend.util.Paths;
+
+/**
+ * Uploads generated projects to Mission Control.
+ * <p>
+ * The project is zipped on a separate thread into a pipe that is read by the {@link MissionControlClient} while it
+ * sends a chunked request, so zipping and uploading overlap and the archive is never held in memory.
+ */
+public class MissionControl
+{
+   private static final int PIPE_BUFFER_SIZE = 64 * 1024;
+
+   private final URI uploadURI;
+   private final MissionControlClient client;
+   private final Executor executor;
+
+   /**
+    * @param uploadURI the Mission Control upload endpoint
+    * @param client the client used to send requests
+    * @param executor the {@link Executor} that zips projects while they are uploaded
+    */
+   public MissionControl(URI uploadURI, MissionControlClient client, Executor executor)
+   {
+      this.uploadURI = uploadURI;
+      this.client = client;
+      this.executor = executor;
+   }
+
+   /**
+    * Zips and uploads the given project directory
+    *
+    * @param artifactId the root directory name inside the archive
+    * @param projectPath the directory to upload
+    * @param gitHubRepositoryDescription the description of the GitHub repository created by Mission Control
+    * @param authorization the Authorization header to propagate
+    * @return the response to be returned to the caller
+    */
+   public Response upload(String artifactId, Path projectPath, String gitHubRepositoryDescription,
+            String authorization) throws IOException
+   {
+      try (InputStream zipContents = zip(artifactId, projectPath))
+      {
+         // Create request body
+         MultipartFormDataOutput multipartFormDataOutput = new MultipartFormDataOutput();
+         multipartFormDataOutput.addFormData("file", zipContents,
+                  MediaType.MULTIPART_FORM_DATA_TYPE, "project.zip");
+         multipartFormDataOutput.addFormData("gitHubRepositoryDescription", gitHubRepositoryDescription,
+                  MediaType.APPLICATION_FORM_URLENCODED_TYPE);
+
+         // Execute POST Request
+         Response post = client.execute(uploadURI, target -> target
+                  .property(HttpHeaders.CONTENT_TYPE, MediaType.MULTIPART_FORM_DATA)
+                  .request()
+                  .header(HttpHeaders.CONTENT_TYPE, MediaType.MULTIPART_FORM_DATA)
+                  // Propagate Authorization header
+                  .header(HttpHeaders.AUTHORIZATION, authorization)
+                  .post(Entity.entity(multipartFormDataOutput, MediaType.MULTIPART_FORM_DATA_TYPE)));
+         try
+         {
+            URI location = post.getLocation();
+            if (location != null)
+            {
+               return Response.ok(location.toString()).build();
+            }
+            else
+            {
+               return Response.ok(post.readEntity(String.class), MediaType.APPLICATION_JSON).build();
+            }
+         }
+         finally
+         {
+            // Releases the pooled connection
+            post.close();
+         }
+      }
+   }
+
+   /**
+    * Zips the directory on the executor and returns the read side of the pipe it is written to
+    */
+   private InputStream zip(String artifactId, Path projectPath) throws IOException
+   {
+      PipedInputStream in = new PipedInputStream(PIPE_BUFFER_SIZE);
+      PipedOutputStream out = new PipedOutputStream(in);
+      CompletableFuture<Void> zipping = CompletableFuture.runAsync(() -> {
+         try (OutputStream os = out)
+         {
+            Paths.zip(artifactId, projectPath, os);
+         }
+         catch (IOException e)
+         {
+            throw new UncheckedIOException(e);
+         }
+      }, executor);
+      return new FilterInputStream(in)
+      {
+         @Override
+         public int read() throws IOException
+         {
+            int read = super.read();
+            return read == -1 ? awaitZip(read) : read;
+         }
+
+         @Override
+         public int read(byte[] b, int off, int len) throws IOException
+         {
+            int read = super.read(b, off, len);
+            return read == -1 ? awaitZip(read) : read;
+         }
+
+         /**
+          * Makes sure a failed zip is reported instead of uploading a truncated archive
+          */
+         private int awaitZip(int read) throws IOException
+         {
+            try
+            {
+               zipping.get();
+               return read;
+            }
+            catch (InterruptedException e)
+            {
+               Thread.currentThread().interrupt();
+               throw new IOException("Interrupted while zipping " + projectPath, e);
+            }
+            catch (ExecutionException e)
+            {
+               throw new IOException("Error while zipping " + projectPath, e.getCause());
+            }
+         }
+      };
+   }
+}
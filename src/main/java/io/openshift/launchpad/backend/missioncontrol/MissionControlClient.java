@@ -0,0 +1,170 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.missioncontrol;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriBuilder;
+
+import org.jboss.resteasy.client.jaxrs.ClientHttpEngine;
+import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
+import org.jboss.resteasy.client.jaxrs.engines.ApacheHttpClient4Engine;
+
+import io.openshift.launchpad.backend.util.Configuration;
+
+/**
+ * The JAX-RS {@link Client} shared by every call to Mission Control.
+ * <p>
+ * The client keeps a pool of keep-alive connections and is thread-safe, so requests no longer pay for a new
+ * connection pool, TCP handshake and provider scanning every time. Requests are sent with chunked transfer encoding
+ * so that streamed entities are never buffered.
+ */
+@ApplicationScoped
+public class MissionControlClient
+{
+   private static final String LAUNCHPAD_BACKEND_HTTP_POOL_SIZE = "LAUNCHPAD_BACKEND_HTTP_POOL_SIZE";
+   private static final String LAUNCHPAD_BACKEND_HTTP_MAX_PER_ROUTE = "LAUNCHPAD_BACKEND_HTTP_MAX_PER_ROUTE";
+   private static final String LAUNCHPAD_BACKEND_HTTP_KEEP_ALIVE = "LAUNCHPAD_BACKEND_HTTP_KEEP_ALIVE";
+   private static final String LAUNCHPAD_BACKEND_HTTP_CONNECT_TIMEOUT = "LAUNCHPAD_BACKEND_HTTP_CONNECT_TIMEOUT";
+   private static final String LAUNCHPAD_BACKEND_HTTP_READ_TIMEOUT = "LAUNCHPAD_BACKEND_HTTP_READ_TIMEOUT";
+   private static final String LAUNCHPAD_MISSIONCONTROL_SERVICE_HOST = "LAUNCHPAD_MISSIONCONTROL_SERVICE_HOST";
+   private static final String LAUNCHPAD_MISSIONCONTROL_SERVICE_PORT = "LAUNCHPAD_MISSIONCONTROL_SERVICE_PORT";
+
+   private int poolSize;
+   private int maxPerRoute;
+   private Client client;
+
+   private final AtomicInteger inFlight = new AtomicInteger();
+   private final AtomicInteger peakInFlight = new AtomicInteger();
+   private final LongAdder requests = new LongAdder();
+   private final LongAdder failures = new LongAdder();
+
+   @PostConstruct
+   void init()
+   {
+      poolSize = Configuration.getInt(LAUNCHPAD_BACKEND_HTTP_POOL_SIZE, 20);
+      maxPerRoute = Configuration.getInt(LAUNCHPAD_BACKEND_HTTP_MAX_PER_ROUTE, poolSize);
+      client = new ResteasyClientBuilder()
+      {
+         @Override
+         protected ClientHttpEngine initDefaultEngine()
+         {
+            ApacheHttpClient4Engine engine = (ApacheHttpClient4Engine) super.initDefaultEngine();
+            engine.setChunked(true);
+            return engine;
+         }
+      }
+               .connectionPoolSize(poolSize)
+               .maxPooledPerRoute(maxPerRoute)
+               .connectionTTL(Configuration.getLong(LAUNCHPAD_BACKEND_HTTP_KEEP_ALIVE, 60), TimeUnit.SECONDS)
+               .establishConnectionTimeout(Configuration.getLong(LAUNCHPAD_BACKEND_HTTP_CONNECT_TIMEOUT, 5),
+                        TimeUnit.SECONDS)
+               .socketTimeout(Configuration.getLong(LAUNCHPAD_BACKEND_HTTP_READ_TIMEOUT, 60), TimeUnit.SECONDS)
+               .build();
+   }
+
+   @PreDestroy
+   void destroy()
+   {
+      client.close();
+   }
+
+   /**
+    * Executes a request against the given {@link URI}, keeping track of the number of requests in flight
+    *
+    * @param uri the request target
+    * @param request the function that sends the request
+    * @return the {@link Response} returned by the request function
+    */
+   public Response execute(URI uri, Function<WebTarget, Response> request)
+   {
+      requests.increment();
+      peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+      try
+      {
+         return request.apply(client.target(uri));
+      }
+      catch (RuntimeException e)
+      {
+         failures.increment();
+         throw e;
+      }
+      finally
+      {
+         inFlight.decrementAndGet();
+      }
+   }
+
+   /**
+    * @return the connection pool configuration and usage
+    */
+   public JsonObject getStatistics()
+   {
+      return Json.createObjectBuilder()
+               .add("poolSize", poolSize)
+               .add("maxPerRoute", maxPerRoute)
+               .add("inFlight", inFlight.get())
+               .add("peakInFlight", peakInFlight.get())
+               .add("requests", requests.sum())
+               .add("failures", failures.sum())
+               .build();
+   }
+
+   /**
+    * @return the readiness endpoint of the Mission Control service
+    */
+   public static URI createMissionControlUri()
+   {
+      String host = System.getProperty(LAUNCHPAD_MISSIONCONTROL_SERVICE_HOST,
+               System.getenv(LAUNCHPAD_MISSIONCONTROL_SERVICE_HOST));
+      if (host == null)
+      {
+         host = "mission-control";
+      }
+      UriBuilder uri = UriBuilder.fromPath("/api/health/ready").host(host).scheme("http");
+      String port = System.getProperty(LAUNCHPAD_MISSIONCONTROL_SERVICE_PORT,
+               System.getenv(LAUNCHPAD_MISSIONCONTROL_SERVICE_PORT));
+      uri.port(port != null ? Integer.parseInt(port) : 80);
+      return uri.build();
+   }
+
+   public int getInFlight()
+   {
+      return inFlight.get();
+   }
+
+   public long getRequests()
+   {
+      return requests.sum();
+   }
+
+   public long getFailures()
+   {
+      return failures.sum();
+   }
+}
@@ -0,0 +1,229 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.missioncontrol;
+
+import java.io.StringReader;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonValue;
+import javax.ws.rs.core.Response;
+
+import io.openshift.launchpad.backend.event.FurnaceStartup;
+import io.openshift.launchpad.backend.util.Configuration;
+
+/**
+ * Keeps the last known Mission Control readiness status in memory.
+ * <p>
+ * The status is refreshed by a background task at a fixed interval, started with Furnace so that the first readiness
+ * probe finds a status already checked. When the cached status is older than the maximum age, callers trigger a
+ * refresh and share a single in-flight request, waiting for it for a bounded time before falling back to the stale
+ * status. The age of the returned status is reported in the <code>ageMillis</code>
+ * attribute.
+ */
+@ApplicationScoped
+public class MissionControlReadiness
+{
+   private static final Logger log = Logger.getLogger(MissionControlReadiness.class.getName());
+
+   private static final String LAUNCHPAD_BACKEND_MISSIONCONTROL_READY_INTERVAL = "LAUNCHPAD_BACKEND_MISSIONCONTROL_READY_INTERVAL";
+   private static final String LAUNCHPAD_BACKEND_MISSIONCONTROL_READY_MAX_AGE = "LAUNCHPAD_BACKEND_MISSIONCONTROL_READY_MAX_AGE";
+   private static final String LAUNCHPAD_BACKEND_MISSIONCONTROL_READY_WAIT = "LAUNCHPAD_BACKEND_MISSIONCONTROL_READY_WAIT";
+
+   private static final String STATUS = "status";
+   private static final String REASON = "reason";
+   private static final String ERROR = "ERROR";
+   private static final String AGE_MILLIS = "ageMillis";
+
+   @Inject
+   MissionControlClient missionControlClient;
+
+   @Resource
+   ManagedScheduledExecutorService scheduledExecutorService;
+
+   private URI readyURI;
+   private long interval;
+   private long maxAgeMillis;
+   private long waitMillis;
+   private ScheduledFuture<?> scheduledRefresh;
+
+   private volatile CheckedStatus current;
+   private final AtomicReference<CompletableFuture<CheckedStatus>> inFlight = new AtomicReference<>();
+
+   @PostConstruct
+   void init()
+   {
+      readyURI = MissionControlClient.createMissionControlUri();
+      interval = Configuration.getLong(LAUNCHPAD_BACKEND_MISSIONCONTROL_READY_INTERVAL, 10);
+      maxAgeMillis = TimeUnit.SECONDS.toMillis(
+               Configuration.getLong(LAUNCHPAD_BACKEND_MISSIONCONTROL_READY_MAX_AGE, 3 * interval));
+      waitMillis = TimeUnit.SECONDS.toMillis(Configuration.getLong(LAUNCHPAD_BACKEND_MISSIONCONTROL_READY_WAIT, 2));
+   }
+
+   void start(@Observes FurnaceStartup startup)
+   {
+      scheduledRefresh = scheduledExecutorService.scheduleWithFixedDelay(this::refresh, 0, interval,
+               TimeUnit.SECONDS);
+   }
+
+   @PreDestroy
+   void destroy()
+   {
+      if (scheduledRefresh != null)
+      {
+         scheduledRefresh.cancel(false);
+      }
+   }
+
+   /**
+    * @return the last known Mission Control status and its age
+    */
+   public JsonObject getStatus()
+   {
+      CheckedStatus status = current;
+      if (status == null || status.getAge() > maxAgeMillis)
+      {
+         try
+         {
+            status = refresh().get(waitMillis, TimeUnit.MILLISECONDS);
+         }
+         catch (InterruptedException e)
+         {
+            Thread.currentThread().interrupt();
+         }
+         catch (ExecutionException | TimeoutException e)
+         {
+            log.log(Level.FINE, "Mission Control status refresh did not complete", e);
+         }
+         if (status == null)
+         {
+            status = current;
+         }
+      }
+      if (status == null)
+      {
+         return Json.createObjectBuilder().add(STATUS, ERROR).add(REASON, "Mission Control status unknown").build();
+      }
+      return status.toJson();
+   }
+
+   /**
+    * Starts a status check, or joins the one in flight
+    */
+   CompletableFuture<CheckedStatus> refresh()
+   {
+      while (true)
+      {
+         CompletableFuture<CheckedStatus> existing = inFlight.get();
+         if (existing != null)
+         {
+            return existing;
+         }
+         CompletableFuture<CheckedStatus> created = new CompletableFuture<>();
+         if (inFlight.compareAndSet(null, created))
+         {
+            try
+            {
+               scheduledExecutorService.execute(() -> complete(created));
+            }
+            catch (RejectedExecutionException e)
+            {
+               inFlight.compareAndSet(created, null);
+               created.completeExceptionally(e);
+            }
+            return created;
+         }
+      }
+   }
+
+   private void complete(CompletableFuture<CheckedStatus> future)
+   {
+      CheckedStatus status = new CheckedStatus(check());
+      current = status;
+      inFlight.compareAndSet(future, null);
+      future.complete(status);
+   }
+
+   private JsonObject check()
+   {
+      try
+      {
+         Response response = missionControlClient.execute(readyURI, target -> target.request().get());
+         try
+         {
+            String json = response.readEntity(String.class);
+            return Json.createReader(new StringReader(json)).readObject();
+         }
+         finally
+         {
+            response.close();
+         }
+      }
+      catch (Exception ex)
+      {
+         String message = ex.getCause() == null ? ex.getMessage() : ex.getCause().getMessage();
+         return Json.createObjectBuilder().add(STATUS, ERROR).add(REASON, String.valueOf(message)).build();
+      }
+   }
+
+   /**
+    * A Mission Control status and the time it was received
+    */
+   static class CheckedStatus
+   {
+      private final JsonObject status;
+      private final long timestamp = System.currentTimeMillis();
+
+      CheckedStatus(JsonObject status)
+      {
+         this.status = status;
+      }
+
+      long getAge()
+      {
+         return System.currentTimeMillis() - timestamp;
+      }
+
+      JsonObject toJson()
+      {
+         JsonObjectBuilder builder = Json.createObjectBuilder();
+         for (Map.Entry<String, JsonValue> entry : status.entrySet())
+         {
+            builder.add(entry.getKey(), entry.getValue());
+         }
+         return builder.add(AGE_MILLIS, getAge()).build();
+      }
+   }
+}
@@ -0,0 +1,153 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.rest;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import io.openshift.launchpad.backend.admission.AdmissionController;
+import io.openshift.launchpad.backend.admission.ConcurrencyLimiter;
+import io.openshift.launchpad.backend.metrics.Endpoint;
+
+/**
+ * Admits the requests of {@link LaunchpadResource} according to the limits of the {@link AdmissionController}.
+ * Requests that cannot be admitted in time are rejected with <code>503 Service Unavailable</code> and a
+ * <code>Retry-After</code> header.
+ * <p>
+ * The permit is given back once the response entity is written, so that streamed zips count against the limit until
+ * they are fully sent. Requests that end without writing an entity, including the ones failing with an exception, give
+ * it back through {@link RequestCompletion}.
+ */
+@ApplicationScoped
+public class AdmissionFilter implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor
+{
+   private static final String PERMIT = AdmissionFilter.class.getName() + ".permit";
+
+   @Inject
+   private AdmissionController admissionController;
+
+   public AdmissionFilter()
+   {
+   }
+
+   AdmissionFilter(AdmissionController admissionController)
+   {
+      this.admissionController = admissionController;
+   }
+
+   @Override
+   public void filter(ContainerRequestContext requestContext) throws IOException
+   {
+      Endpoint endpoint = admissionController.classify(requestContext.getMethod(),
+               requestContext.getUriInfo().getPath());
+      if (endpoint == null)
+      {
+         return;
+      }
+      ConcurrencyLimiter limiter = admissionController.getLimiter(endpoint);
+      boolean admitted;
+      try
+      {
+         admitted = limiter.acquire(admissionController.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         admitted = false;
+      }
+      if (admitted)
+      {
+         Permit permit = new Permit(limiter);
+         requestContext.setProperty(PERMIT, permit);
+         RequestCompletion.register(requestContext, permit::release);
+      }
+      else
+      {
+         requestContext.abortWith(Response.status(Status.SERVICE_UNAVAILABLE)
+                  .header(HttpHeaders.RETRY_AFTER, admissionController.getRetryAfterSeconds())
+                  .entity("Too many concurrent '" + endpoint.getLabel() + "' requests")
+                  .type(MediaType.TEXT_PLAIN)
+                  .build());
+      }
+   }
+
+   @Override
+   public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext)
+            throws IOException
+   {
+      Permit permit = (Permit) requestContext.getProperty(PERMIT);
+      if (permit != null && !responseContext.hasEntity())
+      {
+         // No entity to write, the request is over
+         requestContext.removeProperty(PERMIT);
+         permit.release();
+      }
+   }
+
+   @Override
+   public void aroundWriteTo(WriterInterceptorContext context) throws IOException
+   {
+      Permit permit = (Permit) context.getProperty(PERMIT);
+      try
+      {
+         context.proceed();
+      }
+      finally
+      {
+         if (permit != null)
+         {
+            context.removeProperty(PERMIT);
+            permit.release();
+         }
+      }
+   }
+
+   /**
+    * Releases its {@link ConcurrencyLimiter} at most once
+    */
+   private static class Permit
+   {
+      private final ConcurrencyLimiter limiter;
+      private final AtomicBoolean released = new AtomicBoolean();
+
+      Permit(ConcurrencyLimiter limiter)
+      {
+         this.limiter = limiter;
+      }
+
+      void release()
+      {
+         if (released.compareAndSet(false, true))
+         {
+            limiter.release();
+         }
+      }
+   }
+}
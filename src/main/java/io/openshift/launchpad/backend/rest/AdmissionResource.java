@@ -0,0 +1,109 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.rest;
+
+import java.util.Locale;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.json.JsonObject;
+import javax.ws.rs.ForbiddenException;
+import javax.ws.rs.GET;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response.Status;
+
+import io.openshift.launchpad.backend.admission.AdmissionController;
+import io.openshift.launchpad.backend.admission.ConcurrencyLimiter;
+import io.openshift.launchpad.backend.metrics.Endpoint;
+import io.openshift.launchpad.backend.util.Configuration;
+
+/**
+ * Reports and adjusts the concurrency limits of the {@link AdmissionController}. Adjusting is disabled unless
+ * <code>LAUNCHPAD_BACKEND_ADMISSION_ADJUST_ENABLED</code> is set, as the endpoint is not authenticated.
+ */
+@Path(AdmissionResource.PATH_ADMISSION)
+@ApplicationScoped
+public class AdmissionResource
+{
+   public static final String PATH_ADMISSION = "/admission";
+
+   private static final String LAUNCHPAD_BACKEND_ADMISSION_ADJUST_ENABLED = "LAUNCHPAD_BACKEND_ADMISSION_ADJUST_ENABLED";
+
+   private final boolean adjustEnabled = Configuration.getBoolean(LAUNCHPAD_BACKEND_ADMISSION_ADJUST_ENABLED, false);
+
+   @Inject
+   private AdmissionController admissionController;
+
+   @GET
+   @Produces(MediaType.APPLICATION_JSON)
+   public JsonObject limits()
+   {
+      return admissionController.getStatistics();
+   }
+
+   /**
+    * Changes the limit and queue size of an endpoint class, eg. <code>PUT /admission/zip?limit=2&amp;queue=10</code>
+    *
+    * @param limit at least 1
+    * @param queue at least 0
+    */
+   @PUT
+   @Path("/{endpoint}")
+   @Produces(MediaType.APPLICATION_JSON)
+   public JsonObject adjust(@PathParam("endpoint") String endpoint, @QueryParam("limit") Integer limit,
+            @QueryParam("queue") Integer queue)
+   {
+      if (!adjustEnabled)
+      {
+         throw new ForbiddenException("Adjusting the admission limits is disabled");
+      }
+      ConcurrencyLimiter limiter = null;
+      for (Endpoint candidate : Endpoint.values())
+      {
+         if (candidate.name().equals(endpoint.toUpperCase(Locale.ENGLISH)))
+         {
+            limiter = admissionController.getLimiter(candidate);
+         }
+      }
+      if (limiter == null)
+      {
+         throw new WebApplicationException("No such endpoint class '" + endpoint + "'", Status.NOT_FOUND);
+      }
+      if (limit != null && limit < 1)
+      {
+         throw new WebApplicationException("The limit must be at least 1", Status.BAD_REQUEST);
+      }
+      if (queue != null && queue < 0)
+      {
+         throw new WebApplicationException("The queue size cannot be negative", Status.BAD_REQUEST);
+      }
+      if (limit != null)
+      {
+         limiter.setLimit(limit);
+      }
+      if (queue != null)
+      {
+         limiter.setMaxQueue(queue);
+      }
+      return limiter.getStatistics();
+   }
+}
@@ -0,0 +1,206 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonValue;
+import javax.ws.rs.core.StreamingOutput;
+
+import io.openshift.launchpad.backend.util.Paths;
+
+/**
+ * The archive of a batch generation: every generated project in a directory named after its artifactId, and the
+ * outcome of every input set in <code>batch-report.json</code>.
+ * <p>
+ * The input sets are generated by a bounded number of workers, started only when the archive is written, so that a
+ * response that is never written generates nothing and holds no workspace. Each project is written to the archive as
+ * soon as it is generated, and its workspace released right after. When writing fails, e.g. because the client went
+ * away, the input sets not started yet are skipped and the workspaces of those already generated are released. An
+ * archive is written once.
+ */
+class BatchArchive implements StreamingOutput
+{
+   static final String BATCH_REPORT = "batch-report.json";
+
+   /**
+    * Generates the project of an input set, recording the outcome in the item
+    */
+   interface Generator
+   {
+      void generate(JsonValue value, BatchItem item);
+   }
+
+   private final JsonArray items;
+   private final int workers;
+   private final Executor executor;
+   private final Generator generator;
+   private final AtomicBoolean cancelled = new AtomicBoolean();
+
+   /**
+    * @param items the input sets
+    * @param workers the maximum number of input sets generated at the same time
+    * @param executor runs the workers. When it refuses them all, the input sets are generated on the writing thread.
+    */
+   BatchArchive(JsonArray items, int workers, Executor executor, Generator generator)
+   {
+      this.items = items;
+      this.workers = workers;
+      this.executor = executor;
+      this.generator = generator;
+   }
+
+   @Override
+   public void write(OutputStream os) throws IOException
+   {
+      BlockingQueue<BatchItem> generated = new LinkedBlockingQueue<>();
+      AtomicInteger next = new AtomicInteger();
+      Runnable worker = () -> {
+         int index;
+         while ((index = next.getAndIncrement()) < items.size())
+         {
+            BatchItem item = new BatchItem(index);
+            if (cancelled.get())
+            {
+               item.skip();
+            }
+            else
+            {
+               generator.generate(items.get(index), item);
+            }
+            generated.add(item);
+         }
+      };
+      if (start(worker) == 0)
+      {
+         worker.run();
+      }
+      JsonObject[] reports = new JsonObject[items.size()];
+      Set<String> directories = new HashSet<>();
+      int remaining = items.size();
+      boolean interrupted = false;
+      try (ZipOutputStream zos = Paths.openZip(os))
+      {
+         while (remaining > 0)
+         {
+            BatchItem item = generated.take();
+            remaining--;
+            try
+            {
+               Path projectPath = item.getProjectPath();
+               if (projectPath != null)
+               {
+                  String directory = item.getArtifactId();
+                  for (int n = 2; !directories.add(directory); n++)
+                  {
+                     directory = item.getArtifactId() + "-" + n;
+                  }
+                  item.setDirectory(directory);
+                  Paths.zip(directory, projectPath, zos);
+                  zos.flush();
+               }
+               reports[item.getIndex()] = item.toJson();
+            }
+            finally
+            {
+               item.release();
+            }
+         }
+         JsonArrayBuilder report = Json.createArrayBuilder();
+         for (JsonObject itemReport : reports)
+         {
+            report.add(itemReport);
+         }
+         zos.putNextEntry(new ZipEntry(BATCH_REPORT));
+         zos.write(JsonStructureWriter.toString(Json.createObjectBuilder().add("items", report).build())
+                  .getBytes(StandardCharsets.UTF_8));
+         zos.closeEntry();
+      }
+      catch (InterruptedException e)
+      {
+         interrupted = true;
+         throw new IOException("Interrupted while generating a batch", e);
+      }
+      finally
+      {
+         // Releases the workspaces of the input sets not written
+         cancelled.set(true);
+         while (remaining > 0)
+         {
+            try
+            {
+               generated.take().release();
+               remaining--;
+            }
+            catch (InterruptedException e)
+            {
+               interrupted = true;
+            }
+         }
+         if (interrupted)
+         {
+            Thread.currentThread().interrupt();
+         }
+      }
+   }
+
+   /**
+    * @return <code>true</code> once writing the archive ended or failed, after which no input set is generated
+    */
+   boolean isCancelled()
+   {
+      return cancelled.get();
+   }
+
+   /**
+    * Starts the workers, those started taking over the input sets of the ones the executor refuses
+    *
+    * @return the number of workers started
+    */
+   private int start(Runnable worker)
+   {
+      int started = 0;
+      try
+      {
+         for (; started < Math.min(workers, items.size()); started++)
+         {
+            executor.execute(worker);
+         }
+      }
+      catch (RejectedExecutionException e)
+      {
+         // The workers started take over the remaining input sets
+      }
+      return started;
+   }
+}
@@ -0,0 +1,139 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.rest;
+
+import java.nio.file.Path;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+
+import io.openshift.launchpad.backend.workspace.Workspace;
+
+/**
+ * The outcome of one input set of a batch generation, reported in <code>batch-report.json</code>
+ */
+class BatchItem
+{
+   enum Status
+   {
+      OK, INVALID, FAILED, SKIPPED
+   }
+
+   private final int index;
+   private Status status = Status.OK;
+   private String artifactId;
+   private Workspace workspace;
+   private Path projectPath;
+   private String directory;
+   private String message;
+   private JsonObject validation;
+
+   BatchItem(int index)
+   {
+      this.index = index;
+   }
+
+   int getIndex()
+   {
+      return index;
+   }
+
+   String getArtifactId()
+   {
+      return artifactId;
+   }
+
+   void setArtifactId(String artifactId)
+   {
+      this.artifactId = artifactId;
+   }
+
+   void setWorkspace(Workspace workspace)
+   {
+      this.workspace = workspace;
+   }
+
+   /**
+    * @return the generated project, or <code>null</code> if the item failed
+    */
+   Path getProjectPath()
+   {
+      return status == Status.OK ? projectPath : null;
+   }
+
+   void setProjectPath(Path projectPath)
+   {
+      this.projectPath = projectPath;
+   }
+
+   /**
+    * @param directory the directory of the project in the combined archive
+    */
+   void setDirectory(String directory)
+   {
+      this.directory = directory;
+   }
+
+   void invalid(JsonObject validation)
+   {
+      this.status = Status.INVALID;
+      this.validation = validation;
+   }
+
+   void fail(String message)
+   {
+      this.status = Status.FAILED;
+      this.message = message;
+   }
+
+   void skip()
+   {
+      this.status = Status.SKIPPED;
+   }
+
+   /**
+    * Deletes the workspace of the item
+    */
+   void release()
+   {
+      if (workspace != null)
+      {
+         workspace.delete();
+         workspace = null;
+      }
+   }
+
+   JsonObject toJson()
+   {
+      JsonObjectBuilder builder = Json.createObjectBuilder()
+               .add("index", index)
+               .add("status", status.name());
+      if (directory != null)
+      {
+         builder.add("directory", directory);
+      }
+      if (message != null)
+      {
+         builder.add("message", message);
+      }
+      if (validation != null)
+      {
+         builder.add("validation", validation);
+      }
+      return builder.build();
+   }
+}
@@ -0,0 +1,184 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Buffers a response body until it reaches the compression threshold, then gzips it and everything written after it.
+ * Bodies smaller than the threshold are written as is by {@link #finish()}.
+ * <p>
+ * <code>onCompress</code> is called before the first compressed byte is written, so that the response headers can
+ * still be changed.
+ */
+class CompressingOutputStream extends FilterOutputStream
+{
+   private final int threshold;
+   private final int level;
+   private final Runnable onCompress;
+
+   private ByteArrayOutputStream buffer;
+   private GZIPOutputStream gzip;
+   private long uncompressedBytes;
+   private long compressedBytes;
+   private boolean finished;
+
+   CompressingOutputStream(OutputStream out, int threshold, int level, Runnable onCompress)
+   {
+      super(out);
+      this.threshold = threshold;
+      this.level = level;
+      this.onCompress = onCompress;
+      this.buffer = new ByteArrayOutputStream(Math.min(threshold, 8192));
+   }
+
+   @Override
+   public void write(int b) throws IOException
+   {
+      write(new byte[] { (byte) b }, 0, 1);
+   }
+
+   @Override
+   public void write(byte[] b, int off, int len) throws IOException
+   {
+      uncompressedBytes += len;
+      if (gzip != null)
+      {
+         gzip.write(b, off, len);
+         return;
+      }
+      buffer.write(b, off, len);
+      if (buffer.size() >= threshold)
+      {
+         onCompress.run();
+         gzip = gzip(new CountingOutputStream(out), level);
+         buffer.writeTo(gzip);
+         buffer = null;
+      }
+   }
+
+   @Override
+   public void flush() throws IOException
+   {
+      // Flushing the buffer would commit the response before knowing whether to compress it
+      if (gzip != null)
+      {
+         gzip.flush();
+      }
+   }
+
+   /**
+    * Writes the buffered bytes, or the gzip trailer once compressing. Does not close the underlying stream.
+    */
+   public void finish() throws IOException
+   {
+      if (finished)
+      {
+         return;
+      }
+      finished = true;
+      if (gzip != null)
+      {
+         gzip.finish();
+      }
+      else
+      {
+         buffer.writeTo(out);
+         compressedBytes = buffer.size();
+         buffer = null;
+      }
+      out.flush();
+   }
+
+   @Override
+   public void close() throws IOException
+   {
+      finish();
+      out.close();
+   }
+
+   /**
+    * @return whether the body went over the threshold
+    */
+   public boolean isCompressed()
+   {
+      return gzip != null;
+   }
+
+   /**
+    * @return the number of bytes written to this stream
+    */
+   public long getUncompressedBytes()
+   {
+      return uncompressedBytes;
+   }
+
+   /**
+    * @return the number of bytes written to the underlying stream, once finished
+    */
+   public long getCompressedBytes()
+   {
+      return compressedBytes;
+   }
+
+   /**
+    * Creates a {@link GZIPOutputStream} compressing at the given level, from 1 (fastest) to 9 (smallest)
+    */
+   static GZIPOutputStream gzip(OutputStream out, int level) throws IOException
+   {
+      return new GZIPOutputStream(out, 8192)
+      {
+         {
+            def.setLevel(level);
+         }
+      };
+   }
+
+   /**
+    * Counts the compressed bytes, without closing the response stream
+    */
+   private class CountingOutputStream extends FilterOutputStream
+   {
+      CountingOutputStream(OutputStream out)
+      {
+         super(out);
+      }
+
+      @Override
+      public void write(int b) throws IOException
+      {
+         out.write(b);
+         compressedBytes++;
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException
+      {
+         out.write(b, off, len);
+         compressedBytes += len;
+      }
+
+      @Override
+      public void close() throws IOException
+      {
+         out.flush();
+      }
+   }
+}
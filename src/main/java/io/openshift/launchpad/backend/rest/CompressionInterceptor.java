@@ -0,0 +1,372 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Priority;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import io.openshift.launchpad.backend.metrics.LaunchpadMetrics;
+import io.openshift.launchpad.backend.util.Configuration;
+
+/**
+ * Gzips the JSON and text responses of clients sending <code>Accept-Encoding: gzip</code>. Bodies smaller than the
+ * threshold are sent as is, and archives are never compressed again.
+ * <p>
+ * Responses carrying an <code>ETag</code>, like the command metadata, are compressed once and kept in a small LRU
+ * cache keyed by the tag. A cache hit skips the message body writer, so the body is neither serialized nor deflated
+ * again. The compressed representation gets its own strong tag, the original one suffixed with <code>-gzip</code>;
+ * resources evaluating conditional requests map it back with {@link #matchingTag(EntityTag, String)}.
+ * <p>
+ * The interceptor runs after the others, right before the message body writer, so that skipping the writer on a
+ * cache hit skips nothing else.
+ */
+@ApplicationScoped
+@Priority(Priorities.USER + 1000)
+public class CompressionInterceptor implements WriterInterceptor
+{
+   private static final String LAUNCHPAD_BACKEND_COMPRESSION_ENABLED = "LAUNCHPAD_BACKEND_COMPRESSION_ENABLED";
+   private static final String LAUNCHPAD_BACKEND_COMPRESSION_THRESHOLD = "LAUNCHPAD_BACKEND_COMPRESSION_THRESHOLD";
+   private static final String LAUNCHPAD_BACKEND_COMPRESSION_LEVEL = "LAUNCHPAD_BACKEND_COMPRESSION_LEVEL";
+   private static final String LAUNCHPAD_BACKEND_COMPRESSION_CACHE_SIZE = "LAUNCHPAD_BACKEND_COMPRESSION_CACHE_SIZE";
+
+   static final String GZIP = "gzip";
+
+   static final String GZIP_TAG_SUFFIX = "-" + GZIP;
+
+   private final boolean enabled;
+   private final int threshold;
+   private final int level;
+   private final int cacheSize;
+   private final Map<String, byte[]> cache;
+
+   private final LongAdder compressed = new LongAdder();
+   private final LongAdder identity = new LongAdder();
+   private final LongAdder uncompressedBytes = new LongAdder();
+   private final LongAdder compressedBytes = new LongAdder();
+   private final LongAdder cacheHits = new LongAdder();
+   private final LongAdder cacheMisses = new LongAdder();
+
+   @Context
+   HttpHeaders headers;
+
+   @Inject
+   private LaunchpadMetrics metrics;
+
+   public CompressionInterceptor()
+   {
+      this(Configuration.getBoolean(LAUNCHPAD_BACKEND_COMPRESSION_ENABLED, true),
+               Configuration.getInt(LAUNCHPAD_BACKEND_COMPRESSION_THRESHOLD, 1024),
+               Configuration.getInt(LAUNCHPAD_BACKEND_COMPRESSION_LEVEL, 6),
+               Configuration.getInt(LAUNCHPAD_BACKEND_COMPRESSION_CACHE_SIZE, 64));
+   }
+
+   CompressionInterceptor(boolean enabled, int threshold, int level, int cacheSize)
+   {
+      this.enabled = enabled;
+      this.threshold = threshold;
+      this.level = level;
+      this.cacheSize = cacheSize;
+      this.cache = new LinkedHashMap<String, byte[]>(16, 0.75f, true)
+      {
+         private static final long serialVersionUID = 1L;
+
+         @Override
+         protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest)
+         {
+            return size() > CompressionInterceptor.this.cacheSize;
+         }
+      };
+   }
+
+   @PostConstruct
+   void init()
+   {
+      metrics.registerCounter("compression_responses_total", "Responses written by content encoding",
+               "encoding=\"gzip\"", compressed::sum);
+      metrics.registerCounter("compression_responses_total", "Responses written by content encoding",
+               "encoding=\"identity\"", identity::sum);
+      metrics.registerCounter("compression_bytes_total", "Bytes of the compressed responses", "stage=\"uncompressed\"",
+               uncompressedBytes::sum);
+      metrics.registerCounter("compression_bytes_total", "Bytes of the compressed responses", "stage=\"compressed\"",
+               compressedBytes::sum);
+      metrics.registerCounter("compression_cache_hits_total", "Compressed bodies served from the cache", null,
+               cacheHits::sum);
+      metrics.registerCounter("compression_cache_misses_total", "Compressed bodies missing from the cache", null,
+               cacheMisses::sum);
+   }
+
+   @Override
+   public void aroundWriteTo(WriterInterceptorContext context) throws IOException
+   {
+      MultivaluedMap<String, Object> responseHeaders = context.getHeaders();
+      if (!enabled || !isCompressible(context.getMediaType())
+               || responseHeaders.containsKey(HttpHeaders.CONTENT_ENCODING))
+      {
+         context.proceed();
+         return;
+      }
+      responseHeaders.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+      if (!acceptsGzip(headers.getHeaderString(HttpHeaders.ACCEPT_ENCODING)))
+      {
+         identity.increment();
+         context.proceed();
+         return;
+      }
+      Object tag = responseHeaders.getFirst(HttpHeaders.ETAG);
+      if (tag != null && cacheSize > 0)
+      {
+         writeCached(context, tag instanceof EntityTag ? ((EntityTag) tag).getValue() : tag.toString());
+      }
+      else
+      {
+         writeCompressed(context);
+      }
+   }
+
+   /**
+    * Compresses the body while it is written
+    */
+   private void writeCompressed(WriterInterceptorContext context) throws IOException
+   {
+      OutputStream os = context.getOutputStream();
+      CompressingOutputStream compressing = new CompressingOutputStream(os, threshold, level,
+               () -> setEncoding(context));
+      context.setOutputStream(compressing);
+      try
+      {
+         context.proceed();
+         compressing.finish();
+      }
+      finally
+      {
+         context.setOutputStream(os);
+      }
+      count(compressing.isCompressed(), compressing.getUncompressedBytes(), compressing.getCompressedBytes());
+   }
+
+   /**
+    * Writes the compressed body of a tagged response from the cache, compressing and caching it on a miss
+    */
+   private void writeCached(WriterInterceptorContext context, String key) throws IOException
+   {
+      OutputStream os = context.getOutputStream();
+      byte[] body;
+      synchronized (cache)
+      {
+         body = cache.get(key);
+      }
+      if (body != null)
+      {
+         // The body is already known: this is the last interceptor, so only the writer is skipped
+         cacheHits.increment();
+      }
+      else
+      {
+         cacheMisses.increment();
+         ByteArrayOutputStream uncompressed = new ByteArrayOutputStream();
+         context.setOutputStream(uncompressed);
+         try
+         {
+            context.proceed();
+         }
+         finally
+         {
+            context.setOutputStream(os);
+         }
+         if (uncompressed.size() < threshold)
+         {
+            count(false, uncompressed.size(), uncompressed.size());
+            uncompressed.writeTo(os);
+            return;
+         }
+         body = compress(uncompressed);
+         synchronized (cache)
+         {
+            cache.put(key, body);
+         }
+         uncompressedBytes.add(uncompressed.size());
+      }
+      setEncoding(context);
+      compressed.increment();
+      compressedBytes.add(body.length);
+      os.write(body);
+   }
+
+   private byte[] compress(ByteArrayOutputStream uncompressed) throws IOException
+   {
+      ByteArrayOutputStream body = new ByteArrayOutputStream(uncompressed.size() / 4);
+      try (GZIPOutputStream gzip = CompressingOutputStream.gzip(body, level))
+      {
+         uncompressed.writeTo(gzip);
+      }
+      return body.toByteArray();
+   }
+
+   private void setEncoding(WriterInterceptorContext context)
+   {
+      MultivaluedMap<String, Object> responseHeaders = context.getHeaders();
+      responseHeaders.putSingle(HttpHeaders.CONTENT_ENCODING, GZIP);
+      responseHeaders.remove(HttpHeaders.CONTENT_LENGTH);
+      Object tag = responseHeaders.getFirst(HttpHeaders.ETAG);
+      if (tag instanceof EntityTag)
+      {
+         responseHeaders.putSingle(HttpHeaders.ETAG, gzipTag((EntityTag) tag));
+      }
+   }
+
+   /**
+    * @return the tag of the gzipped representation of the entity tagged with the given tag
+    */
+   static EntityTag gzipTag(EntityTag tag)
+   {
+      return new EntityTag(tag.getValue() + GZIP_TAG_SUFFIX, tag.isWeak());
+   }
+
+   /**
+    * Picks the tag to evaluate a conditional request against, as a client holding the gzipped representation sends
+    * back its tag rather than the one of the entity
+    *
+    * @param tag the tag of the uncompressed entity
+    * @param ifNoneMatch the <code>If-None-Match</code> header of the request, may be null
+    * @return the tag of the gzipped representation if the header names it, the given tag otherwise
+    */
+   public static EntityTag matchingTag(EntityTag tag, String ifNoneMatch)
+   {
+      if (ifNoneMatch != null && ifNoneMatch.contains('"' + tag.getValue() + GZIP_TAG_SUFFIX + '"'))
+      {
+         return gzipTag(tag);
+      }
+      return tag;
+   }
+
+   private void count(boolean isCompressed, long uncompressedSize, long compressedSize)
+   {
+      if (isCompressed)
+      {
+         compressed.increment();
+         uncompressedBytes.add(uncompressedSize);
+         compressedBytes.add(compressedSize);
+      }
+      else
+      {
+         identity.increment();
+      }
+   }
+
+   /**
+    * @return whether the media type is text, JSON, XML or JavaScript
+    */
+   static boolean isCompressible(MediaType mediaType)
+   {
+      if (mediaType == null)
+      {
+         return false;
+      }
+      if ("text".equalsIgnoreCase(mediaType.getType()))
+      {
+         return true;
+      }
+      String subtype = mediaType.getSubtype().toLowerCase(Locale.ENGLISH);
+      return subtype.equals("json") || subtype.endsWith("+json") || subtype.equals("xml")
+               || subtype.endsWith("+xml") || subtype.equals("javascript");
+   }
+
+   /**
+    * Parses an <code>Accept-Encoding</code> header
+    *
+    * @return whether gzip is accepted with a non-zero quality, either by name or by <code>*</code>
+    */
+   static boolean acceptsGzip(String acceptEncoding)
+   {
+      if (acceptEncoding == null)
+      {
+         return false;
+      }
+      Boolean wildcard = null;
+      for (String coding : acceptEncoding.split(","))
+      {
+         String[] parameters = coding.split(";");
+         String name = parameters[0].trim();
+         boolean accepted = true;
+         for (int i = 1; i < parameters.length; i++)
+         {
+            String parameter = parameters[i].trim();
+            if (parameter.startsWith("q=") || parameter.startsWith("Q="))
+            {
+               try
+               {
+                  accepted = Double.parseDouble(parameter.substring(2).trim()) > 0;
+               }
+               catch (NumberFormatException e)
+               {
+                  accepted = false;
+               }
+            }
+         }
+         if (GZIP.equalsIgnoreCase(name) || "x-gzip".equalsIgnoreCase(name))
+         {
+            return accepted;
+         }
+         if ("*".equals(name))
+         {
+            wildcard = accepted;
+         }
+      }
+      return wildcard != null && wildcard;
+   }
+
+   public JsonObject getStatistics()
+   {
+      int cached;
+      synchronized (cache)
+      {
+         cached = cache.size();
+      }
+      return Json.createObjectBuilder()
+               .add("enabled", enabled)
+               .add("threshold", threshold)
+               .add("level", level)
+               .add("compressed", compressed.sum())
+               .add("identity", identity.sum())
+               .add("uncompressedBytes", uncompressedBytes.sum())
+               .add("compressedBytes", compressedBytes.sum())
+               .add("cacheEntries", cached)
+               .add("cacheHits", cacheHits.sum())
+               .add("cacheMisses", cacheMisses.sum())
+               .build();
+   }
+}
@@ -0,0 +1,65 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.rest;
+
+import java.nio.file.Path;
+
+import org.jboss.forge.addon.ui.result.Failed;
+import org.jboss.forge.addon.ui.result.Result;
+
+/**
+ * The outcome of generating a project in a workspace, from a snapshot or by executing the command
+ */
+class Generation
+{
+   private final Result result;
+   private final Path projectPath;
+
+   Generation(Result result, Path projectPath)
+   {
+      this.result = result;
+      this.projectPath = projectPath;
+   }
+
+   /**
+    * @return <code>true</code> if the project was materialized from a snapshot rather than generated by the command
+    */
+   boolean isSnapshot()
+   {
+      return result == null;
+   }
+
+   boolean isFailed()
+   {
+      return result instanceof Failed;
+   }
+
+   /**
+    * @return the result of the command, or <code>null</code> if the project was materialized from a snapshot
+    */
+   Result getResult()
+   {
+      return result;
+   }
+
+   /**
+    * @return the generated project, or <code>null</code> if the command failed
+    */
+   Path getProjectPath()
+   {
+      return projectPath;
+   }
+}
@@ -1,19 +1,21 @@
 package io.openshift.launchpad.backend.rest;
 
-import java.io.StringReader;
-import java.net.URI;
-
 import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
 import javax.json.Json;
 import javax.json.JsonObject;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
-import javax.ws.rs.client.Client;
-import javax.ws.rs.client.ClientBuilder;
-import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.MediaType;
-import javax.ws.rs.core.UriBuilder;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import io.openshift.launchpad.backend.cleanup.DirectoryReaper;
+import io.openshift.launchpad.backend.missioncontrol.MissionControlClient;
+import io.openshift.launchpad.backend.missioncontrol.MissionControlReadiness;
+import io.openshift.launchpad.backend.startup.StartupMonitor;
+import io.openshift.launchpad.backend.workspace.WorkspaceManager;
 
 /**
  * Reports that the application is available to receive requests
@@ -24,68 +26,125 @@ import javax.ws.rs.core.UriBuilder;
 @ApplicationScoped
 public class HealthResource
 {
-   private static final String LAUNCHPAD_MISSIONCONTROL_SERVICE_HOST = "LAUNCHPAD_MISSIONCONTROL_SERVICE_HOST";
-   private static final String LAUNCHPAD_MISSIONCONTROL_SERVICE_PORT = "LAUNCHPAD_MISSIONCONTROL_SERVICE_PORT";
-
    public static final String PATH_HEALTH = "/health";
    public static final String PATH_READY = "/ready";
    public static final String PATH_MISSIONCONTROL = "/missioncontrol";
+   public static final String PATH_CLIENT = "/client";
+   public static final String PATH_REAPER = "/reaper";
+   public static final String PATH_WORKSPACE = "/workspace";
+   public static final String PATH_STARTUP = "/startup";
+   public static final String PATH_COMPRESSION = "/compression";
 
    private static final String STATUS = "status";
-   private static final String REASON = "reason";
    private static final String OK = "OK";
-   private static final String ERROR = "ERROR";
+   private static final String NOT_READY = "NOT_READY";
+   private static final String REASON = "reason";
+
+   @Inject
+   private MissionControlClient missionControlClient;
+
+   @Inject
+   private MissionControlReadiness missionControlReadiness;
+
+   @Inject
+   private DirectoryReaper directoryReaper;
+
+   @Inject
+   private WorkspaceManager workspaceManager;
+
+   @Inject
+   private StartupMonitor startupMonitor;
+
+   @Inject
+   private CompressionInterceptor compressionInterceptor;
 
    /**
     * Returns a JSON object with a single attribute, {@link HealthResource#STATUS}, with a value of
-    * {@link HealthResource#OK} to show that we are ready to receive requests
+    * {@link HealthResource#OK} to show that we are ready to receive requests. Answers
+    * <code>503 Service Unavailable</code> with the reason until the commands are warmed up, and while the workspace
+    * volume is short of space, so that traffic goes to other pods.
     *
     * @return
     */
    @GET
    @Path(PATH_READY)
    @Produces(MediaType.APPLICATION_JSON)
-   public JsonObject ready()
+   public Response ready()
    {
-      return Json.createObjectBuilder().add(STATUS, OK).build();
+      String reason = startupMonitor.isReady() ? workspaceManager.getReason() : "Warming up";
+      if (reason != null)
+      {
+         return Response.status(Status.SERVICE_UNAVAILABLE)
+                  .entity(Json.createObjectBuilder().add(STATUS, NOT_READY).add(REASON, reason).build()).build();
+      }
+      return Response.ok(Json.createObjectBuilder().add(STATUS, OK).build()).build();
    }
 
+   /**
+    * Returns the last known Mission Control readiness status, refreshed in the background
+    *
+    * @return
+    */
    @GET
    @Path(PATH_MISSIONCONTROL + PATH_READY)
    @Produces(MediaType.APPLICATION_JSON)
    public JsonObject catapultReady()
    {
-      Client client = ClientBuilder.newBuilder().build();
-      try
-      {
-         WebTarget target = client.target(createMissionControlUri());
-         String json = target.request().get().readEntity(String.class);
-         JsonObject object = Json.createReader(new StringReader(json)).readObject();
-         return object;
-      }
-      catch (Exception ex)
-      {
-         String message = ex.getCause() == null ? ex.getMessage() : ex.getCause().getMessage();
-         return Json.createObjectBuilder().add(STATUS, ERROR).add(REASON, message).build();
-      }
-      finally
-      {
-         client.close();
-      }
+      return missionControlReadiness.getStatus();
    }
 
-   public static URI createMissionControlUri()
+   /**
+    * Returns the connection pool statistics of the client used to call Mission Control
+    */
+   @GET
+   @Path(PATH_MISSIONCONTROL + PATH_CLIENT)
+   @Produces(MediaType.APPLICATION_JSON)
+   public JsonObject missionControlClient()
    {
-      String host = System.getProperty(LAUNCHPAD_MISSIONCONTROL_SERVICE_HOST,
-               System.getenv(LAUNCHPAD_MISSIONCONTROL_SERVICE_HOST));
-      if (host == null)
-      {
-         host = "mission-control";
-      }
-      UriBuilder uri = UriBuilder.fromPath("/api/health/ready").host(host).scheme("http");
-      String port = System.getProperty(LAUNCHPAD_MISSIONCONTROL_SERVICE_PORT,
-               System.getenv(LAUNCHPAD_MISSIONCONTROL_SERVICE_PORT));
-      uri.port(port != null ? Integer.parseInt(port) : 80);
-      return uri.build();
+      return missionControlClient.getStatistics();
+   }
+
+   /**
+    * Returns the queue depth and lag of the temporary directory reaper
+    */
+   @GET
+   @Path(PATH_REAPER)
+   @Produces(MediaType.APPLICATION_JSON)
+   public JsonObject reaper()
+   {
+      return directoryReaper.getStatistics();
+   }
+
+   /**
+    * Returns the free space, quota and pool statistics of the workspaces
+    */
+   @GET
+   @Path(PATH_WORKSPACE)
+   @Produces(MediaType.APPLICATION_JSON)
+   public JsonObject workspace()
+   {
+      return workspaceManager.getStatistics();
+   }
+
+   /**
+    * Returns the duration of each startup phase and whether the warm-up is complete
+    */
+   @GET
+   @Path(PATH_STARTUP)
+   @Produces(MediaType.APPLICATION_JSON)
+   public JsonObject startup()
+   {
+      return startupMonitor.getStatistics();
+   }
+
+   /**
+    * Returns how many responses were compressed, the bytes saved and the hits of the compressed body cache
+    */
+   @GET
+   @Path(PATH_COMPRESSION)
+   @Produces(MediaType.APPLICATION_JSON)
+   public JsonObject compression()
+   {
+      return compressionInterceptor.getStatistics();
    }
 }
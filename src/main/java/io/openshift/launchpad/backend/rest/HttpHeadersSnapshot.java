@@ -0,0 +1,122 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.rest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.ws.rs.core.Cookie;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+
+/**
+ * A copy of the request {@link HttpHeaders} that can be used once the request is over, eg. by a background job. The
+ * injected {@link HttpHeaders} is a proxy to the current request.
+ */
+class HttpHeadersSnapshot implements HttpHeaders
+{
+   private final MultivaluedMap<String, String> requestHeaders;
+   private final Map<String, List<String>> headersByName = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+   private final List<MediaType> acceptableMediaTypes;
+   private final List<Locale> acceptableLanguages;
+   private final MediaType mediaType;
+   private final Locale language;
+   private final Map<String, Cookie> cookies;
+   private final Date date;
+   private final int length;
+
+   HttpHeadersSnapshot(HttpHeaders headers)
+   {
+      this.requestHeaders = new MultivaluedHashMap<>(headers.getRequestHeaders());
+      this.headersByName.putAll(requestHeaders);
+      this.acceptableMediaTypes = Collections.unmodifiableList(new ArrayList<>(headers.getAcceptableMediaTypes()));
+      this.acceptableLanguages = Collections.unmodifiableList(new ArrayList<>(headers.getAcceptableLanguages()));
+      this.mediaType = headers.getMediaType();
+      this.language = headers.getLanguage();
+      this.cookies = Collections.unmodifiableMap(new HashMap<>(headers.getCookies()));
+      this.date = headers.getDate();
+      this.length = headers.getLength();
+   }
+
+   @Override
+   public List<String> getRequestHeader(String name)
+   {
+      return headersByName.get(name);
+   }
+
+   @Override
+   public String getHeaderString(String name)
+   {
+      List<String> values = headersByName.get(name);
+      return values == null ? null : String.join(",", values);
+   }
+
+   @Override
+   public MultivaluedMap<String, String> getRequestHeaders()
+   {
+      return requestHeaders;
+   }
+
+   @Override
+   public List<MediaType> getAcceptableMediaTypes()
+   {
+      return acceptableMediaTypes;
+   }
+
+   @Override
+   public List<Locale> getAcceptableLanguages()
+   {
+      return acceptableLanguages;
+   }
+
+   @Override
+   public MediaType getMediaType()
+   {
+      return mediaType;
+   }
+
+   @Override
+   public Locale getLanguage()
+   {
+      return language;
+   }
+
+   @Override
+   public Map<String, Cookie> getCookies()
+   {
+      return cookies;
+   }
+
+   @Override
+   public Date getDate()
+   {
+      return date;
+   }
+
+   @Override
+   public int getLength()
+   {
+      return length;
+   }
+}
@@ -0,0 +1,134 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.rest;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonStructure;
+import javax.json.JsonValue;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+
+/**
+ * Writes the JSON responses straight to the entity stream with a {@link JsonGenerator} from a shared factory.
+ * <p>
+ * The JSON-P provider of the container looks up the JSON provider and creates a writer factory for every response,
+ * then serializes through a {@link javax.json.JsonWriter}. Both end up in the same generator, so the bytes written are
+ * identical, without the per response lookup and factory.
+ */
+@Produces({ MediaType.APPLICATION_JSON, "application/*+json" })
+public class JsonStructureWriter implements MessageBodyWriter<JsonStructure>
+{
+   private static final JsonGeneratorFactory GENERATORS = Json.createGeneratorFactory(Collections.emptyMap());
+
+   @Override
+   public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType)
+   {
+      return JsonStructure.class.isAssignableFrom(type);
+   }
+
+   @Override
+   public long getSize(JsonStructure structure, Class<?> type, Type genericType, Annotation[] annotations,
+            MediaType mediaType)
+   {
+      return -1;
+   }
+
+   @Override
+   public void writeTo(JsonStructure structure, Class<?> type, Type genericType, Annotation[] annotations,
+            MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream)
+            throws IOException
+   {
+      // Closing the generator gives its buffer back, but the entity stream is owned by the container
+      OutputStream os = new FilterOutputStream(entityStream)
+      {
+         @Override
+         public void write(byte[] b, int off, int len) throws IOException
+         {
+            out.write(b, off, len);
+         }
+
+         @Override
+         public void close() throws IOException
+         {
+            out.flush();
+         }
+      };
+      try (JsonGenerator generator = GENERATORS.createGenerator(os, getCharset(mediaType)))
+      {
+         write(generator, structure);
+      }
+   }
+
+   /**
+    * Serializes the given structure as {@link Object#toString()} does, with the shared generator factory
+    */
+   public static String toString(JsonStructure structure)
+   {
+      StringWriter writer = new StringWriter();
+      try (JsonGenerator generator = GENERATORS.createGenerator(writer))
+      {
+         write(generator, structure);
+      }
+      return writer.toString();
+   }
+
+   /**
+    * Writes the structure member by member, as {@link javax.json.JsonWriter} does
+    */
+   private static void write(JsonGenerator generator, JsonStructure structure)
+   {
+      if (structure instanceof JsonObject)
+      {
+         generator.writeStartObject();
+         for (Map.Entry<String, JsonValue> member : ((JsonObject) structure).entrySet())
+         {
+            generator.write(member.getKey(), member.getValue());
+         }
+      }
+      else
+      {
+         generator.writeStartArray();
+         for (JsonValue value : (JsonArray) structure)
+         {
+            generator.write(value);
+         }
+      }
+      generator.writeEnd();
+   }
+
+   private static Charset getCharset(MediaType mediaType)
+   {
+      String charset = mediaType == null ? null : mediaType.getParameters().get(MediaType.CHARSET_PARAMETER);
+      return charset == null ? StandardCharsets.UTF_8 : Charset.forName(charset);
+   }
+}
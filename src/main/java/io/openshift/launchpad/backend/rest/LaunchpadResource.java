@@ -15,70 +15,104 @@
  */
 package io.openshift.launchpad.backend.rest;
 
-import static javax.json.Json.createObjectBuilder;
-
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.URI;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.annotation.PreDestroy;
 import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.enterprise.concurrent.ManagedThreadFactory;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.event.Observes;
 import javax.inject.Inject;
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonBuilderFactory;
 import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
 import javax.json.JsonString;
+import javax.json.JsonValue;
 import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
-import javax.ws.rs.client.Client;
-import javax.ws.rs.client.ClientBuilder;
-import javax.ws.rs.client.Entity;
-import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Form;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriBuilder;
+import javax.ws.rs.core.UriInfo;
 
 import org.jboss.forge.addon.resource.Resource;
 import org.jboss.forge.addon.resource.ResourceFactory;
 import org.jboss.forge.addon.ui.command.CommandFactory;
 import org.jboss.forge.addon.ui.command.UICommand;
 import org.jboss.forge.addon.ui.context.UIContext;
-import org.jboss.forge.addon.ui.context.UISelection;
 import org.jboss.forge.addon.ui.controller.CommandController;
 import org.jboss.forge.addon.ui.controller.CommandControllerFactory;
 import org.jboss.forge.addon.ui.controller.WizardCommandController;
 import org.jboss.forge.addon.ui.result.Failed;
 import org.jboss.forge.addon.ui.result.Result;
 import org.jboss.forge.furnace.versions.Versions;
+import org.jboss.forge.service.producer.FurnaceProducer;
 import org.jboss.forge.service.ui.RestUIContext;
 import org.jboss.forge.service.ui.RestUIRuntime;
 import org.jboss.forge.service.util.UICommandHelper;
-import org.jboss.resteasy.plugins.providers.multipart.MultipartFormDataOutput;
 
 import io.openshift.launchpad.backend.ForgeInitializer;
+import io.openshift.launchpad.backend.admission.AdmissionController;
+import io.openshift.launchpad.backend.cache.ArchiveCache;
+import io.openshift.launchpad.backend.cleanup.DirectoryReaper;
+import io.openshift.launchpad.backend.command.CommandControllerPool;
+import io.openshift.launchpad.backend.command.WizardSession;
+import io.openshift.launchpad.backend.command.WizardSessionRegistry;
+import io.openshift.launchpad.backend.event.AddonsRedeployed;
 import io.openshift.launchpad.backend.event.FurnaceStartup;
+import io.openshift.launchpad.backend.job.Job;
+import io.openshift.launchpad.backend.job.JobQueue;
+import io.openshift.launchpad.backend.metrics.Endpoint;
+import io.openshift.launchpad.backend.metrics.LaunchpadMetrics;
+import io.openshift.launchpad.backend.metrics.Phase;
+import io.openshift.launchpad.backend.missioncontrol.MissionControl;
+import io.openshift.launchpad.backend.missioncontrol.MissionControlClient;
+import io.openshift.launchpad.backend.snapshot.BoosterSnapshots;
+import io.openshift.launchpad.backend.startup.StartupMonitor;
+import io.openshift.launchpad.backend.util.Coalescer;
+import io.openshift.launchpad.backend.util.Configuration;
 import io.openshift.launchpad.backend.util.JsonBuilder;
+import io.openshift.launchpad.backend.workspace.Workspace;
+import io.openshift.launchpad.backend.workspace.WorkspaceManager;
+import io.openshift.launchpad.backend.workspace.WorkspaceQuotaExceededException;
 
 @javax.ws.rs.Path("/launchpad")
 @ApplicationScoped
@@ -89,15 +123,78 @@ public class LaunchpadResource
    private static final Logger log = Logger.getLogger(LaunchpadResource.class.getName());
    private static final String LAUNCHPAD_MISSIONCONTROL_SERVICE_HOST = "LAUNCHPAD_MISSIONCONTROL_SERVICE_HOST";
    private static final String LAUNCHPAD_MISSIONCONTROL_SERVICE_PORT = "LAUNCHPAD_MISSIONCONTROL_SERVICE_PORT";
+   private static final String LAUNCHPAD_BACKEND_CONTROLLER_POOL_SIZE = "LAUNCHPAD_BACKEND_CONTROLLER_POOL_SIZE";
+   private static final int DEFAULT_CONTROLLER_POOL_SIZE = 4;
+   private static final String LAUNCHPAD_BACKEND_CONTROLLER_POOL_COMMANDS = "LAUNCHPAD_BACKEND_CONTROLLER_POOL_COMMANDS";
+   private static final String LAUNCHPAD_BACKEND_METADATA_CACHE_HEADERS = "LAUNCHPAD_BACKEND_METADATA_CACHE_HEADERS";
+   private static final String LAUNCHPAD_BACKEND_METADATA_CACHE_SIZE = "LAUNCHPAD_BACKEND_METADATA_CACHE_SIZE";
+   private static final String LAUNCHPAD_BACKEND_WIZARD_SESSION_MAX = "LAUNCHPAD_BACKEND_WIZARD_SESSION_MAX";
+   private static final String LAUNCHPAD_BACKEND_WIZARD_SESSION_IDLE_TIMEOUT = "LAUNCHPAD_BACKEND_WIZARD_SESSION_IDLE_TIMEOUT";
+   private static final String LAUNCHPAD_BACKEND_WIZARD_SESSION_MAX_MEMORY = "LAUNCHPAD_BACKEND_WIZARD_SESSION_MAX_MEMORY";
+   private static final String LAUNCHPAD_BACKEND_WIZARD_SESSION_BASE_SIZE = "LAUNCHPAD_BACKEND_WIZARD_SESSION_BASE_SIZE";
+   private static final String LAUNCHPAD_BACKEND_WIZARD_SESSION_MAX_SIZE = "LAUNCHPAD_BACKEND_WIZARD_SESSION_MAX_SIZE";
+   private static final String LAUNCHPAD_BACKEND_JOB_WORKERS = "LAUNCHPAD_BACKEND_JOB_WORKERS";
+   private static final String LAUNCHPAD_BACKEND_JOB_QUEUE_LIMIT = "LAUNCHPAD_BACKEND_JOB_QUEUE_LIMIT";
+   private static final String LAUNCHPAD_BACKEND_JOB_RESULT_TTL = "LAUNCHPAD_BACKEND_JOB_RESULT_TTL";
+   private static final String LAUNCHPAD_BACKEND_SNAPSHOT_ENABLED = "LAUNCHPAD_BACKEND_SNAPSHOT_ENABLED";
+   private static final String LAUNCHPAD_BACKEND_SNAPSHOT_DIR = "LAUNCHPAD_BACKEND_SNAPSHOT_DIR";
+   private static final String LAUNCHPAD_BACKEND_SNAPSHOT_COMMANDS = "LAUNCHPAD_BACKEND_SNAPSHOT_COMMANDS";
+   private static final String LAUNCHPAD_BACKEND_SNAPSHOT_INPUTS = "LAUNCHPAD_BACKEND_SNAPSHOT_INPUTS";
+   private static final String LAUNCHPAD_BACKEND_SNAPSHOT_MAX = "LAUNCHPAD_BACKEND_SNAPSHOT_MAX";
+   private static final String LAUNCHPAD_BACKEND_BATCH_WORKERS = "LAUNCHPAD_BACKEND_BATCH_WORKERS";
+   private static final String LAUNCHPAD_BACKEND_BATCH_MAX_ITEMS = "LAUNCHPAD_BACKEND_BATCH_MAX_ITEMS";
+   private static final String LAUNCHPAD_BACKEND_VALIDATION_COALESCE_ENABLED = "LAUNCHPAD_BACKEND_VALIDATION_COALESCE_ENABLED";
+   private static final String LAUNCHPAD_BACKEND_VALIDATION_COALESCE_HEADERS = "LAUNCHPAD_BACKEND_VALIDATION_COALESCE_HEADERS";
+   private static final String LAUNCHPAD_BACKEND_VALIDATION_MAX_CANDIDATES = "LAUNCHPAD_BACKEND_VALIDATION_MAX_CANDIDATES";
+   private static final String LAUNCHPAD_BACKEND_VALIDATION_DELTA_CACHE_SIZE = "LAUNCHPAD_BACKEND_VALIDATION_DELTA_CACHE_SIZE";
+
+   private static final String JOB_TARGET_ZIP = "zip";
+   private static final String JOB_TARGET_MISSIONCONTROL = "missioncontrol";
+   private static final int TOO_MANY_REQUESTS = 429;
+   private static final int RETRY_AFTER_SECONDS = 1;
 
-   private URI missionControlURI;
+   /**
+    * Looking up the JSON provider on every {@link Json#createObjectBuilder()} is a service loader scan
+    */
+   private static final JsonBuilderFactory JSON = Json.createBuilderFactory(Collections.emptyMap());
+
+   private MissionControl missionControl;
+   private JobQueue jobs;
+   private BoosterSnapshots snapshots;
 
    private final Map<String, String> commandMap = new TreeMap<>();
-   private final BlockingQueue<Path> directoriesToDelete = new LinkedBlockingQueue<>();
+   private final Map<String, CommandControllerPool> controllerPools = new ConcurrentHashMap<>();
+   private final MetadataCache metadataCache = new MetadataCache(
+            Configuration.getList(LAUNCHPAD_BACKEND_METADATA_CACHE_HEADERS,
+                     HttpHeaders.ACCEPT_LANGUAGE + "," + HttpHeaders.AUTHORIZATION),
+            Configuration.getInt(LAUNCHPAD_BACKEND_METADATA_CACHE_SIZE, 256));
+   private final int batchWorkers = Configuration.getInt(LAUNCHPAD_BACKEND_BATCH_WORKERS,
+            Runtime.getRuntime().availableProcessors());
+   private final int batchMaxItems = Configuration.getInt(LAUNCHPAD_BACKEND_BATCH_MAX_ITEMS, 500);
+   private final boolean coalesceValidations = Configuration
+            .getBoolean(LAUNCHPAD_BACKEND_VALIDATION_COALESCE_ENABLED, true);
+   private final List<String> coalesceHeaders = Configuration.getList(LAUNCHPAD_BACKEND_VALIDATION_COALESCE_HEADERS,
+            HttpHeaders.AUTHORIZATION + "," + HttpHeaders.ACCEPT_LANGUAGE);
+   private final int validationMaxCandidates = Configuration.getInt(LAUNCHPAD_BACKEND_VALIDATION_MAX_CANDIDATES, 50);
+   private final Coalescer<JsonObject> validations = new Coalescer<>();
+   private final ValidationDeltas validationDeltas = new ValidationDeltas(
+            Configuration.getInt(LAUNCHPAD_BACKEND_VALIDATION_DELTA_CACHE_SIZE, 1000));
+   private final WizardSessionRegistry wizardSessions = new WizardSessionRegistry(
+            Configuration.getInt(LAUNCHPAD_BACKEND_WIZARD_SESSION_MAX, 500),
+            TimeUnit.SECONDS.toMillis(Configuration.getLong(LAUNCHPAD_BACKEND_WIZARD_SESSION_IDLE_TIMEOUT, 600)),
+            Configuration.getLong(LAUNCHPAD_BACKEND_WIZARD_SESSION_MAX_MEMORY, 256L * 1024 * 1024),
+            Configuration.getLong(LAUNCHPAD_BACKEND_WIZARD_SESSION_BASE_SIZE, 512L * 1024),
+            Configuration.getLong(LAUNCHPAD_BACKEND_WIZARD_SESSION_MAX_SIZE, 4L * 1024 * 1024));
 
    @javax.annotation.Resource
    private ManagedExecutorService executorService;
 
+   @javax.annotation.Resource
+   private ManagedScheduledExecutorService scheduledExecutorService;
+
+   @javax.annotation.Resource
+   private ManagedThreadFactory threadFactory;
+
    public LaunchpadResource()
    {
       commandMap.put("launchpad-new-project", "Launchpad: New Project");
@@ -116,39 +213,166 @@ public class LaunchpadResource
    @Inject
    private UICommandHelper helper;
 
+   @Inject
+   private MissionControlClient missionControlClient;
+
+   @Inject
+   private DirectoryReaper directoryReaper;
+
+   @Inject
+   private LaunchpadMetrics metrics;
+
+   @Inject
+   private ArchiveCache archiveCache;
+
+   @Inject
+   private AdmissionController admissionController;
+
+   @Inject
+   private WorkspaceManager workspaceManager;
+
+   @Inject
+   private StartupMonitor startupMonitor;
+
+   @Inject
+   private FurnaceProducer furnaceProducer;
+
    void init(@Observes FurnaceStartup startup)
    {
+      jobs = new JobQueue(Configuration.getInt(LAUNCHPAD_BACKEND_JOB_WORKERS, 4),
+               Configuration.getInt(LAUNCHPAD_BACKEND_JOB_QUEUE_LIMIT, 50),
+               TimeUnit.SECONDS.toMillis(Configuration.getLong(LAUNCHPAD_BACKEND_JOB_RESULT_TTL, 600)),
+               threadFactory, workspaceManager);
+      // Snapshots are only valid for the addons that recorded them
+      snapshots = new BoosterSnapshots(
+               java.nio.file.Paths.get(Configuration.get(LAUNCHPAD_BACKEND_SNAPSHOT_DIR,
+                        java.nio.file.Paths.get(System.getProperty("java.io.tmpdir"), "launchpad-snapshots")
+                                 .toString()))
+                        .resolve(getAddonsVersion()),
+               Configuration.getBoolean(LAUNCHPAD_BACKEND_SNAPSHOT_ENABLED, false)
+                        ? Configuration.getList(LAUNCHPAD_BACKEND_SNAPSHOT_COMMANDS, "")
+                        : Collections.emptyList(),
+               Configuration.getList(LAUNCHPAD_BACKEND_SNAPSHOT_INPUTS, "named,groupId,version"),
+               Configuration.getInt(LAUNCHPAD_BACKEND_SNAPSHOT_MAX, 256),
+               executorService);
+      if (Boolean.getBoolean("devMode"))
+      {
+         // SNAPSHOT addons may have changed without changing their version
+         snapshots.clear();
+      }
+      else
+      {
+         snapshots.load();
+      }
       try
       {
          // Initialize Catapult URL
          initializeMissionControlServiceURI();
-         log.info("Warming up internal cache");
-         // Warm up
-         getCommand(DEFAULT_COMMAND_NAME, ForgeInitializer.getRoot(), null);
-         log.info("Caches warmed up");
-         executorService.submit(() -> {
-            java.nio.file.Path path = null;
-            try
-            {
-               while ((path = directoriesToDelete.take()) != null)
-               {
-                  log.info("Deleting " + path);
-                  io.openshift.launchpad.backend.util.Paths.deleteDirectory(path);
-               }
-            }
-            catch (IOException io)
+         for (String commandName : commandMap.keySet())
+         {
+            metrics.registerCommand(commandName);
+         }
+         // Pooled controllers are initialized before the request, without its headers, so none is pooled unless listed
+         for (String commandName : Configuration.getList(LAUNCHPAD_BACKEND_CONTROLLER_POOL_COMMANDS, ""))
+         {
+            if (commandMap.containsKey(commandName))
             {
-               log.log(Level.SEVERE, "Error while deleting" + path, io);
+               controllerPools.put(commandName, createControllerPool(commandName));
             }
-            catch (InterruptedException e)
+            else
             {
-               // Do nothing
+               log.warning("Not pooling unknown command '" + commandName + "'");
             }
-         });
+         }
+         registerMetrics();
+         warmUp();
+         scheduledExecutorService.scheduleWithFixedDelay(wizardSessions::evictExpired, 1, 1, TimeUnit.MINUTES);
+         scheduledExecutorService.scheduleWithFixedDelay(jobs::evictExpired, 1, 1, TimeUnit.MINUTES);
       }
       catch (Exception e)
       {
-         log.log(Level.SEVERE, "Error while warming up cache", e);
+         log.log(Level.SEVERE, "Error while initializing", e);
+      }
+   }
+
+   /**
+    * @return a hash of the coordinates of the deployed addons
+    */
+   private String getAddonsVersion()
+   {
+      Set<String> coordinates = new TreeSet<>();
+      furnaceProducer.getFurnace().getAddonRegistry().getAddons()
+               .forEach(addon -> coordinates.add(addon.getId().toCoordinates()));
+      return MetadataCache.sha256(String.join("\n", coordinates)).substring(0, 16);
+   }
+
+   /**
+    * Initializes a controller of every command concurrently in the background, then fills the pools. The controllers
+    * of the unpooled commands are closed right away, they only load the addon classes and caches. The backend reports
+    * ready once done.
+    */
+   private void warmUp()
+   {
+      log.info("Warming up internal cache");
+      long start = System.nanoTime();
+      AtomicInteger failures = new AtomicInteger();
+      CompletableFuture<?>[] warmUps = commandMap.keySet().stream()
+               .map(commandName -> CompletableFuture.runAsync(() -> {
+                  long phase = System.nanoTime();
+                  try
+                  {
+                     warmUp(commandName);
+                     startupMonitor.record("warm_up_" + commandName, phase);
+                  }
+                  catch (Exception e)
+                  {
+                     failures.incrementAndGet();
+                     log.log(Level.SEVERE, "Error while warming up " + commandName, e);
+                  }
+               }, executorService))
+               .toArray(CompletableFuture[]::new);
+      CompletableFuture.allOf(warmUps).whenComplete((result, e) -> {
+         startupMonitor.record("warm_up", start);
+         controllerPools.values().forEach(CommandControllerPool::refill);
+         log.info("Caches warmed up");
+         startupMonitor.warmedUp(failures.get());
+      });
+   }
+
+   private void warmUp(String commandName) throws Exception
+   {
+      CommandControllerPool pool = controllerPools.get(commandName);
+      if (pool != null)
+      {
+         pool.warmUp();
+         return;
+      }
+      try (CommandController controller = getCommand(commandName, workspaceManager.getRoot(), null))
+      {
+         log.fine("Warmed up " + commandName);
+      }
+   }
+
+   void onRedeploy(@Observes AddonsRedeployed event)
+   {
+      log.info("Addons redeployed, clearing caches");
+      metadataCache.clear();
+      validationDeltas.clear();
+      snapshots.clear();
+      controllerPools.values().forEach(pool -> {
+         pool.clear();
+         pool.refill();
+      });
+   }
+
+   @PreDestroy
+   void destroy()
+   {
+      controllerPools.values().forEach(CommandControllerPool::close);
+      wizardSessions.close();
+      if (jobs != null)
+      {
+         jobs.close();
       }
    }
 
@@ -166,39 +390,140 @@ public class LaunchpadResource
    @GET
    @javax.ws.rs.Path("/commands/{commandName}")
    @Produces(MediaType.APPLICATION_JSON)
-   public JsonObject getCommandInfo(
+   public Response getCommandInfo(
             @PathParam("commandName") @DefaultValue(DEFAULT_COMMAND_NAME) String commandName,
-            @Context HttpHeaders headers)
+            @Context HttpHeaders headers, @Context Request request)
             throws Exception
    {
       validateCommand(commandName);
-      JsonObjectBuilder builder = createObjectBuilder();
-      try (CommandController controller = getCommand(commandName, ForgeInitializer.getRoot(), headers))
+      long start = metrics.start(Endpoint.METADATA);
+      try
       {
-         helper.describeController(builder, controller);
+         String key = metadataCache.createKey(commandName, headers);
+         MetadataCache.Entry entry = metadataCache.get(key);
+         if (entry == null)
+         {
+            JsonObjectBuilder builder = createObjectBuilder();
+            try (CommandController controller = getPooledCommand(commandName, headers))
+            {
+               long phase = metrics.record(commandName, Endpoint.METADATA, Phase.CONTROLLER, start);
+               helper.describeController(builder, controller);
+               metrics.record(commandName, Endpoint.METADATA, Phase.DESCRIBE, phase);
+            }
+            entry = metadataCache.put(key, JsonStructureWriter.toString(builder.build()));
+         }
+         ResponseBuilder notModified = request.evaluatePreconditions(CompressionInterceptor
+                  .matchingTag(entry.getEntityTag(), headers.getHeaderString(HttpHeaders.IF_NONE_MATCH)));
+         if (notModified != null)
+         {
+            return metadataCache.addCacheHeaders(notModified).build();
+         }
+         return metadataCache.addCacheHeaders(Response.ok(entry.getJson(), MediaType.APPLICATION_JSON)
+                  .tag(entry.getEntityTag())).build();
+      }
+      finally
+      {
+         metrics.finish(commandName, Endpoint.METADATA, start);
       }
-      return builder.build();
    }
 
+   /**
+    * Describes the state, validation and inputs of the command populated with the given inputs
+    *
+    * @param delta <code>true</code> to get only the changes since the <code>stateVersion</code> in <code>since</code>,
+    *           see {@link ValidationDeltas}
+    */
    @POST
    @javax.ws.rs.Path("/commands/{commandName}/validate")
    @Consumes(MediaType.APPLICATION_JSON)
    @Produces(MediaType.APPLICATION_JSON)
    public JsonObject validateCommand(JsonObject content,
             @PathParam("commandName") @DefaultValue(DEFAULT_COMMAND_NAME) String commandName,
+            @QueryParam("delta") boolean delta, @QueryParam("since") String since,
             @Context HttpHeaders headers)
             throws Exception
    {
       validateCommand(commandName);
-      JsonObjectBuilder builder = createObjectBuilder();
-      try (CommandController controller = getCommand(commandName, ForgeInitializer.getRoot(), headers))
+      long start = metrics.start(Endpoint.VALIDATE);
+      try
       {
-         helper.populateControllerAllInputs(content, controller);
-         helper.describeCurrentState(builder, controller);
-         helper.describeValidation(builder, controller);
-         helper.describeInputs(builder, controller);
+         JsonObject response = validate(content, commandName, headers, start);
+         return delta ? validationDeltas.respond(response, since) : response;
+      }
+      finally
+      {
+         metrics.finish(commandName, Endpoint.VALIDATE, start);
+      }
+   }
+
+   private JsonObject validate(JsonObject content, String commandName, HttpHeaders headers, long start)
+            throws Exception
+   {
+      // Identical validations of a client in flight, e.g. on every keystroke, are computed once
+      return validations.get(validationKey("validate", commandName, content, headers), () -> {
+         JsonObjectBuilder builder = createObjectBuilder();
+         try (CommandController controller = getPooledCommand(commandName, headers))
+         {
+            long phase = metrics.record(commandName, Endpoint.VALIDATE, Phase.CONTROLLER, start);
+            helper.populateControllerAllInputs(content, controller);
+            phase = metrics.record(commandName, Endpoint.VALIDATE, Phase.POPULATE, phase);
+            helper.describeCurrentState(builder, controller);
+            helper.describeValidation(builder, controller);
+            helper.describeInputs(builder, controller);
+            metrics.record(commandName, Endpoint.VALIDATE, Phase.DESCRIBE, phase);
+         }
+         return builder.build();
+      });
+   }
+
+   /**
+    * Validates several candidate input sets in one request, returning the state and validation messages of each in
+    * <code>results</code>, in order. The candidates are either complete input sets in <code>candidates</code>, or
+    * lists of input changes in <code>changes</code> applied to the input set in <code>base</code>.
+    * <p>
+    * Candidates setting the same inputs at the same step are evaluated one after the other on a single controller,
+    * since each of them overwrites every value set by the previous one.
+    */
+   @POST
+   @javax.ws.rs.Path("/commands/{commandName}/validate/batch")
+   @Consumes(MediaType.APPLICATION_JSON)
+   @Produces(MediaType.APPLICATION_JSON)
+   public JsonObject validateCandidates(JsonObject content,
+            @PathParam("commandName") @DefaultValue(DEFAULT_COMMAND_NAME) String commandName,
+            @Context HttpHeaders headers)
+            throws Exception
+   {
+      validateCommand(commandName);
+      List<JsonObject> candidates = createCandidates(content);
+      if (candidates.isEmpty() || candidates.size() > validationMaxCandidates)
+      {
+         throw new WebApplicationException("A validation has between 1 and " + validationMaxCandidates
+                  + " candidates", Status.BAD_REQUEST);
+      }
+      long start = metrics.start(Endpoint.VALIDATE);
+      try
+      {
+         Map<String, List<Integer>> groups = new LinkedHashMap<>();
+         for (int i = 0; i < candidates.size(); i++)
+         {
+            groups.computeIfAbsent(inputShape(candidates.get(i)), shape -> new ArrayList<>()).add(i);
+         }
+         JsonObject[] results = new JsonObject[candidates.size()];
+         for (List<Integer> group : groups.values())
+         {
+            validateGroup(commandName, candidates, group, results, headers, start);
+         }
+         JsonArrayBuilder builder = JSON.createArrayBuilder();
+         for (JsonObject result : results)
+         {
+            builder.add(result);
+         }
+         return createObjectBuilder().add("results", builder).build();
+      }
+      finally
+      {
+         metrics.finish(commandName, Endpoint.VALIDATE, start);
       }
-      return builder.build();
    }
 
    @POST
@@ -212,9 +537,11 @@ public class LaunchpadResource
    {
       validateCommand(commandName);
       int stepIndex = content.getInt("stepIndex", 1);
+      long start = metrics.start(Endpoint.NEXT);
       JsonObjectBuilder builder = createObjectBuilder();
-      try (CommandController controller = getCommand(commandName, ForgeInitializer.getRoot(), headers))
+      try (CommandController controller = getPooledCommand(commandName, headers))
       {
+         long phase = metrics.record(commandName, Endpoint.NEXT, Phase.CONTROLLER, start);
          if (!(controller instanceof WizardCommandController))
          {
             throw new WebApplicationException("Controller is not a wizard", Status.BAD_REQUEST);
@@ -229,13 +556,147 @@ public class LaunchpadResource
                wizardController.next().initialize();
             }
          }
+         phase = metrics.record(commandName, Endpoint.NEXT, Phase.NAVIGATE, phase);
          helper.describeMetadata(builder, controller);
          helper.describeCurrentState(builder, controller);
          helper.describeInputs(builder, controller);
+         metrics.record(commandName, Endpoint.NEXT, Phase.DESCRIBE, phase);
+      }
+      finally
+      {
+         metrics.finish(commandName, Endpoint.NEXT, start);
+      }
+      return builder.build();
+   }
+
+   /**
+    * Opens a wizard session. The session keeps the wizard state on the server so that moving between steps costs a
+    * single transition instead of a replay of every previous step.
+    */
+   @POST
+   @javax.ws.rs.Path("/commands/{commandName}/sessions")
+   @Produces(MediaType.APPLICATION_JSON)
+   public Response openSession(
+            @PathParam("commandName") @DefaultValue(DEFAULT_COMMAND_NAME) String commandName,
+            @Context HttpHeaders headers)
+            throws Exception
+   {
+      validateCommand(commandName);
+      long start = metrics.start(Endpoint.SESSION);
+      try
+      {
+         CommandController controller = getPooledCommand(commandName, headers);
+         long phase = metrics.record(commandName, Endpoint.SESSION, Phase.CONTROLLER, start);
+         if (!(controller instanceof WizardCommandController))
+         {
+            controller.close();
+            throw new WebApplicationException("Controller is not a wizard", Status.BAD_REQUEST);
+         }
+         WizardSession session = wizardSessions.open(commandName, (WizardCommandController) controller);
+         if (session == null)
+         {
+            controller.close();
+            throw new WebApplicationException("Too many open wizard sessions", Status.SERVICE_UNAVAILABLE);
+         }
+         JsonObjectBuilder builder = createObjectBuilder();
+         synchronized (session)
+         {
+            describeSession(builder, session);
+         }
+         metrics.record(commandName, Endpoint.SESSION, Phase.DESCRIBE, phase);
+         return Response.status(Status.CREATED).entity(builder.build()).build();
+      }
+      finally
+      {
+         metrics.finish(commandName, Endpoint.SESSION, start);
+      }
+   }
+
+   @POST
+   @javax.ws.rs.Path("/sessions/{sessionId}/next")
+   @Consumes(MediaType.APPLICATION_JSON)
+   @Produces(MediaType.APPLICATION_JSON)
+   public JsonObject nextSessionStep(JsonObject content, @PathParam("sessionId") String sessionId)
+            throws Exception
+   {
+      WizardSession session = getSession(sessionId);
+      String commandName = session.getCommandName();
+      long start = metrics.start(Endpoint.SESSION);
+      JsonObjectBuilder builder = createObjectBuilder();
+      try
+      {
+         synchronized (session)
+         {
+            WizardCommandController wizardController = session.getController();
+            if (!wizardSessions.recordInput(session, content.toString().length()))
+            {
+               throw new WebApplicationException("Wizard session input exceeds the memory budget",
+                        Status.SERVICE_UNAVAILABLE);
+            }
+            long phase = System.nanoTime();
+            helper.populateController(content, wizardController);
+            phase = metrics.record(commandName, Endpoint.SESSION, Phase.POPULATE, phase);
+            helper.describeValidation(builder, wizardController);
+            if (wizardController.canMoveToNextStep())
+            {
+               wizardController.next().initialize();
+               session.setStepIndex(session.getStepIndex() + 1);
+            }
+            phase = metrics.record(commandName, Endpoint.SESSION, Phase.NAVIGATE, phase);
+            describeSession(builder, session);
+            metrics.record(commandName, Endpoint.SESSION, Phase.DESCRIBE, phase);
+         }
+      }
+      finally
+      {
+         metrics.finish(commandName, Endpoint.SESSION, start);
+      }
+      return builder.build();
+   }
+
+   @POST
+   @javax.ws.rs.Path("/sessions/{sessionId}/previous")
+   @Produces(MediaType.APPLICATION_JSON)
+   public JsonObject previousSessionStep(@PathParam("sessionId") String sessionId) throws Exception
+   {
+      WizardSession session = getSession(sessionId);
+      String commandName = session.getCommandName();
+      long start = metrics.start(Endpoint.SESSION);
+      JsonObjectBuilder builder = createObjectBuilder();
+      try
+      {
+         synchronized (session)
+         {
+            WizardCommandController wizardController = session.getController();
+            long phase = System.nanoTime();
+            if (wizardController.canMoveToPreviousStep())
+            {
+               wizardController.previous();
+               session.setStepIndex(session.getStepIndex() - 1);
+            }
+            phase = metrics.record(commandName, Endpoint.SESSION, Phase.NAVIGATE, phase);
+            describeSession(builder, session);
+            metrics.record(commandName, Endpoint.SESSION, Phase.DESCRIBE, phase);
+         }
+      }
+      finally
+      {
+         metrics.finish(commandName, Endpoint.SESSION, start);
       }
       return builder.build();
    }
 
+   @DELETE
+   @javax.ws.rs.Path("/sessions/{sessionId}")
+   public Response closeSession(@PathParam("sessionId") String sessionId)
+   {
+      if (!wizardSessions.close(sessionId))
+      {
+         throw new WebApplicationException("No such session '" + sessionId + "'", Status.NOT_FOUND);
+      }
+      return Response.noContent().build();
+   }
+
    @POST
    @javax.ws.rs.Path("/commands/{commandName}/zip")
    @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
@@ -251,36 +712,103 @@ public class LaunchpadResource
       {
          jsonBuilder.addInput(entry.getKey(), entry.getValue());
       }
-      JsonObject content = jsonBuilder.build();
-      java.nio.file.Path path = Files.createTempDirectory("projectDir");
+      return generateZip(commandName, jsonBuilder.build(), headers, true);
+   }
+
+   /**
+    * @param admitted whether the request holds a permit of the <code>ZIP</code> limiter, whose limit is then adjusted
+    *           from the execution latency
+    */
+   private Response generateZip(String commandName, JsonObject content, HttpHeaders headers, boolean admitted)
+            throws Exception
+   {
+      long start = metrics.start(Endpoint.ZIP);
+      String artifactId = findArtifactId(content);
+      String cacheKey = archiveCache.createKey(commandName, content);
+      Workspace workspace = createWorkspace();
+      java.nio.file.Path path = workspace.getPath();
+      boolean streaming = false;
       try (CommandController controller = getCommand(commandName, path, headers))
       {
+         long phase = metrics.record(commandName, Endpoint.ZIP, Phase.CONTROLLER, start);
          helper.populateControllerAllInputs(content, controller);
-         if (controller.isValid())
+         phase = metrics.record(commandName, Endpoint.ZIP, Phase.POPULATE, phase);
+         boolean valid = controller.isValid();
+         phase = metrics.record(commandName, Endpoint.ZIP, Phase.VALIDATE, phase);
+         if (valid)
          {
-            Result result = controller.execute();
-            if (result instanceof Failed)
+            // The inputs are validated even when the archive is cached, as the command may reject them now
+            long cachedSize = archiveCache.getArchiveSize(cacheKey);
+            if (cachedSize >= 0)
+            {
+               // Nothing is held open until the response is written, which the container may never do
+               StreamingOutput cachedContents = os -> {
+                  try (FileChannel channel = archiveCache.open(cacheKey))
+                  {
+                     if (channel == null || channel.size() != cachedSize)
+                     {
+                        throw new IOException("Cached archive " + cacheKey + " was evicted before it was served");
+                     }
+                     ArchiveCache.transfer(channel, os);
+                  }
+               };
+               return zipResponse(cachedContents, artifactId).header(HttpHeaders.CONTENT_LENGTH, cachedSize).build();
+            }
+            long executeStart = phase;
+            Generation generation = generate(commandName, content, headers, controller, workspace);
+            if (generation.isSnapshot())
             {
-               return Response.serverError().entity(result.getMessage()).build();
+               phase = metrics.record(commandName, Endpoint.ZIP, Phase.SNAPSHOT, phase);
             }
             else
             {
-               UISelection<?> selection = controller.getContext().getSelection();
-               java.nio.file.Path projectPath = Paths.get(selection.get().toString());
-               // If downloading a zip, delete .openshiftio dir
-               Path openshiftIoPath = projectPath.resolve(".openshiftio");
-               if (Files.exists(openshiftIoPath))
+               phase = metrics.record(commandName, Endpoint.ZIP, Phase.EXECUTE, phase);
+               if (admitted)
                {
-                  io.openshift.launchpad.backend.util.Paths.deleteDirectory(openshiftIoPath);
+                  admissionController.onExecuted(Endpoint.ZIP, executeStart, phase - executeStart);
                }
-               String artifactId = findArtifactId(content);
-               byte[] zipContents = io.openshift.launchpad.backend.util.Paths.zip(artifactId, projectPath);
-               return Response
-                        .ok(zipContents)
-                        .type("application/zip")
-                        .header("Content-Disposition", "attachment; filename=\"" + artifactId + ".zip\"")
-                        .build();
+               if (generation.isFailed())
+               {
+                  return Response.serverError().entity(generation.getResult().getMessage()).build();
+               }
+            }
+            java.nio.file.Path projectPath = checkSize(workspace, generation.getProjectPath());
+            // If downloading a zip, delete .openshiftio dir
+            Path openshiftIoPath = projectPath.resolve(".openshiftio");
+            if (Files.exists(openshiftIoPath))
+            {
+               io.openshift.launchpad.backend.util.Paths.deleteDirectory(openshiftIoPath);
             }
+            metrics.record(commandName, Endpoint.ZIP, Phase.CLEANUP, phase);
+            // The workspace is released once the archive has been written to the response, or when the request is
+            // over without writing it
+            StreamingOutput zipContents = new ReleasingOutput(os -> {
+               long zipStart = System.nanoTime();
+               ArchiveCache.Writer writer = archiveCache.store(cacheKey, os);
+               boolean complete = false;
+               try
+               {
+                  io.openshift.launchpad.backend.util.Paths.zip(artifactId, projectPath, writer);
+                  complete = true;
+               }
+               finally
+               {
+                  if (complete)
+                  {
+                     writer.commit();
+                  }
+                  else
+                  {
+                     writer.abort();
+                  }
+                  metrics.record(commandName, Endpoint.ZIP, Phase.ZIP, zipStart);
+               }
+            }, () -> {
+               metrics.finish(commandName, Endpoint.ZIP, start);
+               workspace.delete();
+            });
+            streaming = true;
+            return zipResponse(zipContents, artifactId).build();
          }
          else
          {
@@ -291,7 +819,11 @@ public class LaunchpadResource
       }
       finally
       {
-         directoriesToDelete.offer(path);
+         if (!streaming)
+         {
+            metrics.finish(commandName, Endpoint.ZIP, start);
+            workspace.delete();
+         }
       }
    }
 
@@ -302,61 +834,60 @@ public class LaunchpadResource
             @PathParam("commandName") @DefaultValue(DEFAULT_COMMAND_NAME) String commandName,
             @Context HttpHeaders headers)
             throws Exception
+   {
+      return uploadZip(content, commandName, headers, true);
+   }
+
+   /**
+    * @param admitted whether the request holds a permit of the <code>MISSIONCONTROL</code> limiter, whose limit is
+    *           then adjusted from the execution latency
+    */
+   private Response uploadZip(JsonObject content, String commandName, HttpHeaders headers, boolean admitted)
+            throws Exception
    {
       validateCommand(commandName);
-      java.nio.file.Path path = Files.createTempDirectory("projectDir");
+      long start = metrics.start(Endpoint.MISSIONCONTROL);
+      Workspace workspace = createWorkspace();
+      java.nio.file.Path path = workspace.getPath();
       try (CommandController controller = getCommand(commandName, path, headers))
       {
+         long phase = metrics.record(commandName, Endpoint.MISSIONCONTROL, Phase.CONTROLLER, start);
          helper.populateControllerAllInputs(content, controller);
-         if (controller.isValid())
+         phase = metrics.record(commandName, Endpoint.MISSIONCONTROL, Phase.POPULATE, phase);
+         boolean valid = controller.isValid();
+         phase = metrics.record(commandName, Endpoint.MISSIONCONTROL, Phase.VALIDATE, phase);
+         if (valid)
          {
-            Result result = controller.execute();
-            if (result instanceof Failed)
+            long executeStart = phase;
+            Generation generation = generate(commandName, content, headers, controller, workspace);
+            if (generation.isSnapshot())
             {
-               return Response.serverError().entity(result.getMessage()).build();
+               phase = metrics.record(commandName, Endpoint.MISSIONCONTROL, Phase.SNAPSHOT, phase);
             }
             else
             {
-               UISelection<?> selection = controller.getContext().getSelection();
-               java.nio.file.Path projectPath = Paths.get(selection.get().toString());
-               String artifactId = findArtifactId(content);
-               byte[] zipContents = io.openshift.launchpad.backend.util.Paths.zip(artifactId, projectPath);
-               String gitHubRepositoryDescription = "Generated by Launchpad " + ForgeInitializer.getVersion();
-               Client client = ClientBuilder.newBuilder().build();
-               try
+               phase = metrics.record(commandName, Endpoint.MISSIONCONTROL, Phase.EXECUTE, phase);
+               if (admitted)
                {
-                  WebTarget target = client.target(missionControlURI)
-                           .property(HttpHeaders.CONTENT_TYPE, MediaType.MULTIPART_FORM_DATA);
-
-                  // Create request body
-                  MultipartFormDataOutput multipartFormDataOutput = new MultipartFormDataOutput();
-                  multipartFormDataOutput.addFormData("file", new ByteArrayInputStream(zipContents),
-                           MediaType.MULTIPART_FORM_DATA_TYPE, "project.zip");
-                  multipartFormDataOutput.addFormData("gitHubRepositoryDescription", gitHubRepositoryDescription,
-                           MediaType.APPLICATION_FORM_URLENCODED_TYPE);
-
-                  // Execute POST Request
-                  Response post = target.request()
-                           .header(HttpHeaders.CONTENT_TYPE, MediaType.MULTIPART_FORM_DATA)
-                           // Propagate Authorization header
-                           .header(HttpHeaders.AUTHORIZATION, headers.getHeaderString(HttpHeaders.AUTHORIZATION))
-                           .post(Entity.entity(multipartFormDataOutput, MediaType.MULTIPART_FORM_DATA_TYPE));
-
-                  URI location = post.getLocation();
-                  if (location != null)
-                  {
-                     return Response.ok(location.toString()).build();
-                  }
-                  else
-                  {
-                     return Response.ok(post.readEntity(String.class), MediaType.APPLICATION_JSON).build();
-                  }
+                  admissionController.onExecuted(Endpoint.MISSIONCONTROL, executeStart, phase - executeStart);
                }
-               finally
+               if (generation.isFailed())
                {
-                  client.close();
+                  return Response.serverError().entity(generation.getResult().getMessage()).build();
                }
             }
+            java.nio.file.Path projectPath = checkSize(workspace, generation.getProjectPath());
+            String artifactId = findArtifactId(content);
+            String gitHubRepositoryDescription = "Generated by Launchpad " + ForgeInitializer.getVersion();
+            try
+            {
+               return missionControl.upload(artifactId, projectPath, gitHubRepositoryDescription,
+                        headers.getHeaderString(HttpHeaders.AUTHORIZATION));
+            }
+            finally
+            {
+               metrics.record(commandName, Endpoint.MISSIONCONTROL, Phase.UPLOAD, phase);
+            }
          }
          else
          {
@@ -367,8 +898,138 @@ public class LaunchpadResource
       }
       finally
       {
-         directoriesToDelete.offer(path);
+         metrics.finish(commandName, Endpoint.MISSIONCONTROL, start);
+         workspace.delete();
+      }
+   }
+
+   /**
+    * Generates one project per input set and returns them in a single archive, each in a directory named after its
+    * artifactId. The input sets are generated in parallel by a bounded number of workers once the response is
+    * written, see {@link BatchArchive}. The outcome of every input set is reported in <code>batch-report.json</code>
+    * at the root of the archive, so that a failed input set does not fail the batch.
+    *
+    * @param items the input sets, each of the shape produced by {@link JsonBuilder#build()}
+    */
+   @POST
+   @javax.ws.rs.Path("/commands/{commandName}/batch")
+   @Consumes(MediaType.APPLICATION_JSON)
+   public Response generateBatch(JsonArray items,
+            @PathParam("commandName") @DefaultValue(DEFAULT_COMMAND_NAME) String commandName,
+            @Context HttpHeaders headers)
+   {
+      validateCommand(commandName);
+      if (items.isEmpty() || items.size() > batchMaxItems)
+      {
+         throw new WebApplicationException("A batch has between 1 and " + batchMaxItems + " input sets",
+                  Status.BAD_REQUEST);
+      }
+      // The injected headers are bound to this request
+      HttpHeaders snapshot = new HttpHeadersSnapshot(headers);
+      BatchArchive archive = new BatchArchive(items, batchWorkers, executorService,
+               (value, item) -> generateBatchItem(commandName, value, item, snapshot));
+      StreamingOutput contents = os -> {
+         long start = metrics.start(Endpoint.BATCH);
+         try
+         {
+            archive.write(os);
+         }
+         finally
+         {
+            metrics.record(commandName, Endpoint.BATCH, Phase.ZIP, start);
+            metrics.finish(commandName, Endpoint.BATCH, start);
+         }
+      };
+      return zipResponse(contents, commandName + "-batch").build();
+   }
+
+   /**
+    * Queues the generation of a project, returning <code>202 Accepted</code> with the location of the job. The result
+    * of the job is returned by {@link #getJob(String, HttpHeaders)}.
+    *
+    * @param target <code>zip</code> to download the project or <code>missioncontrol</code> to upload it
+    */
+   @POST
+   @javax.ws.rs.Path("/commands/{commandName}/jobs")
+   @Consumes(MediaType.APPLICATION_JSON)
+   @Produces(MediaType.APPLICATION_JSON)
+   public Response submitJob(JsonObject content,
+            @PathParam("commandName") @DefaultValue(DEFAULT_COMMAND_NAME) String commandName,
+            @QueryParam("target") @DefaultValue(JOB_TARGET_ZIP) String target,
+            @Context HttpHeaders headers, @Context UriInfo uriInfo)
+   {
+      validateCommand(commandName);
+      if (!JOB_TARGET_ZIP.equals(target) && !JOB_TARGET_MISSIONCONTROL.equals(target))
+      {
+         throw new WebApplicationException("Unknown job target '" + target + "'", Status.BAD_REQUEST);
+      }
+      // The injected headers are bound to this request
+      HttpHeaders snapshot = new HttpHeadersSnapshot(headers);
+      long start = metrics.start(Endpoint.JOB);
+      Job job = jobs.submit(commandName, headers.getHeaderString(HttpHeaders.AUTHORIZATION), queued -> {
+         try
+         {
+            metrics.record(commandName, Endpoint.JOB, Phase.QUEUE, queued.getSubmittedNanos());
+            Response response;
+            try
+            {
+               // Jobs hold no permit of the request limiters, so their latency does not adjust them
+               response = JOB_TARGET_ZIP.equals(target) ? generateZip(commandName, content, snapshot, false)
+                        : uploadZip(content, commandName, snapshot, false);
+            }
+            catch (WebApplicationException e)
+            {
+               response = e.getResponse();
+            }
+            queued.complete(response);
+         }
+         finally
+         {
+            metrics.finish(commandName, Endpoint.JOB, start);
+         }
+      });
+      if (job == null)
+      {
+         metrics.finish(commandName, Endpoint.JOB, start);
+         throw new WebApplicationException(Response.status(TOO_MANY_REQUESTS)
+                  .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                  .entity("Too many queued jobs").build());
       }
+      URI location = uriInfo.getBaseUriBuilder().path(LaunchpadResource.class).path("jobs").path(job.getId()).build();
+      return Response.accepted(job.toJson()).location(location).build();
+   }
+
+   /**
+    * Returns <code>202 Accepted</code> with the status of the job while it runs, then the response of the generation.
+    * A job submitted with another <code>Authorization</code> header is not found.
+    */
+   @GET
+   @javax.ws.rs.Path("/jobs/{jobId}")
+   public Response getJob(@PathParam("jobId") String jobId, @Context HttpHeaders headers) throws Exception
+   {
+      Job job = jobs.get(jobId);
+      if (job == null || !job.isOwnedBy(headers.getHeaderString(HttpHeaders.AUTHORIZATION)))
+      {
+         throw new WebApplicationException("No such job '" + jobId + "'", Status.NOT_FOUND);
+      }
+      if (!job.isDone())
+      {
+         return Response.accepted(job.toJson()).type(MediaType.APPLICATION_JSON)
+                  .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS).build();
+      }
+      if (job.getStatus() == Job.Status.FAILED)
+      {
+         return Response.serverError().entity(job.toJson()).type(MediaType.APPLICATION_JSON).build();
+      }
+      return job.toResponse();
+   }
+
+   private ResponseBuilder zipResponse(StreamingOutput contents, String artifactId)
+   {
+      return Response
+               .ok(contents)
+               .type("application/zip")
+               .header("Content-Disposition", "attachment; filename=\"" + artifactId + ".zip\"");
    }
 
    protected void validateCommand(String commandName)
@@ -381,7 +1042,109 @@ public class LaunchpadResource
       }
    }
 
-   private String findArtifactId(JsonObject content)
+   private WizardSession getSession(String sessionId)
+   {
+      WizardSession session = wizardSessions.get(sessionId);
+      if (session == null)
+      {
+         throw new WebApplicationException("No such session '" + sessionId + "'", Status.NOT_FOUND);
+      }
+      return session;
+   }
+
+   private void describeSession(JsonObjectBuilder builder, WizardSession session)
+   {
+      builder.add("sessionId", session.getId());
+      builder.add("stepIndex", session.getStepIndex());
+      helper.describeMetadata(builder, session.getController());
+      helper.describeCurrentState(builder, session.getController());
+      helper.describeInputs(builder, session.getController());
+   }
+
+   /**
+    * Exposes the state of the controller pools, wizard sessions, directory reaper and Mission Control client
+    */
+   private void registerMetrics()
+   {
+      for (CommandControllerPool pool : controllerPools.values())
+      {
+         String labels = "command=\"" + pool.getCommandName() + "\"";
+         metrics.registerCounter("controller_pool_hits_total", "Controllers served from the pool", labels,
+                  pool::getHits);
+         metrics.registerCounter("controller_pool_misses_total", "Controllers created on the request thread", labels,
+                  pool::getMisses);
+         metrics.registerGauge("controller_pool_idle", "Initialized controllers waiting in the pool", labels,
+                  pool::getIdleCount);
+      }
+      metrics.registerGauge("wizard_sessions", "Open wizard sessions", null, wizardSessions::size);
+      metrics.registerGauge("wizard_sessions_memory_bytes", "Estimated memory held by wizard sessions", null,
+               wizardSessions::getEstimatedMemory);
+      metrics.registerGauge("reaper_queue_size", "Temporary directories waiting to be deleted", null,
+               directoryReaper::getQueueSize);
+      metrics.registerGauge("reaper_lag_milliseconds", "Age of the oldest directory waiting to be deleted", null,
+               directoryReaper::getLagMillis);
+      metrics.registerCounter("reaper_deleted_total", "Temporary directories deleted", null,
+               directoryReaper::getDeleted);
+      metrics.registerCounter("reaper_failures_total", "Temporary directories that could not be deleted", null,
+               directoryReaper::getFailures);
+      metrics.registerGauge("workspace_disk_reserved_bytes", "Disk space reserved by the workspaces", null,
+               workspaceManager::getReservedDisk);
+      metrics.registerGauge("workspace_free_bytes", "Usable space of the workspace volume", null,
+               workspaceManager::getFreeSpace);
+      metrics.registerGauge("workspaces_idle", "Empty workspaces waiting to be reused", null,
+               workspaceManager::getIdleCount);
+      metrics.registerCounter("workspaces_recycled_total", "Workspaces taken from the pool", null,
+               workspaceManager::getRecycled);
+      metrics.registerCounter("workspaces_rejected_total", "Workspaces refused because the quota was used up", null,
+               workspaceManager::getRejected);
+      metrics.registerGauge("workspace_memory_reserved_bytes", "Memory reserved by the workspaces in memory", null,
+               workspaceManager::getReservedMemory);
+      metrics.registerCounter("workspaces_memory_total", "Workspaces created in memory", null,
+               workspaceManager::getMemoryWorkspaces);
+      metrics.registerCounter("workspaces_disk_total", "Workspaces created on disk", null,
+               workspaceManager::getDiskWorkspaces);
+      metrics.registerCounter("workspaces_moved_to_disk_total", "Workspaces moved to disk because they were too large",
+               null, workspaceManager::getMovedToDisk);
+      metrics.registerGauge("validation_delta_states", "Validation responses kept to compute deltas", null,
+               validationDeltas::size);
+      metrics.registerCounter("validation_deltas_total", "Validation responses sent as deltas", null,
+               validationDeltas::getDeltas);
+      metrics.registerCounter("validation_delta_misses_total",
+               "Delta validation responses sent in full because the state version was unknown", null,
+               validationDeltas::getFullResponses);
+      metrics.registerCounter("validations_coalesced_total",
+               "Validations answered with the result of an identical validation in flight", null,
+               validations::getCoalesced);
+      metrics.registerCounter("archive_cache_hits_total", "Zip downloads served from the archive cache", null,
+               archiveCache::getHits);
+      metrics.registerCounter("archive_cache_misses_total", "Zip downloads not found in the archive cache", null,
+               archiveCache::getMisses);
+      metrics.registerCounter("archive_cache_evictions_total", "Archives evicted from the archive cache", null,
+               archiveCache::getEvictions);
+      metrics.registerGauge("archive_cache_size_bytes", "Total size of the cached archives", null,
+               archiveCache::getSize);
+      metrics.registerCounter("snapshot_hits_total", "Projects written from a booster snapshot", null,
+               snapshots::getHits);
+      metrics.registerCounter("snapshot_misses_total", "Projects generated by executing the command", null,
+               snapshots::getMisses);
+      metrics.registerGauge("snapshots", "Recorded booster snapshots", null, snapshots::getCount);
+      metrics.registerGauge("snapshots_unsafe", "Inputs whose output cannot be snapshotted", null,
+               snapshots::getUnsafeCount);
+      metrics.registerGauge("jobs_queued", "Generation jobs waiting for a worker", null, jobs::getQueueSize);
+      metrics.registerGauge("jobs_running", "Generation jobs being run", null, jobs::getRunning);
+      metrics.registerCounter("jobs_submitted_total", "Generation jobs accepted", null, jobs::getSubmitted);
+      metrics.registerCounter("jobs_rejected_total", "Generation jobs rejected because the queue was full", null,
+               jobs::getRejected);
+      metrics.registerCounter("jobs_failed_total", "Generation jobs that failed", null, jobs::getFailed);
+      metrics.registerGauge("missioncontrol_requests_in_flight", "Requests to Mission Control in flight", null,
+               missionControlClient::getInFlight);
+      metrics.registerCounter("missioncontrol_requests_total", "Requests sent to Mission Control", null,
+               missionControlClient::getRequests);
+      metrics.registerCounter("missioncontrol_failures_total", "Requests to Mission Control that failed", null,
+               missionControlClient::getFailures);
+   }
+
+   static String findArtifactId(JsonObject content)
    {
       String artifactId = content.getJsonArray("inputs").stream()
                .filter(input -> "named".equals(((JsonObject) input).getString("name")))
@@ -402,7 +1165,401 @@ public class LaunchpadResource
       String port = System.getProperty(LAUNCHPAD_MISSIONCONTROL_SERVICE_PORT,
                System.getenv(LAUNCHPAD_MISSIONCONTROL_SERVICE_PORT));
       uri.port(port != null ? Integer.parseInt(port) : 80);
-      missionControlURI = uri.build();
+      missionControl = new MissionControl(uri.build(), missionControlClient, executorService);
+   }
+
+   /**
+    * Returns an initialized controller rooted at {@link WorkspaceManager#getRoot()}, taken from the command pool when
+    * one is available. A pooled controller was initialized without the request headers, which are only added to its
+    * context afterwards, so only the commands whose <code>initializeUI</code> does not read them are pooled, see
+    * <code>LAUNCHPAD_BACKEND_CONTROLLER_POOL_COMMANDS</code>.
+    */
+   private CommandController getPooledCommand(String name, HttpHeaders headers) throws Exception
+   {
+      CommandControllerPool pool = controllerPools.get(name);
+      if (pool == null)
+      {
+         return getCommand(name, workspaceManager.getRoot(), headers);
+      }
+      CommandController controller = pool.acquire();
+      addHeaders(controller.getContext(), headers);
+      return controller;
+   }
+
+   /**
+    * Generates the project of one input set of a batch in its own workspace and controller. Unlike the candidates of
+    * {@link #validateCandidates(JsonObject, String, HttpHeaders)}, an input set is executed: the project is written
+    * into the selection of the controller context, which is set once when the controller is created. A controller
+    * rewound to its first step would still write the next project into the previous workspace, so the batch only
+    * shares what the warm-up loaded for the command, its addon classes and caches.
+    */
+   private void generateBatchItem(String commandName, JsonValue value, BatchItem item, HttpHeaders headers)
+   {
+      if (!(value instanceof JsonObject))
+      {
+         item.fail("The input set is not a JSON object");
+         return;
+      }
+      JsonObject content = (JsonObject) value;
+      long start = System.nanoTime();
+      try
+      {
+         item.setArtifactId(findArtifactId(content));
+         Workspace workspace = workspaceManager.create();
+         item.setWorkspace(workspace);
+         java.nio.file.Path path = workspace.getPath();
+         try (CommandController controller = getCommand(commandName, path, headers))
+         {
+            long phase = metrics.record(commandName, Endpoint.BATCH, Phase.CONTROLLER, start);
+            helper.populateControllerAllInputs(content, controller);
+            phase = metrics.record(commandName, Endpoint.BATCH, Phase.POPULATE, phase);
+            boolean valid = controller.isValid();
+            phase = metrics.record(commandName, Endpoint.BATCH, Phase.VALIDATE, phase);
+            if (!valid)
+            {
+               JsonObjectBuilder builder = createObjectBuilder();
+               helper.describeValidation(builder, controller);
+               item.invalid(builder.build());
+               return;
+            }
+            Generation generation = generate(commandName, content, headers, controller, workspace);
+            if (generation.isSnapshot())
+            {
+               phase = metrics.record(commandName, Endpoint.BATCH, Phase.SNAPSHOT, phase);
+            }
+            else
+            {
+               phase = metrics.record(commandName, Endpoint.BATCH, Phase.EXECUTE, phase);
+               if (generation.isFailed())
+               {
+                  item.fail(generation.getResult().getMessage());
+                  return;
+               }
+            }
+            java.nio.file.Path projectPath = workspace.checkSize(generation.getProjectPath());
+            Path openshiftIoPath = projectPath.resolve(".openshiftio");
+            if (Files.exists(openshiftIoPath))
+            {
+               io.openshift.launchpad.backend.util.Paths.deleteDirectory(openshiftIoPath);
+            }
+            item.setProjectPath(projectPath);
+            metrics.record(commandName, Endpoint.BATCH, Phase.CLEANUP, phase);
+         }
+      }
+      catch (Exception e)
+      {
+         log.log(Level.WARNING, "Error while generating input set " + item.getIndex() + " of a batch", e);
+         item.fail(e.getMessage() != null ? e.getMessage() : e.toString());
+      }
+   }
+
+   /**
+    * Evaluates candidates setting the same inputs on a single controller, replaced only when a candidate fails
+    */
+   private void validateGroup(String commandName, List<JsonObject> candidates, List<Integer> group,
+            JsonObject[] results, HttpHeaders headers, long start) throws Exception
+   {
+      CommandController controller = null;
+      try
+      {
+         for (int index : group)
+         {
+            JsonObject candidate = candidates.get(index);
+            try
+            {
+               if (controller == null)
+               {
+                  controller = getPooledCommand(commandName, headers);
+                  metrics.record(commandName, Endpoint.VALIDATE, Phase.CONTROLLER, start);
+               }
+               CommandController current = controller;
+               results[index] = validations.get(validationKey("candidate", commandName, candidate, headers), () -> {
+                  long phase = System.nanoTime();
+                  rewind(current);
+                  helper.populateControllerAllInputs(candidate, current);
+                  phase = metrics.record(commandName, Endpoint.VALIDATE, Phase.POPULATE, phase);
+                  JsonObjectBuilder builder = createObjectBuilder();
+                  helper.describeCurrentState(builder, current);
+                  helper.describeValidation(builder, current);
+                  metrics.record(commandName, Endpoint.VALIDATE, Phase.DESCRIBE, phase);
+                  return builder.build();
+               });
+            }
+            catch (WebApplicationException e)
+            {
+               throw e;
+            }
+            catch (Exception e)
+            {
+               log.log(Level.FINE, "Error while validating candidate " + index, e);
+               results[index] = createObjectBuilder()
+                        .add("error", e.getMessage() != null ? e.getMessage() : e.toString()).build();
+               // The controller may be left half populated
+               if (controller != null)
+               {
+                  controller.close();
+                  controller = null;
+               }
+            }
+         }
+      }
+      finally
+      {
+         if (controller != null)
+         {
+            controller.close();
+         }
+      }
+   }
+
+   /**
+    * Returns a wizard to its first step, so that it can be populated again
+    */
+   private static void rewind(CommandController controller) throws Exception
+   {
+      if (controller instanceof WizardCommandController)
+      {
+         WizardCommandController wizardController = (WizardCommandController) controller;
+         while (wizardController.canMoveToPreviousStep())
+         {
+            wizardController.previous();
+         }
+      }
+   }
+
+   /**
+    * Reads the candidates of {@link #validateCandidates(JsonObject, String, HttpHeaders)}
+    */
+   static List<JsonObject> createCandidates(JsonObject content)
+   {
+      List<JsonObject> candidates = new ArrayList<>();
+      JsonArray complete = content.getJsonArray("candidates");
+      if (complete != null)
+      {
+         complete.getValuesAs(JsonObject.class).forEach(candidates::add);
+      }
+      JsonObject base = content.getJsonObject("base");
+      JsonArray changes = content.getJsonArray("changes");
+      if (base != null && changes != null)
+      {
+         JsonArray baseInputs = base.getJsonArray("inputs");
+         for (JsonArray change : changes.getValuesAs(JsonArray.class))
+         {
+            Map<String, JsonValue> inputs = new LinkedHashMap<>();
+            if (baseInputs != null)
+            {
+               baseInputs.getValuesAs(JsonObject.class).forEach(input -> inputs.put(input.getString("name"), input));
+            }
+            change.getValuesAs(JsonObject.class).forEach(input -> inputs.put(input.getString("name"), input));
+            JsonArrayBuilder merged = JSON.createArrayBuilder();
+            inputs.values().forEach(merged::add);
+            candidates.add(createObjectBuilder()
+                     .add("stepIndex", base.getInt("stepIndex", 1))
+                     .add("inputs", merged)
+                     .build());
+         }
+      }
+      return candidates;
+   }
+
+   /**
+    * @return the step and the names of the inputs set by a candidate
+    */
+   private static String inputShape(JsonObject candidate)
+   {
+      Set<String> names = new TreeSet<>();
+      JsonArray inputs = candidate.getJsonArray("inputs");
+      if (inputs != null)
+      {
+         inputs.getValuesAs(JsonObject.class).forEach(input -> names.add(input.getString("name")));
+      }
+      return candidate.getInt("stepIndex", 1) + "\n" + String.join("\n", names);
+   }
+
+   /**
+    * Keys a validation by its inputs and the headers telling clients apart, so that only identical validations of
+    * the same client are coalesced
+    *
+    * @return the key, or <code>null</code> if coalescing is disabled
+    */
+   private String validationKey(String kind, String commandName, JsonObject content, HttpHeaders headers)
+   {
+      if (!coalesceValidations)
+      {
+         return null;
+      }
+      StringBuilder key = new StringBuilder(kind).append('\n').append(commandName);
+      for (String headerName : coalesceHeaders)
+      {
+         List<String> values = headers == null ? null : headers.getRequestHeader(headerName);
+         key.append('\n').append(headerName).append('=');
+         if (values != null)
+         {
+            key.append(String.join(",", values));
+         }
+      }
+      return MetadataCache.sha256(key.append('\n').append(content).toString());
+   }
+
+   /**
+    * Creates the workspace of a generation, answering <code>503 Service Unavailable</code> when the quota is used up
+    */
+   private Workspace createWorkspace() throws IOException
+   {
+      try
+      {
+         return workspaceManager.create();
+      }
+      catch (WorkspaceQuotaExceededException e)
+      {
+         throw quotaExceeded(e);
+      }
+   }
+
+   /**
+    * Measures the generated project, answering <code>503 Service Unavailable</code> when it does not fit in the quota
+    */
+   private java.nio.file.Path checkSize(Workspace workspace, java.nio.file.Path project) throws IOException
+   {
+      try
+      {
+         return workspace.checkSize(project);
+      }
+      catch (WorkspaceQuotaExceededException e)
+      {
+         throw quotaExceeded(e);
+      }
+   }
+
+   private WebApplicationException quotaExceeded(WorkspaceQuotaExceededException e)
+   {
+      return new WebApplicationException(e.getMessage(), Response.status(Status.SERVICE_UNAVAILABLE)
+               .header(HttpHeaders.RETRY_AFTER, admissionController.getRetryAfterSeconds())
+               .entity(e.getMessage()).build());
+   }
+
+   /**
+    * Generates the project of a valid controller, from a snapshot or by executing the command. When a memory
+    * workspace runs out of space, the workspace is replaced by one on disk and the generation starts over there with
+    * a new controller.
+    */
+   private Generation generate(String commandName, JsonObject content, HttpHeaders headers,
+            CommandController controller, Workspace workspace) throws Exception
+   {
+      try
+      {
+         Generation generation = generate(commandName, content, headers, controller, workspace.getPath());
+         if (!generation.isFailed()
+                  || !retryOnDisk(workspace, ((Failed) generation.getResult()).getException()))
+         {
+            return generation;
+         }
+      }
+      catch (Exception e)
+      {
+         if (!retryOnDisk(workspace, e))
+         {
+            throw e;
+         }
+      }
+      try (CommandController retry = getCommand(commandName, workspace.getPath(), headers))
+      {
+         helper.populateControllerAllInputs(content, retry);
+         return generate(commandName, content, headers, retry, workspace.getPath());
+      }
+   }
+
+   private Generation generate(String commandName, JsonObject content, HttpHeaders headers,
+            CommandController controller, java.nio.file.Path path) throws Exception
+   {
+      java.nio.file.Path materialized = snapshots.materialize(commandName, content, path);
+      if (materialized != null)
+      {
+         return new Generation(null, materialized);
+      }
+      Result result = controller.execute();
+      if (result instanceof Failed)
+      {
+         return new Generation(result, null);
+      }
+      snapshots.record(commandName, content, snapshotGenerator(commandName, headers));
+      return new Generation(result, Paths.get(controller.getContext().getSelection().get().toString()));
+   }
+
+   /**
+    * Moves a memory workspace to disk when its generation failed with an I/O error, which on a memory volume is
+    * usually the volume running full
+    *
+    * @return <code>true</code> if the generation should start over in the workspace
+    */
+   private boolean retryOnDisk(Workspace workspace, Throwable failure) throws IOException
+   {
+      if (!workspace.isInMemory() || !isCausedByIOException(failure))
+      {
+         return false;
+      }
+      log.log(Level.WARNING, "Generation failed in memory workspace " + workspace.getPath() + ", retrying on disk",
+               failure);
+      try
+      {
+         workspace.retryOnDisk();
+      }
+      catch (WorkspaceQuotaExceededException e)
+      {
+         throw quotaExceeded(e);
+      }
+      return true;
+   }
+
+   private static boolean isCausedByIOException(Throwable failure)
+   {
+      for (Throwable cause = failure; cause != null; cause = cause.getCause())
+      {
+         if (cause instanceof IOException)
+         {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * Executes the command in the background, for the recording of snapshots
+    */
+   private BoosterSnapshots.Generator snapshotGenerator(String commandName, HttpHeaders headers)
+   {
+      // The injected headers are bound to this request
+      HttpHeaders snapshot = new HttpHeadersSnapshot(headers);
+      return (content, directory) -> {
+         try (CommandController controller = getCommand(commandName, directory, snapshot))
+         {
+            helper.populateControllerAllInputs(content, controller);
+            if (!controller.isValid())
+            {
+               throw new IllegalStateException("Invalid inputs");
+            }
+            Result result = controller.execute();
+            if (result instanceof Failed)
+            {
+               throw new IllegalStateException(result.getMessage());
+            }
+            return Paths.get(controller.getContext().getSelection().get().toString());
+         }
+      };
+   }
+
+   private CommandControllerPool createControllerPool(String name)
+   {
+      int defaultSize = Configuration.getInt(LAUNCHPAD_BACKEND_CONTROLLER_POOL_SIZE, DEFAULT_CONTROLLER_POOL_SIZE);
+      int size = Configuration.getInt(LAUNCHPAD_BACKEND_CONTROLLER_POOL_SIZE + "_" + Configuration.toKey(name),
+               defaultSize);
+      return new CommandControllerPool(name, size, () -> getCommand(name, workspaceManager.getRoot(), null),
+               executorService);
+   }
+
+   private static JsonObjectBuilder createObjectBuilder()
+   {
+      return JSON.createObjectBuilder();
    }
 
    private CommandController getCommand(String name, Path initialPath, HttpHeaders headers) throws Exception
@@ -419,12 +1576,17 @@ public class LaunchpadResource
    {
       Resource<?> selection = resourceFactory.create(initialPath.toFile());
       RestUIContext context = new RestUIContext(selection, Collections.emptyList());
+      addHeaders(context, headers);
+      return context;
+   }
+
+   private void addHeaders(UIContext context, HttpHeaders headers)
+   {
       if (headers != null)
       {
          Map<Object, Object> attributeMap = context.getAttributeMap();
          MultivaluedMap<String, String> requestHeaders = headers.getRequestHeaders();
          requestHeaders.keySet().forEach(key -> attributeMap.put(key, headers.getRequestHeader(key)));
       }
-      return context;
    }
 }
\ No newline at end of file
@@ -0,0 +1,161 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.rest;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response.ResponseBuilder;
+
+/**
+ * Caches the serialized command metadata returned by {@link LaunchpadResource#getCommandInfo}.
+ * <p>
+ * Entries are keyed by the command name and the values of a whitelist of request headers, since these are the only
+ * request dependent inputs of the command description. The whitelist includes <code>Authorization</code> by default,
+ * so that metadata computed from the credentials of a caller, e.g. value choices, is never served to another caller.
+ * Keys are hashed, so that the cache does not keep credentials. Responses vary on the same headers.
+ */
+public class MetadataCache
+{
+   private final List<String> headerNames;
+   private final Map<String, Entry> entries;
+
+   /**
+    * @param headerNames the request headers that are part of the cache key
+    * @param maxEntries the maximum number of cached responses
+    */
+   public MetadataCache(List<String> headerNames, int maxEntries)
+   {
+      this.headerNames = headerNames;
+      this.entries = Collections.synchronizedMap(new LinkedHashMap<String, Entry>(16, 0.75f, true)
+      {
+         private static final long serialVersionUID = 1L;
+
+         @Override
+         protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest)
+         {
+            return size() > maxEntries;
+         }
+      });
+   }
+
+   /**
+    * @return the hash of the command name and the values of the whitelisted headers
+    */
+   public String createKey(String commandName, HttpHeaders headers)
+   {
+      StringBuilder key = new StringBuilder(commandName);
+      for (String headerName : headerNames)
+      {
+         List<String> values = headers == null ? null : headers.getRequestHeader(headerName);
+         key.append('\n').append(headerName).append('=');
+         if (values != null)
+         {
+            key.append(String.join(",", values));
+         }
+      }
+      return sha256(key.toString());
+   }
+
+   /**
+    * Adds a <code>Vary</code> header listing the whitelisted headers, so that shared caches key responses on them too,
+    * and keeps the responses that depend on the credentials out of shared caches
+    */
+   public ResponseBuilder addCacheHeaders(ResponseBuilder builder)
+   {
+      if (!headerNames.isEmpty())
+      {
+         builder.header(HttpHeaders.VARY, String.join(", ", headerNames));
+      }
+      if (headerNames.stream().anyMatch(HttpHeaders.AUTHORIZATION::equalsIgnoreCase))
+      {
+         builder.header(HttpHeaders.CACHE_CONTROL, "private");
+      }
+      return builder;
+   }
+
+   public Entry get(String key)
+   {
+      return entries.get(key);
+   }
+
+   public Entry put(String key, String json)
+   {
+      Entry entry = new Entry(json);
+      entries.put(key, entry);
+      return entry;
+   }
+
+   public void clear()
+   {
+      entries.clear();
+   }
+
+   public int size()
+   {
+      return entries.size();
+   }
+
+   /**
+    * A cached JSON response and its strong {@link EntityTag}
+    */
+   public static class Entry
+   {
+      private final String json;
+      private final EntityTag entityTag;
+
+      Entry(String json)
+      {
+         this.json = json;
+         this.entityTag = new EntityTag(sha256(json));
+      }
+
+      public String getJson()
+      {
+         return json;
+      }
+
+      public EntityTag getEntityTag()
+      {
+         return entityTag;
+      }
+   }
+
+   public static String sha256(String content)
+   {
+      try
+      {
+         byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+         StringBuilder sb = new StringBuilder(digest.length * 2);
+         for (byte b : digest)
+         {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+         }
+         return sb.toString();
+      }
+      catch (NoSuchAlgorithmException e)
+      {
+         throw new IllegalStateException(e);
+      }
+   }
+}
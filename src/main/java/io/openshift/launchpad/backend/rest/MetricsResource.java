@@ -0,0 +1,48 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.rest;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+
+import io.openshift.launchpad.backend.metrics.LaunchpadMetrics;
+
+/**
+ * Exposes the {@link LaunchpadMetrics} in the Prometheus text exposition format
+ */
+@Path(MetricsResource.PATH_METRICS)
+@ApplicationScoped
+public class MetricsResource
+{
+   public static final String PATH_METRICS = "/metrics";
+
+   static final String PROMETHEUS_TEXT = "text/plain; version=0.0.4; charset=utf-8";
+
+   @Inject
+   private LaunchpadMetrics metrics;
+
+   @GET
+   @Produces(PROMETHEUS_TEXT)
+   public String metrics()
+   {
+      StringBuilder out = new StringBuilder(8192);
+      metrics.write(out);
+      return out.toString();
+   }
+}
@@ -0,0 +1,66 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.rest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.ws.rs.core.StreamingOutput;
+
+/**
+ * A {@link StreamingOutput} holding resources, such as a workspace, until it is written. It is {@link Closeable} so
+ * that they are also released when it is never written: {@link RequestCompletion} closes the response entities once
+ * the request is over, and jobs close them once complete.
+ */
+class ReleasingOutput implements StreamingOutput, Closeable
+{
+   private final StreamingOutput contents;
+   private final Runnable release;
+   private final AtomicBoolean released = new AtomicBoolean();
+
+   /**
+    * @param release run once, after the contents are written or when closed
+    */
+   ReleasingOutput(StreamingOutput contents, Runnable release)
+   {
+      this.contents = contents;
+      this.release = release;
+   }
+
+   @Override
+   public void write(OutputStream os) throws IOException
+   {
+      try
+      {
+         contents.write(os);
+      }
+      finally
+      {
+         close();
+      }
+   }
+
+   @Override
+   public void close()
+   {
+      if (released.compareAndSet(false, true))
+      {
+         release.run();
+      }
+   }
+}
@@ -0,0 +1,121 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.rest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Priority;
+import javax.servlet.ServletRequestEvent;
+import javax.servlet.ServletRequestListener;
+import javax.servlet.annotation.WebListener;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+
+/**
+ * Runs cleanups once the container is done with a request, whether its response entity was written or not, and even
+ * if an exception escaped the JAX-RS filters. {@link Closeable} response entities, such as {@link ReleasingOutput}, are
+ * closed then.
+ * <p>
+ * The callbacks are kept in a request property, which the container stores as a servlet request attribute. They may
+ * also have run earlier, once the response was written, so they must be idempotent.
+ */
+@WebListener
+@Priority(Priorities.USER + 1000)
+public class RequestCompletion implements ServletRequestListener, ContainerResponseFilter
+{
+   static final String CALLBACKS = RequestCompletion.class.getName() + ".callbacks";
+
+   private static final Logger log = Logger.getLogger(RequestCompletion.class.getName());
+
+   /**
+    * Runs the given callback when the request is over
+    */
+   @SuppressWarnings("unchecked")
+   static void register(ContainerRequestContext requestContext, Runnable callback)
+   {
+      List<Runnable> callbacks = (List<Runnable>) requestContext.getProperty(CALLBACKS);
+      if (callbacks == null)
+      {
+         callbacks = new ArrayList<>();
+         requestContext.setProperty(CALLBACKS, callbacks);
+      }
+      callbacks.add(callback);
+   }
+
+   /**
+    * Registers the closing of a {@link Closeable} entity. Response filters with a higher priority run first, so this one
+    * runs before the others may fail.
+    */
+   @Override
+   public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext)
+   {
+      Object entity = responseContext.getEntity();
+      if (entity instanceof Closeable)
+      {
+         register(requestContext, () -> {
+            try
+            {
+               ((Closeable) entity).close();
+            }
+            catch (IOException e)
+            {
+               log.log(Level.WARNING, "Error while closing the response entity", e);
+            }
+         });
+      }
+   }
+
+   @Override
+   public void requestInitialized(ServletRequestEvent event)
+   {
+   }
+
+   @Override
+   public void requestDestroyed(ServletRequestEvent event)
+   {
+      complete(event.getServletRequest().getAttribute(CALLBACKS));
+   }
+
+   /**
+    * Runs the callbacks registered in the given request property
+    */
+   @SuppressWarnings("unchecked")
+   static void complete(Object callbacks)
+   {
+      if (callbacks == null)
+      {
+         return;
+      }
+      for (Runnable callback : (List<Runnable>) callbacks)
+      {
+         try
+         {
+            callback.run();
+         }
+         catch (RuntimeException e)
+         {
+            log.log(Level.WARNING, "Error while completing a request", e);
+         }
+      }
+   }
+}
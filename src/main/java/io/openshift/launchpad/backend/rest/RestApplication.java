@@ -37,6 +37,13 @@ public class RestApplication extends Application
       HashSet<Class<?>> classes = new HashSet<>();
       classes.add(LaunchpadResource.class);
       classes.add(HealthResource.class);
+      classes.add(MetricsResource.class);
+      classes.add(AdmissionResource.class);
+      classes.add(AdmissionFilter.class);
+      classes.add(RequestCompletion.class);
+      classes.add(UnhandledExceptionMapper.class);
+      classes.add(CompressionInterceptor.class);
+      classes.add(JsonStructureWriter.class);
       return classes;
    }
 
@@ -0,0 +1,47 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.rest;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.ext.ExceptionMapper;
+
+/**
+ * Turns every exception escaping a resource method into a response, so that the response filters still run. The
+ * exception is logged, and the client only gets a generic message that does not expose any internal detail.
+ */
+public class UnhandledExceptionMapper implements ExceptionMapper<Throwable>
+{
+   private static final Logger log = Logger.getLogger(UnhandledExceptionMapper.class.getName());
+
+   static final String GENERIC_MESSAGE = "Internal server error";
+
+   @Override
+   public Response toResponse(Throwable exception)
+   {
+      if (exception instanceof WebApplicationException)
+      {
+         return ((WebApplicationException) exception).getResponse();
+      }
+      log.log(Level.SEVERE, "Unhandled exception", exception);
+      return Response.status(Status.INTERNAL_SERVER_ERROR).entity(GENERIC_MESSAGE).type(MediaType.TEXT_PLAIN).build();
+   }
+}
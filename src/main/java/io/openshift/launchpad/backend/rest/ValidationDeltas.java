@@ -0,0 +1,166 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.rest;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonValue;
+
+/**
+ * Turns the responses of {@link LaunchpadResource#validateCommand} into deltas against the last response a client saw.
+ * <p>
+ * Recent full responses are kept under a random <code>stateVersion</code>, which the client sends back with its next
+ * validation. The new response is compared structurally with the one of that version, so only the attributes and
+ * inputs that changed are serialized. A client sending an unknown version, e.g. evicted or kept by another pod, gets
+ * the full response.
+ * <p>
+ * A delta always has the same shape, including when nothing changed: <code>stateVersion</code>, <code>full</code> set
+ * to <code>false</code>, the top-level attributes that changed, <code>inputs</code> with the inputs added or changed,
+ * <code>removedInputs</code> with the names of the inputs removed, and <code>removed</code> with the names of the
+ * attributes removed. The three lists are empty when there is nothing to report.
+ */
+public class ValidationDeltas
+{
+   static final String STATE_VERSION = "stateVersion";
+   static final String FULL = "full";
+   static final String INPUTS = "inputs";
+   static final String REMOVED = "removed";
+   static final String REMOVED_INPUTS = "removedInputs";
+
+   private final Map<String, JsonObject> responses;
+   private final LongAdder deltas = new LongAdder();
+   private final LongAdder fullResponses = new LongAdder();
+
+   /**
+    * @param maxEntries the maximum number of responses kept
+    */
+   public ValidationDeltas(int maxEntries)
+   {
+      this.responses = Collections.synchronizedMap(new LinkedHashMap<String, JsonObject>(16, 0.75f, true)
+      {
+         private static final long serialVersionUID = 1L;
+
+         @Override
+         protected boolean removeEldestEntry(Map.Entry<String, JsonObject> eldest)
+         {
+            return size() > maxEntries;
+         }
+      });
+   }
+
+   /**
+    * @param response the full response
+    * @param since the <code>stateVersion</code> of the last response seen by the client, or <code>null</code>
+    * @return the changes since that version, or the full response with <code>full</code> set if it is unknown
+    */
+   public JsonObject respond(JsonObject response, String since)
+   {
+      JsonObject previous = since == null ? null : responses.get(since);
+      String version = since;
+      if (previous == null || !previous.equals(response))
+      {
+         version = UUID.randomUUID().toString();
+         responses.put(version, response);
+      }
+      JsonObjectBuilder builder = Json.createObjectBuilder().add(STATE_VERSION, version);
+      if (previous == null)
+      {
+         fullResponses.increment();
+         response.forEach(builder::add);
+         return builder.add(FULL, true).build();
+      }
+      deltas.increment();
+      builder.add(FULL, false);
+      for (Map.Entry<String, JsonValue> attribute : response.entrySet())
+      {
+         if (!INPUTS.equals(attribute.getKey())
+                  && !Objects.equals(previous.get(attribute.getKey()), attribute.getValue()))
+         {
+            builder.add(attribute.getKey(), attribute.getValue());
+         }
+      }
+      diffInputs(asArray(previous.get(INPUTS)), asArray(response.get(INPUTS)), builder);
+      JsonArrayBuilder removed = Json.createArrayBuilder();
+      previous.keySet().stream().filter(key -> !INPUTS.equals(key) && !response.containsKey(key))
+               .forEach(removed::add);
+      return builder.add(REMOVED, removed).build();
+   }
+
+   public void clear()
+   {
+      responses.clear();
+   }
+
+   public int size()
+   {
+      return responses.size();
+   }
+
+   /**
+    * @return the number of responses sent as deltas
+    */
+   public long getDeltas()
+   {
+      return deltas.sum();
+   }
+
+   /**
+    * @return the number of responses sent in full because the version of the client was unknown
+    */
+   public long getFullResponses()
+   {
+      return fullResponses.sum();
+   }
+
+   private static JsonArray asArray(JsonValue value)
+   {
+      return value instanceof JsonArray ? (JsonArray) value : Json.createArrayBuilder().build();
+   }
+
+   /**
+    * Adds the inputs that were added or changed, by name, and the names of the inputs that were removed
+    */
+   private static void diffInputs(JsonArray before, JsonArray after, JsonObjectBuilder builder)
+   {
+      Map<String, JsonObject> previousInputs = new LinkedHashMap<>();
+      for (JsonObject input : before.getValuesAs(JsonObject.class))
+      {
+         previousInputs.put(input.getString("name", null), input);
+      }
+      JsonArrayBuilder changed = Json.createArrayBuilder();
+      for (JsonObject input : after.getValuesAs(JsonObject.class))
+      {
+         JsonObject previousInput = previousInputs.remove(input.getString("name", null));
+         if (!input.equals(previousInput))
+         {
+            changed.add(input);
+         }
+      }
+      JsonArrayBuilder removed = Json.createArrayBuilder();
+      previousInputs.keySet().forEach(name -> removed.add(String.valueOf(name)));
+      builder.add(INPUTS, changed).add(REMOVED_INPUTS, removed);
+   }
+}
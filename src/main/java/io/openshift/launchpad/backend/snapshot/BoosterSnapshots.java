@@ -0,0 +1,520 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.snapshot;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+
+import io.openshift.launchpad.backend.rest.MetadataCache;
+import io.openshift.launchpad.backend.util.Paths;
+
+/**
+ * Serves generated projects from {@link Snapshot}s of the command output, instead of executing the command.
+ * <p>
+ * Only a few inputs, such as the project name, group id and version, are expected to be copied verbatim to the output.
+ * Requests that differ only by these inputs share a snapshot, keyed by the other inputs and the shape of these ones:
+ * their dot separated segments and the characters classes found in each segment. After a request is generated
+ * normally, its snapshot is recorded in the background by executing the command twice: once with sentinel values, kept
+ * as the snapshot, and once with canary values. The snapshot is used only if substituting the canary values for the
+ * sentinels gives exactly the canary output; otherwise the inputs are marked unsafe and always generated by the
+ * command.
+ * <p>
+ * The sentinels and canaries of a segment contain the same character classes as its value, so that a transformation
+ * of the value, such as lower casing or XML escaping, changes them too and fails the canary check. This is not a proof
+ * though: only commands copying the values verbatim, as in the coordinates of a <code>pom.xml</code>, should be
+ * snapshotted, not the ones deriving package directories, class names or version numbers from them.
+ */
+public class BoosterSnapshots
+{
+   private static final Logger log = Logger.getLogger(BoosterSnapshots.class.getName());
+
+   private static final String SNAPSHOT_SUFFIX = ".snapshot";
+   private static final String WORK_DIR_PREFIX = "launchpadSnapshot";
+   private static final int TEMPLATE = 0;
+   private static final int CANARY = 1;
+
+   /**
+    * Generates a project with the given inputs
+    */
+   @FunctionalInterface
+   public interface Generator
+   {
+      /**
+       * @return the project directory selected by the command, in <code>directory</code>
+       * @throws Exception if the inputs are not valid or the command failed
+       */
+      Path generate(JsonObject content, Path directory) throws Exception;
+   }
+
+   private final Path directory;
+   private final Set<String> commands;
+   private final List<String> inputs;
+   private final int maxSnapshots;
+   private final Executor executor;
+
+   private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+   private final Set<String> unsafe = ConcurrentHashMap.newKeySet();
+   private final AtomicBoolean recording = new AtomicBoolean();
+   private final LongAdder hits = new LongAdder();
+   private final LongAdder misses = new LongAdder();
+
+   /**
+    * @param directory where the snapshots are stored
+    * @param commands the names of the commands to snapshot
+    * @param inputs the names of the inputs copied verbatim to the generated project
+    * @param maxSnapshots the maximum number of snapshots
+    * @param executor runs the recordings, one at a time
+    */
+   public BoosterSnapshots(Path directory, Collection<String> commands, List<String> inputs, int maxSnapshots,
+            Executor executor)
+   {
+      this.directory = directory;
+      this.commands = new HashSet<>(commands);
+      this.inputs = inputs;
+      this.maxSnapshots = maxSnapshots;
+      this.executor = executor;
+   }
+
+   /**
+    * Writes the project generated by the given inputs from its snapshot
+    *
+    * @param directory the directory the command would be executed in
+    * @return the project directory, or <code>null</code> if there is no snapshot for these inputs
+    */
+   public Path materialize(String commandName, JsonObject content, Path directory) throws IOException
+   {
+      Key key = createKey(commandName, content);
+      if (key == null)
+      {
+         return null;
+      }
+      Snapshot snapshot = snapshots.get(key.hash);
+      if (snapshot == null)
+      {
+         misses.increment();
+         return null;
+      }
+      hits.increment();
+      return snapshot.materialize(directory, substitution(sentinels(key, TEMPLATE), key.values));
+   }
+
+   /**
+    * Records the snapshot of the given inputs in the background, unless it exists, is unsafe or another recording is
+    * running
+    */
+   public void record(String commandName, JsonObject content, Generator generator)
+   {
+      Key key = createKey(commandName, content);
+      if (key == null || snapshots.containsKey(key.hash) || unsafe.contains(key.hash)
+               || snapshots.size() >= maxSnapshots || !recording.compareAndSet(false, true))
+      {
+         return;
+      }
+      try
+      {
+         executor.execute(() -> {
+            try
+            {
+               capture(key, content, generator);
+            }
+            finally
+            {
+               recording.set(false);
+            }
+         });
+      }
+      catch (RejectedExecutionException e)
+      {
+         recording.set(false);
+      }
+   }
+
+   /**
+    * Loads the snapshots recorded in the directory by a previous run. The other directories of its parent, recorded by
+    * other versions of the addons, are deleted.
+    */
+   public void load()
+   {
+      Path parent = directory.toAbsolutePath().getParent();
+      if (parent != null && Files.isDirectory(parent))
+      {
+         try (DirectoryStream<Path> stream = Files.newDirectoryStream(parent))
+         {
+            for (Path other : stream)
+            {
+               if (!other.getFileName().equals(directory.getFileName()) && Files.isDirectory(other))
+               {
+                  delete(other);
+               }
+            }
+         }
+         catch (IOException e)
+         {
+            log.log(Level.WARNING, "Error while deleting the outdated snapshots in " + parent, e);
+         }
+      }
+      if (!Files.isDirectory(directory))
+      {
+         return;
+      }
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory))
+      {
+         for (Path file : stream)
+         {
+            String name = file.getFileName().toString();
+            // Partial files are left by a run stopped while recording
+            if (!name.endsWith(SNAPSHOT_SUFFIX) || snapshots.size() >= maxSnapshots)
+            {
+               delete(file);
+               continue;
+            }
+            try
+            {
+               snapshots.put(name.substring(0, name.length() - SNAPSHOT_SUFFIX.length()), Snapshot.load(file));
+            }
+            catch (IOException | RuntimeException e)
+            {
+               log.log(Level.WARNING, "Error while loading snapshot " + file + ", deleting it", e);
+               delete(file);
+            }
+         }
+      }
+      catch (IOException e)
+      {
+         log.log(Level.WARNING, "Error while loading the snapshots in " + directory, e);
+      }
+      log.info("Loaded " + snapshots.size() + " booster snapshots from " + directory);
+   }
+
+   /**
+    * Removes every snapshot
+    */
+   public void clear()
+   {
+      snapshots.clear();
+      unsafe.clear();
+      try
+      {
+         if (Files.isDirectory(directory))
+         {
+            Paths.deleteDirectory(directory);
+         }
+      }
+      catch (NoSuchFileException e)
+      {
+         // Already deleted
+      }
+      catch (IOException e)
+      {
+         log.log(Level.WARNING, "Error while clearing " + directory, e);
+      }
+   }
+
+   public int getCount()
+   {
+      return snapshots.size();
+   }
+
+   /**
+    * @return the number of input combinations that cannot be snapshotted
+    */
+   public int getUnsafeCount()
+   {
+      return unsafe.size();
+   }
+
+   public long getHits()
+   {
+      return hits.sum();
+   }
+
+   public long getMisses()
+   {
+      return misses.sum();
+   }
+
+   private void capture(Key key, JsonObject content, Generator generator)
+   {
+      Path templateDir = null;
+      Path canaryDir = null;
+      try
+      {
+         Map<String, String> sentinels = sentinels(key, TEMPLATE);
+         Map<String, String> canaries = sentinels(key, CANARY);
+         templateDir = Files.createTempDirectory(WORK_DIR_PREFIX);
+         canaryDir = Files.createTempDirectory(WORK_DIR_PREFIX);
+         Path template = generator.generate(withValues(content, sentinels), templateDir);
+         Path canary = generator.generate(withValues(content, canaries), canaryDir);
+         Snapshot snapshot = Snapshot.capture(templateDir, template, substitution(sentinels, sentinels));
+         if (snapshot == null || !snapshot.matches(canaryDir, canary, substitution(sentinels, canaries)))
+         {
+            log.info("The output of " + key.commandName + " is not snapshot-safe for " + key.hash);
+            unsafe.add(key.hash);
+            return;
+         }
+         Files.createDirectories(directory);
+         Path file = directory.resolve(key.hash + SNAPSHOT_SUFFIX);
+         snapshot.write(file);
+         snapshots.put(key.hash, Snapshot.load(file));
+         log.info("Recorded a snapshot of " + key.commandName + " with " + snapshot.getEntryCount() + " entries");
+      }
+      catch (Exception e)
+      {
+         log.log(Level.INFO, "Error while recording a snapshot of " + key.commandName, e);
+         unsafe.add(key.hash);
+      }
+      finally
+      {
+         delete(templateDir);
+         delete(canaryDir);
+      }
+   }
+
+   /**
+    * @return the key of the given inputs, or <code>null</code> if they cannot be snapshotted
+    */
+   private Key createKey(String commandName, JsonObject content)
+   {
+      if (!commands.contains(commandName))
+      {
+         return null;
+      }
+      Map<String, JsonValue> sorted = new TreeMap<>();
+      JsonArray array = content.getJsonArray("inputs");
+      if (array != null)
+      {
+         for (JsonValue input : array)
+         {
+            JsonObject object = (JsonObject) input;
+            sorted.put(object.getString("name"), object.get("value"));
+         }
+      }
+      Map<String, String> values = new LinkedHashMap<>();
+      Map<String, List<String>> shapes = new LinkedHashMap<>();
+      StringBuilder canonical = new StringBuilder(commandName).append('\n')
+               .append(content.getInt("stepIndex", 0)).append('\n');
+      for (Map.Entry<String, JsonValue> input : sorted.entrySet())
+      {
+         canonical.append(input.getKey()).append('=');
+         if (inputs.contains(input.getKey()))
+         {
+            if (!(input.getValue() instanceof JsonString))
+            {
+               return null;
+            }
+            String value = ((JsonString) input.getValue()).getString();
+            String[] segments = value.split("\\.", -1);
+            if (segments.length > 26)
+            {
+               return null;
+            }
+            List<String> shape = new ArrayList<>(segments.length);
+            for (String segment : segments)
+            {
+               String characterClasses = characterClasses(segment);
+               if (characterClasses == null)
+               {
+                  return null;
+               }
+               shape.add(characterClasses);
+            }
+            values.put(input.getKey(), value);
+            shapes.put(input.getKey(), shape);
+            canonical.append(shape);
+         }
+         else
+         {
+            canonical.append(input.getValue());
+         }
+         canonical.append('\n');
+      }
+      return new Key(commandName, MetadataCache.sha256(canonical.toString()), values, shapes);
+   }
+
+   /**
+    * Creates values with the same shape as the given ones, which are unlikely to be found in a project
+    */
+   private Map<String, String> sentinels(Key key, int round)
+   {
+      Map<String, String> sentinels = new LinkedHashMap<>();
+      key.shapes.forEach((name, shape) -> {
+         StringBuilder value = new StringBuilder();
+         for (int segment = 0; segment < shape.size(); segment++)
+         {
+            if (segment > 0)
+            {
+               value.append('.');
+            }
+            String id = new StringBuilder("lpsnap").append((char) ('a' + round))
+                     .append((char) ('a' + inputs.indexOf(name))).append((char) ('a' + segment)).toString();
+            value.append(id);
+            for (char characterClass : shape.get(segment).toCharArray())
+            {
+               switch (characterClass)
+               {
+               case 'a':
+                  break;
+               case 'A':
+                  value.append(id.toUpperCase(Locale.ENGLISH));
+                  break;
+               case '0':
+                  value.append(round);
+                  break;
+               default:
+                  // Punctuation, between two letters so that trimming or splitting on it is also detected
+                  value.append(characterClass).append(id);
+               }
+            }
+         }
+         sentinels.put(name, value.toString());
+      });
+      return sentinels;
+   }
+
+   /**
+    * Lists the classes of the characters of a segment: <code>a</code> for lower case letters, <code>A</code> for upper
+    * case letters, <code>0</code> for digits, and each other printable ASCII character itself
+    *
+    * @return the classes, or <code>null</code> if the segment is empty or has characters that cannot be snapshotted
+    */
+   static String characterClasses(String segment)
+   {
+      if (segment.isEmpty())
+      {
+         return null;
+      }
+      Set<Character> classes = new TreeSet<>();
+      for (char c : segment.toCharArray())
+      {
+         if (c >= 'a' && c <= 'z')
+         {
+            classes.add('a');
+         }
+         else if (c >= 'A' && c <= 'Z')
+         {
+            classes.add('A');
+         }
+         else if (c >= '0' && c <= '9')
+         {
+            classes.add('0');
+         }
+         else if (c > ' ' && c < 0x7f && c != '/' && c != '\\')
+         {
+            classes.add(c);
+         }
+         else
+         {
+            // Spaces, control characters, path separators and non ASCII characters
+            return null;
+         }
+      }
+      StringBuilder result = new StringBuilder(classes.size());
+      classes.forEach(result::append);
+      return result.toString();
+   }
+
+   /**
+    * Replaces each segment of the sentinels by the same segment of the given values, so that the values are also
+    * substituted when used as paths (eg. package directories)
+    */
+   private static Substitution substitution(Map<String, String> sentinels, Map<String, String> values)
+   {
+      Map<String, String> replacements = new LinkedHashMap<>();
+      sentinels.forEach((name, sentinel) -> {
+         String[] sentinelSegments = sentinel.split("\\.", -1);
+         String[] valueSegments = values.get(name).split("\\.", -1);
+         for (int i = 0; i < sentinelSegments.length; i++)
+         {
+            replacements.put(sentinelSegments[i], valueSegments[i]);
+         }
+      });
+      return new Substitution(replacements);
+   }
+
+   private static JsonObject withValues(JsonObject content, Map<String, String> values)
+   {
+      JsonArrayBuilder inputs = Json.createArrayBuilder();
+      for (JsonValue input : content.getJsonArray("inputs"))
+      {
+         JsonObject object = (JsonObject) input;
+         String value = values.get(object.getString("name"));
+         inputs.add(value == null ? object
+                  : Json.createObjectBuilder().add("name", object.getString("name")).add("value", value).build());
+      }
+      return Json.createObjectBuilder()
+               .add("inputs", inputs)
+               .add("stepIndex", content.getInt("stepIndex", 0))
+               .build();
+   }
+
+   private static void delete(Path path)
+   {
+      if (path != null)
+      {
+         try
+         {
+            Paths.deleteDirectory(path);
+         }
+         catch (IOException e)
+         {
+            log.log(Level.FINE, "Error while deleting " + path, e);
+         }
+      }
+   }
+
+   private static class Key
+   {
+      private final String commandName;
+      private final String hash;
+      private final Map<String, String> values;
+      private final Map<String, List<String>> shapes;
+
+      Key(String commandName, String hash, Map<String, String> values, Map<String, List<String>> shapes)
+      {
+         this.commandName = commandName;
+         this.hash = hash;
+         this.values = values;
+         this.shapes = shapes;
+      }
+   }
+}
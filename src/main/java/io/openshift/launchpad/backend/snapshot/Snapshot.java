@@ -0,0 +1,323 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.snapshot;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The output tree of a command, recorded with sentinel input values.
+ * <p>
+ * A snapshot is written to a single file: the length of the index, the index (the project directory, then the path,
+ * flags and length of each entry), and the contents of the files one after another. Loaded snapshots are memory-mapped,
+ * so the files that do not contain any sentinel are copied to the generated project without going through the heap.
+ */
+public class Snapshot
+{
+   /**
+    * Larger trees are not snapshotted
+    */
+   static final long MAX_SIZE = 64L * 1024 * 1024;
+
+   private static final int MAGIC = 0x4c505331;
+   private static final int FLAG_DIRECTORY = 1;
+   private static final int FLAG_TEMPLATED = 2;
+   private static final int FLAG_EXECUTABLE = 4;
+
+   private final String projectPath;
+   private final List<Entry> entries;
+
+   private Snapshot(String projectPath, List<Entry> entries)
+   {
+      this.projectPath = projectPath;
+      this.entries = entries;
+   }
+
+   /**
+    * Records a generated project in memory
+    *
+    * @param directory the directory the command was executed in
+    * @param project the project directory selected by the command, in <code>directory</code>
+    * @param sentinels the substitution whose strings mark the files to substitute when materializing
+    * @return the snapshot, or <code>null</code> if the project is larger than {@link #MAX_SIZE}
+    */
+   static Snapshot capture(Path directory, Path project, Substitution sentinels) throws IOException
+   {
+      List<Entry> entries = new ArrayList<>();
+      long[] size = { 0 };
+      Files.walkFileTree(project, new SimpleFileVisitor<Path>()
+      {
+         @Override
+         public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+         {
+            if (!dir.equals(project))
+            {
+               entries.add(new Entry(project.relativize(dir).toString(), FLAG_DIRECTORY, null));
+            }
+            return FileVisitResult.CONTINUE;
+         }
+
+         @Override
+         public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
+         {
+            size[0] += attrs.size();
+            if (size[0] > MAX_SIZE)
+            {
+               return FileVisitResult.TERMINATE;
+            }
+            byte[] content = Files.readAllBytes(file);
+            int flags = (sentinels.isFoundIn(content) ? FLAG_TEMPLATED : 0)
+                     | (Files.isExecutable(file) ? FLAG_EXECUTABLE : 0);
+            entries.add(new Entry(project.relativize(file).toString(), flags, ByteBuffer.wrap(content)));
+            return FileVisitResult.CONTINUE;
+         }
+      });
+      return size[0] > MAX_SIZE ? null : new Snapshot(directory.relativize(project).toString(), entries);
+   }
+
+   /**
+    * Loads a snapshot written by {@link #write(Path)}
+    */
+   static Snapshot load(Path file) throws IOException
+   {
+      ByteBuffer buffer;
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+      {
+         buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      }
+      byte[] index = new byte[buffer.getInt()];
+      buffer.get(index);
+      try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(index)))
+      {
+         if (in.readInt() != MAGIC)
+         {
+            throw new IOException("Not a snapshot: " + file);
+         }
+         String projectPath = in.readUTF();
+         int count = in.readInt();
+         List<Entry> entries = new ArrayList<>(count);
+         int offset = buffer.position();
+         for (int i = 0; i < count; i++)
+         {
+            String path = in.readUTF();
+            int flags = in.readByte();
+            ByteBuffer content = null;
+            if ((flags & FLAG_DIRECTORY) == 0)
+            {
+               int length = in.readInt();
+               ByteBuffer slice = buffer.duplicate();
+               slice.position(offset).limit(offset + length);
+               content = slice.slice();
+               offset += length;
+            }
+            entries.add(new Entry(path, flags, content));
+         }
+         return new Snapshot(projectPath, entries);
+      }
+   }
+
+   /**
+    * Writes the snapshot to the given file, atomically
+    */
+   void write(Path file) throws IOException
+   {
+      ByteArrayOutputStream index = new ByteArrayOutputStream();
+      try (DataOutputStream out = new DataOutputStream(index))
+      {
+         out.writeInt(MAGIC);
+         out.writeUTF(projectPath);
+         out.writeInt(entries.size());
+         for (Entry entry : entries)
+         {
+            out.writeUTF(entry.path);
+            out.writeByte(entry.flags);
+            if (!entry.isDirectory())
+            {
+               out.writeInt(entry.content.remaining());
+            }
+         }
+      }
+      Path partial = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".partial");
+      try
+      {
+         try (OutputStream os = Files.newOutputStream(partial); DataOutputStream out = new DataOutputStream(os))
+         {
+            out.writeInt(index.size());
+            index.writeTo(out);
+            for (Entry entry : entries)
+            {
+               if (!entry.isDirectory())
+               {
+                  out.write(entry.bytes());
+               }
+            }
+         }
+         Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+      finally
+      {
+         Files.deleteIfExists(partial);
+      }
+   }
+
+   /**
+    * Checks that materializing this snapshot with the given substitution gives the same tree as the given project
+    */
+   boolean matches(Path directory, Path project, Substitution substitution) throws IOException
+   {
+      if (!substitution.apply(projectPath).equals(directory.relativize(project).toString()))
+      {
+         return false;
+      }
+      Set<String> directories = new HashSet<>();
+      Map<String, byte[]> files = new HashMap<>();
+      Files.walkFileTree(project, new SimpleFileVisitor<Path>()
+      {
+         @Override
+         public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+         {
+            if (!dir.equals(project))
+            {
+               directories.add(project.relativize(dir).toString());
+            }
+            return FileVisitResult.CONTINUE;
+         }
+
+         @Override
+         public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
+         {
+            files.put(project.relativize(file).toString(), Files.readAllBytes(file));
+            return FileVisitResult.CONTINUE;
+         }
+      });
+      for (Entry entry : entries)
+      {
+         String path = substitution.apply(entry.path);
+         if (entry.isDirectory())
+         {
+            if (!directories.remove(path))
+            {
+               return false;
+            }
+         }
+         else
+         {
+            byte[] actual = files.remove(path);
+            if (actual == null || !Arrays.equals(actual, entry.isTemplated() ? substitution.apply(entry.bytes())
+                     : entry.bytes()))
+            {
+               return false;
+            }
+         }
+      }
+      return directories.isEmpty() && files.isEmpty();
+   }
+
+   /**
+    * Writes the project tree in the given directory
+    *
+    * @return the project directory, as it would have been selected by the command
+    */
+   Path materialize(Path directory, Substitution substitution) throws IOException
+   {
+      Path project = Files.createDirectories(directory.resolve(substitution.apply(projectPath)));
+      for (Entry entry : entries)
+      {
+         Path target = project.resolve(substitution.apply(entry.path));
+         if (entry.isDirectory())
+         {
+            Files.createDirectories(target);
+         }
+         else if (entry.isTemplated())
+         {
+            Files.write(target, substitution.apply(entry.bytes()));
+         }
+         else
+         {
+            try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE_NEW,
+                     StandardOpenOption.WRITE))
+            {
+               ByteBuffer content = entry.content.duplicate();
+               while (content.hasRemaining())
+               {
+                  channel.write(content);
+               }
+            }
+         }
+         if ((entry.flags & FLAG_EXECUTABLE) != 0)
+         {
+            target.toFile().setExecutable(true);
+         }
+      }
+      return project;
+   }
+
+   int getEntryCount()
+   {
+      return entries.size();
+   }
+
+   private static class Entry
+   {
+      private final String path;
+      private final int flags;
+      private final ByteBuffer content;
+
+      Entry(String path, int flags, ByteBuffer content)
+      {
+         this.path = path;
+         this.flags = flags;
+         this.content = content;
+      }
+
+      boolean isDirectory()
+      {
+         return (flags & FLAG_DIRECTORY) != 0;
+      }
+
+      boolean isTemplated()
+      {
+         return (flags & FLAG_TEMPLATED) != 0;
+      }
+
+      byte[] bytes()
+      {
+         byte[] bytes = new byte[content.remaining()];
+         content.duplicate().get(bytes);
+         return bytes;
+      }
+   }
+}
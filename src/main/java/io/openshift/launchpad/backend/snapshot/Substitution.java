@@ -0,0 +1,94 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.snapshot;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Replaces every occurrence of a set of strings in a single pass, so that a replacement is never replaced again
+ */
+public class Substitution
+{
+   private final Map<String, String> replacements;
+   private final Map<String, String> byteReplacements = new HashMap<>();
+   private final Pattern pattern;
+
+   /**
+    * @param replacements the replacement of each string. The strings to replace must be ASCII.
+    */
+   public Substitution(Map<String, String> replacements)
+   {
+      this.replacements = new HashMap<>(replacements);
+      // The longest strings are tried first
+      List<String> keys = new ArrayList<>(replacements.keySet());
+      keys.sort((a, b) -> b.length() - a.length());
+      this.pattern = keys.isEmpty() ? null
+               : Pattern.compile(keys.stream().map(Pattern::quote).collect(Collectors.joining("|")));
+      // Bytes are handled as ISO-8859-1 strings, which maps every byte to a char
+      replacements.forEach((key, value) -> byteReplacements.put(key,
+               new String(value.getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1)));
+   }
+
+   /**
+    * @return <code>true</code> if one of the strings to replace is found in the given content
+    */
+   public boolean isFoundIn(byte[] content)
+   {
+      return pattern != null && pattern.matcher(new String(content, StandardCharsets.ISO_8859_1)).find();
+   }
+
+   public String apply(String value)
+   {
+      return replace(value, replacements);
+   }
+
+   /**
+    * Replaces the strings found in UTF-8 or ASCII compatible content, leaving any other byte unchanged
+    */
+   public byte[] apply(byte[] content)
+   {
+      return replace(new String(content, StandardCharsets.ISO_8859_1), byteReplacements)
+               .getBytes(StandardCharsets.ISO_8859_1);
+   }
+
+   private String replace(String value, Map<String, String> values)
+   {
+      if (pattern == null)
+      {
+         return value;
+      }
+      Matcher matcher = pattern.matcher(value);
+      if (!matcher.find())
+      {
+         return value;
+      }
+      StringBuffer result = new StringBuffer(value.length());
+      do
+      {
+         matcher.appendReplacement(result, Matcher.quoteReplacement(values.get(matcher.group())));
+      }
+      while (matcher.find());
+      matcher.appendTail(result);
+      return result.toString();
+   }
+}
@@ -0,0 +1,138 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.startup;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+
+import io.openshift.launchpad.backend.metrics.LaunchpadMetrics;
+
+/**
+ * Measures the phases of the startup, from the JVM start to the end of the warm-up, and tells whether the backend is
+ * warm enough to receive traffic.
+ * <p>
+ * A new pod only reports ready through {@link io.openshift.launchpad.backend.rest.HealthResource} once
+ * {@link #warmedUp(int)} is called, so that its first slow requests are not served to users.
+ */
+@ApplicationScoped
+public class StartupMonitor
+{
+   private static final Logger log = Logger.getLogger(StartupMonitor.class.getName());
+
+   private final Map<String, Long> phases = new LinkedHashMap<>();
+   private volatile boolean ready;
+   private volatile long readyMillis = -1;
+   private volatile int warmUpFailures;
+
+   @Inject
+   LaunchpadMetrics metrics;
+
+   /**
+    * Records the time elapsed since <code>startNanos</code> for the given phase
+    *
+    * @return the current time, to be used as the start of the next phase
+    */
+   public long record(String phase, long startNanos)
+   {
+      long now = System.nanoTime();
+      recordMillis(phase, TimeUnit.NANOSECONDS.toMillis(now - startNanos));
+      return now;
+   }
+
+   /**
+    * Records the duration of the given phase in milliseconds
+    */
+   public void recordMillis(String phase, long millis)
+   {
+      boolean added;
+      synchronized (phases)
+      {
+         added = phases.put(phase, millis) == null;
+      }
+      if (added)
+      {
+         metrics.registerGauge("startup_phase_milliseconds", "Duration of each startup phase",
+                  "phase=\"" + phase + "\"", () -> getPhase(phase));
+      }
+      log.info("Startup phase " + phase + " took " + millis + "ms");
+   }
+
+   /**
+    * Marks the end of the warm-up, after which the backend reports ready
+    *
+    * @param failures the number of commands that could not be warmed up
+    */
+   public void warmedUp(int failures)
+   {
+      warmUpFailures = failures;
+      readyMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+      ready = true;
+      log.info("Ready " + readyMillis + "ms after the JVM start"
+               + (failures > 0 ? ", " + failures + " commands could not be warmed up" : ""));
+   }
+
+   public boolean isReady()
+   {
+      return ready;
+   }
+
+   /**
+    * @return the time from the JVM start to the end of the warm-up in milliseconds, or <code>-1</code> while warming
+    *         up
+    */
+   public long getReadyMillis()
+   {
+      return readyMillis;
+   }
+
+   public int getWarmUpFailures()
+   {
+      return warmUpFailures;
+   }
+
+   public JsonObject getStatistics()
+   {
+      JsonObjectBuilder phaseBuilder = Json.createObjectBuilder();
+      synchronized (phases)
+      {
+         phases.forEach(phaseBuilder::add);
+      }
+      return Json.createObjectBuilder()
+               .add("ready", ready)
+               .add("readyMillis", readyMillis)
+               .add("warmUpFailures", warmUpFailures)
+               .add("phases", phaseBuilder)
+               .build();
+   }
+
+   private long getPhase(String phase)
+   {
+      synchronized (phases)
+      {
+         Long millis = phases.get(phase);
+         return millis == null ? 0 : millis;
+      }
+   }
+}
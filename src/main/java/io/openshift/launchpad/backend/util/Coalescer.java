@@ -0,0 +1,99 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shares the result of a computation between the callers asking for the same key while it is in flight. A caller
+ * arriving once the computation is done computes it again, so results are never stale.
+ *
+ * @param <V> the type of the result, which must be safe to share between threads
+ */
+public class Coalescer<V>
+{
+   private final ConcurrentMap<String, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+   private final LongAdder coalesced = new LongAdder();
+
+   /**
+    * Returns the result of the computation in flight for the given key, or computes it on the calling thread
+    *
+    * @param key the key of the computation, or <code>null</code> to always compute it
+    * @throws Exception thrown by the computation, to every caller sharing it
+    */
+   public V get(String key, Callable<V> computation) throws Exception
+   {
+      if (key == null)
+      {
+         return computation.call();
+      }
+      CompletableFuture<V> future = new CompletableFuture<>();
+      CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+      if (existing != null)
+      {
+         coalesced.increment();
+         try
+         {
+            return existing.get();
+         }
+         catch (ExecutionException e)
+         {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception)
+            {
+               throw (Exception) cause;
+            }
+            throw (Error) cause;
+         }
+      }
+      try
+      {
+         V value = computation.call();
+         future.complete(value);
+         return value;
+      }
+      catch (Exception | Error e)
+      {
+         future.completeExceptionally(e);
+         throw e;
+      }
+      finally
+      {
+         inFlight.remove(key, future);
+      }
+   }
+
+   /**
+    * @return the number of computations in flight
+    */
+   public int getInFlight()
+   {
+      return inFlight.size();
+   }
+
+   /**
+    * @return the number of callers that got the result of a computation started by another caller
+    */
+   public long getCoalesced()
+   {
+      return coalesced.sum();
+   }
+}
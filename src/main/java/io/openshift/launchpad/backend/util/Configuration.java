@@ -0,0 +1,78 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Reads configuration values from system properties, falling back to environment variables
+ */
+public class Configuration
+{
+   /**
+    * @param name the system property or environment variable name
+    * @param defaultValue the value returned if the setting is not defined
+    * @return the setting value
+    */
+   public static String get(String name, String defaultValue)
+   {
+      String value = System.getProperty(name, System.getenv(name));
+      return value == null ? defaultValue : value;
+   }
+
+   public static int getInt(String name, int defaultValue)
+   {
+      String value = get(name, null);
+      return value == null ? defaultValue : Integer.parseInt(value.trim());
+   }
+
+   public static long getLong(String name, long defaultValue)
+   {
+      String value = get(name, null);
+      return value == null ? defaultValue : Long.parseLong(value.trim());
+   }
+
+   public static boolean getBoolean(String name, boolean defaultValue)
+   {
+      String value = get(name, null);
+      return value == null ? defaultValue : Boolean.parseBoolean(value.trim());
+   }
+
+   /**
+    * @return the comma delimited values of the given setting
+    */
+   public static List<String> getList(String name, String defaultValue)
+   {
+      String value = get(name, defaultValue);
+      if (value == null || value.trim().isEmpty())
+      {
+         return Collections.emptyList();
+      }
+      return Arrays.stream(value.split(",")).map(String::trim).filter(s -> !s.isEmpty())
+               .collect(Collectors.toList());
+   }
+
+   /**
+    * Converts a name (eg. a command name) to a suffix suitable for an environment variable name
+    */
+   public static String toKey(String name)
+   {
+      return name.toUpperCase().replaceAll("[^A-Z0-9]", "_");
+   }
+}
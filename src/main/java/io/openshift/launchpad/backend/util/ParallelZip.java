@@ -0,0 +1,521 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.util;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Zips a directory, reading and deflating the files in parallel on a dedicated {@link ForkJoinPool} and writing them
+ * in order to the archive.
+ * <p>
+ * A bounded number of files is read and compressed ahead of the one being written, so the memory used does not depend
+ * on the project size. Files smaller than the store threshold, or that do not get smaller once deflated, are stored
+ * uncompressed. Files larger than {@link #MAX_BUFFERED_SIZE} are deflated on the calling thread as they are written,
+ * followed by a data descriptor. Archives that would need the Zip64 extensions are written by
+ * {@link Paths#zipSequential(String, Path, OutputStream)} instead.
+ */
+public class ParallelZip
+{
+   private static final String LAUNCHPAD_BACKEND_ZIP_LEVEL = "LAUNCHPAD_BACKEND_ZIP_LEVEL";
+   private static final String LAUNCHPAD_BACKEND_ZIP_STORE_THRESHOLD = "LAUNCHPAD_BACKEND_ZIP_STORE_THRESHOLD";
+   private static final String LAUNCHPAD_BACKEND_ZIP_THREADS = "LAUNCHPAD_BACKEND_ZIP_THREADS";
+
+   /**
+    * Files larger than this are not buffered in memory
+    */
+   static final int MAX_BUFFERED_SIZE = 1024 * 1024;
+
+   private static final int LOCAL_HEADER = 0x04034b50;
+   private static final int DATA_DESCRIPTOR = 0x08074b50;
+   private static final int CENTRAL_HEADER = 0x02014b50;
+   private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+   private static final int STORED = 0;
+   private static final int DEFLATED = 8;
+   private static final int FLAG_DATA_DESCRIPTOR = 0x08;
+   private static final int FLAG_UTF8 = 0x800;
+   private static final int MAX_ENTRIES = 0xFFFF;
+   private static final long MAX_SIZE = 0xFFFFFFFFL / 2;
+   private static final int BUFFER_SIZE = 64 * 1024;
+
+   private static final ParallelZip DEFAULT = new ParallelZip(
+            Configuration.getInt(LAUNCHPAD_BACKEND_ZIP_LEVEL, Deflater.DEFAULT_COMPRESSION),
+            Configuration.getInt(LAUNCHPAD_BACKEND_ZIP_STORE_THRESHOLD, 512),
+            createPool(Configuration.getInt(LAUNCHPAD_BACKEND_ZIP_THREADS,
+                     Runtime.getRuntime().availableProcessors())));
+
+   private final int level;
+   private final int storeThreshold;
+   private final ForkJoinPool pool;
+
+   /**
+    * @param level the {@link Deflater} compression level
+    * @param storeThreshold files smaller than this number of bytes are stored uncompressed
+    * @param pool the pool compressing the files
+    */
+   public ParallelZip(int level, int storeThreshold, ForkJoinPool pool)
+   {
+      this.level = level;
+      this.storeThreshold = storeThreshold;
+      this.pool = pool;
+   }
+
+   /**
+    * Creates a pool of the given number of daemon threads. The files are read on the pool, so it must not be the
+    * common pool, which the application server uses too.
+    */
+   static ForkJoinPool createPool(int threads)
+   {
+      return new ForkJoinPool(Math.max(1, threads), pool -> {
+         ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+         thread.setName("launchpad-zip-" + thread.getPoolIndex());
+         return thread;
+      }, null, false);
+   }
+
+   /**
+    * @return the instance configured with <code>LAUNCHPAD_BACKEND_ZIP_LEVEL</code>,
+    *         <code>LAUNCHPAD_BACKEND_ZIP_STORE_THRESHOLD</code> and <code>LAUNCHPAD_BACKEND_ZIP_THREADS</code>
+    */
+   public static ParallelZip getDefault()
+   {
+      return DEFAULT;
+   }
+
+   /**
+    * Zips an entire directory and stores in the provided {@link OutputStream}, with the same entries as
+    * {@link Paths#zipSequential(String, Path, OutputStream)}. The provided {@link OutputStream} is flushed but not
+    * closed.
+    *
+    * @param root the root directory to be used
+    * @param directory the directory to be zipped
+    * @param os the {@link OutputStream} which the zip operation will be written to
+    * @throws IOException if any I/O error happens
+    */
+   public void zip(String root, Path directory, OutputStream os) throws IOException
+   {
+      List<Source> sources = list(root, directory);
+      long totalSize = 0;
+      for (Source source : sources)
+      {
+         totalSize += source.size;
+      }
+      if (sources.size() > MAX_ENTRIES || totalSize > MAX_SIZE)
+      {
+         Paths.zipSequential(root, directory, os);
+         return;
+      }
+      int time = toDosTime(System.currentTimeMillis());
+      ZipWriter writer = new ZipWriter(os);
+      List<CentralEntry> centralDirectory = new ArrayList<>(sources.size());
+      int window = 2 * pool.getParallelism();
+      Deque<Pending> pending = new ArrayDeque<>(window);
+      int next = 0;
+      try
+      {
+         while (pending.size() < window && next < sources.size())
+         {
+            pending.add(schedule(sources.get(next++)));
+         }
+         while (!pending.isEmpty())
+         {
+            Pending entry = pending.poll();
+            if (next < sources.size())
+            {
+               pending.add(schedule(sources.get(next++)));
+            }
+            if (entry.task == null)
+            {
+               centralDirectory.add(entry.source.directory ? writer.writeDirectory(entry.source.name, time)
+                        : writer.writeStreamed(entry.source, time, level));
+            }
+            else
+            {
+               centralDirectory.add(writer.writeEntry(entry.source.name, time, await(entry.task)));
+            }
+         }
+         writer.writeCentralDirectory(centralDirectory);
+         writer.flush();
+      }
+      finally
+      {
+         for (Pending entry : pending)
+         {
+            if (entry.task != null)
+            {
+               entry.task.cancel(false);
+            }
+         }
+      }
+   }
+
+   private Pending schedule(Source source)
+   {
+      if (source.directory || source.size > MAX_BUFFERED_SIZE)
+      {
+         return new Pending(source, null);
+      }
+      return new Pending(source, pool.submit(() -> compress(source.path)));
+   }
+
+   private Compressed compress(Path file) throws IOException
+   {
+      byte[] data = Files.readAllBytes(file);
+      CRC32 crc = new CRC32();
+      crc.update(data, 0, data.length);
+      if (data.length >= storeThreshold && level != Deflater.NO_COMPRESSION)
+      {
+         Deflater deflater = new Deflater(level, true);
+         try
+         {
+            deflater.setInput(data);
+            deflater.finish();
+            byte[] compressed = new byte[Math.max(64, data.length / 2)];
+            int length = 0;
+            while (!deflater.finished() && length < data.length)
+            {
+               if (length == compressed.length)
+               {
+                  compressed = Arrays.copyOf(compressed, Math.min(2 * compressed.length, data.length + 64));
+               }
+               length += deflater.deflate(compressed, length, compressed.length - length);
+            }
+            if (deflater.finished() && length < data.length)
+            {
+               return new Compressed(DEFLATED, (int) crc.getValue(), data.length, compressed, length);
+            }
+         }
+         finally
+         {
+            deflater.end();
+         }
+      }
+      return new Compressed(STORED, (int) crc.getValue(), data.length, data, data.length);
+   }
+
+   private static Compressed await(ForkJoinTask<Compressed> task) throws IOException
+   {
+      try
+      {
+         return task.get();
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         throw new InterruptedIOException("Interrupted while zipping");
+      }
+      catch (ExecutionException e)
+      {
+         if (e.getCause() instanceof IOException)
+         {
+            throw (IOException) e.getCause();
+         }
+         throw new IOException("Error while compressing", e.getCause());
+      }
+   }
+
+   /**
+    * Lists the entries in the order of {@link Paths#zipSequential(String, Path, OutputStream)}
+    */
+   private static List<Source> list(String root, Path directory) throws IOException
+   {
+      List<Source> sources = new ArrayList<>();
+      Files.walkFileTree(directory, new SimpleFileVisitor<Path>()
+      {
+         @Override
+         public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
+         {
+            String entry = root + File.separator + directory.relativize(file).toString();
+            sources.add(new Source(file, entry, false, attrs.size()));
+            return FileVisitResult.CONTINUE;
+         }
+
+         @Override
+         public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException
+         {
+            String entry = root + File.separator + directory.relativize(dir).toString() + File.separator;
+            sources.add(new Source(dir, entry, true, 0));
+            return FileVisitResult.CONTINUE;
+         }
+      });
+      return sources;
+   }
+
+   /**
+    * Converts a time to the MS-DOS format, like {@link java.util.zip.ZipEntry#setTime(long)}
+    */
+   private static int toDosTime(long millis)
+   {
+      LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+      if (time.getYear() < 1980)
+      {
+         return (1 << 21) | (1 << 16);
+      }
+      return (time.getYear() - 1980) << 25 | time.getMonthValue() << 21 | time.getDayOfMonth() << 16
+               | time.getHour() << 11 | time.getMinute() << 5 | time.getSecond() >> 1;
+   }
+
+   private static class Source
+   {
+      private final Path path;
+      private final String name;
+      private final boolean directory;
+      private final long size;
+
+      Source(Path path, String name, boolean directory, long size)
+      {
+         this.path = path;
+         this.name = name;
+         this.directory = directory;
+         this.size = size;
+      }
+   }
+
+   private static class Pending
+   {
+      private final Source source;
+      private final ForkJoinTask<Compressed> task;
+
+      Pending(Source source, ForkJoinTask<Compressed> task)
+      {
+         this.source = source;
+         this.task = task;
+      }
+   }
+
+   private static class Compressed
+   {
+      private final int method;
+      private final int crc;
+      private final long size;
+      private final byte[] data;
+      private final int length;
+
+      Compressed(int method, int crc, long size, byte[] data, int length)
+      {
+         this.method = method;
+         this.crc = crc;
+         this.size = size;
+         this.data = data;
+         this.length = length;
+      }
+   }
+
+   /**
+    * The fields of an entry repeated in the central directory
+    */
+   private static class CentralEntry
+   {
+      private final byte[] name;
+      private final int flags;
+      private final int method;
+      private final int time;
+      private final int crc;
+      private final long compressedSize;
+      private final long size;
+      private final long offset;
+
+      CentralEntry(byte[] name, int flags, int method, int time, int crc, long compressedSize, long size, long offset)
+      {
+         this.name = name;
+         this.flags = flags;
+         this.method = method;
+         this.time = time;
+         this.crc = crc;
+         this.compressedSize = compressedSize;
+         this.size = size;
+         this.offset = offset;
+      }
+   }
+
+   /**
+    * Writes the zip structures in little-endian order, keeping track of the offset
+    */
+   private static class ZipWriter extends FilterOutputStream
+   {
+      private long written;
+
+      ZipWriter(OutputStream os)
+      {
+         super(new BufferedOutputStream(os, BUFFER_SIZE));
+      }
+
+      CentralEntry writeDirectory(String name, int time) throws IOException
+      {
+         return writeEntry(name, time, new Compressed(STORED, 0, 0, new byte[0], 0));
+      }
+
+      CentralEntry writeEntry(String name, int time, Compressed compressed) throws IOException
+      {
+         byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+         long offset = written;
+         writeLocalHeader(nameBytes, FLAG_UTF8, compressed.method, time, compressed.crc, compressed.length,
+                  compressed.size);
+         write(compressed.data, 0, compressed.length);
+         return new CentralEntry(nameBytes, FLAG_UTF8, compressed.method, time, compressed.crc, compressed.length,
+                  compressed.size, offset);
+      }
+
+      CentralEntry writeStreamed(Source source, int time, int level) throws IOException
+      {
+         byte[] nameBytes = source.name.getBytes(StandardCharsets.UTF_8);
+         int flags = FLAG_UTF8 | FLAG_DATA_DESCRIPTOR;
+         long offset = written;
+         writeLocalHeader(nameBytes, flags, DEFLATED, time, 0, 0, 0);
+         CRC32 crc = new CRC32();
+         Deflater deflater = new Deflater(level, true);
+         try (InputStream is = Files.newInputStream(source.path))
+         {
+            byte[] input = new byte[BUFFER_SIZE];
+            byte[] output = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = is.read(input)) > 0)
+            {
+               crc.update(input, 0, read);
+               deflater.setInput(input, 0, read);
+               while (!deflater.needsInput())
+               {
+                  write(output, 0, deflater.deflate(output));
+               }
+            }
+            deflater.finish();
+            while (!deflater.finished())
+            {
+               write(output, 0, deflater.deflate(output));
+            }
+            writeInt(DATA_DESCRIPTOR);
+            writeInt((int) crc.getValue());
+            writeInt((int) deflater.getBytesWritten());
+            writeInt((int) deflater.getBytesRead());
+            return new CentralEntry(nameBytes, flags, DEFLATED, time, (int) crc.getValue(),
+                     deflater.getBytesWritten(), deflater.getBytesRead(), offset);
+         }
+         finally
+         {
+            deflater.end();
+         }
+      }
+
+      void writeCentralDirectory(List<CentralEntry> entries) throws IOException
+      {
+         long offset = written;
+         for (CentralEntry entry : entries)
+         {
+            int version = version(entry.method);
+            writeInt(CENTRAL_HEADER);
+            writeShort(version);
+            writeShort(version);
+            writeShort(entry.flags);
+            writeShort(entry.method);
+            writeInt(entry.time);
+            writeInt(entry.crc);
+            writeInt((int) entry.compressedSize);
+            writeInt((int) entry.size);
+            writeShort(entry.name.length);
+            // Extra field, comment, disk number, internal and external attributes
+            writeShort(0);
+            writeShort(0);
+            writeShort(0);
+            writeShort(0);
+            writeInt(0);
+            writeInt((int) entry.offset);
+            write(entry.name, 0, entry.name.length);
+         }
+         long size = written - offset;
+         writeInt(END_OF_CENTRAL_DIRECTORY);
+         writeShort(0);
+         writeShort(0);
+         writeShort(entries.size());
+         writeShort(entries.size());
+         writeInt((int) size);
+         writeInt((int) offset);
+         writeShort(0);
+      }
+
+      private void writeLocalHeader(byte[] name, int flags, int method, int time, int crc, long compressedSize,
+               long size) throws IOException
+      {
+         writeInt(LOCAL_HEADER);
+         writeShort(version(method));
+         writeShort(flags);
+         writeShort(method);
+         writeInt(time);
+         writeInt(crc);
+         writeInt((int) compressedSize);
+         writeInt((int) size);
+         writeShort(name.length);
+         writeShort(0);
+         write(name, 0, name.length);
+      }
+
+      private static int version(int method)
+      {
+         return method == DEFLATED ? 20 : 10;
+      }
+
+      private void writeShort(int value) throws IOException
+      {
+         out.write(value & 0xFF);
+         out.write((value >>> 8) & 0xFF);
+         written += 2;
+      }
+
+      private void writeInt(int value) throws IOException
+      {
+         writeShort(value & 0xFFFF);
+         writeShort((value >>> 16) & 0xFFFF);
+      }
+
+      @Override
+      public void write(int b) throws IOException
+      {
+         out.write(b);
+         written++;
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException
+      {
+         out.write(b, off, len);
+         written += len;
+      }
+   }
+}
@@ -17,6 +17,7 @@ package io.openshift.launchpad.backend.util;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.file.FileVisitResult;
@@ -34,6 +35,7 @@ import java.util.zip.ZipOutputStream;
  */
 public class Paths
 {
+   private static final boolean PARALLEL_ZIP = Configuration.getBoolean("LAUNCHPAD_BACKEND_ZIP_PARALLEL", true);
 
    /**
     * Zips an entire directory and returns as a byte[]
@@ -51,7 +53,9 @@ public class Paths
    }
 
    /**
-    * Zips an entire directory and stores in the provided {@link OutputStream}
+    * Zips an entire directory and stores in the provided {@link OutputStream}. The provided {@link OutputStream} is
+    * flushed but not closed. Files are compressed in parallel by {@link ParallelZip}, unless
+    * <code>LAUNCHPAD_BACKEND_ZIP_PARALLEL</code> is <code>false</code>.
     * 
     * @param root the root directory to be used
     * @param directory the directory to be zipped
@@ -60,32 +64,74 @@ public class Paths
     */
    public static void zip(String root, final Path directory, OutputStream os) throws IOException
    {
-      try (final ZipOutputStream zos = new ZipOutputStream(os))
+      if (PARALLEL_ZIP)
       {
-         Files.walkFileTree(directory, new SimpleFileVisitor<Path>()
-         {
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
-            {
-               String entry = root + File.separator + directory.relativize(file).toString();
-               zos.putNextEntry(new ZipEntry(entry));
-               Files.copy(file, zos);
-               zos.closeEntry();
-               return FileVisitResult.CONTINUE;
-            }
+         ParallelZip.getDefault().zip(root, directory, os);
+      }
+      else
+      {
+         zipSequential(root, directory, os);
+      }
+   }
 
-            @Override
-            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException
-            {
-               String entry = root + File.separator + directory.relativize(dir).toString() + File.separator;
-               zos.putNextEntry(new ZipEntry(entry));
-               zos.closeEntry();
-               return FileVisitResult.CONTINUE;
-            }
-         });
+   /**
+    * Zips an entire directory with a {@link ZipOutputStream} on the calling thread. The provided {@link OutputStream}
+    * is flushed but not closed.
+    * 
+    * @param root the root directory to be used
+    * @param directory the directory to be zipped
+    * @param os the {@link OutputStream} which the zip operation will be written to
+    * @throws IOException if any I/O error happens
+    */
+   public static void zipSequential(String root, final Path directory, OutputStream os) throws IOException
+   {
+      try (final ZipOutputStream zos = openZip(os))
+      {
+         zip(root, directory, zos);
       }
    }
 
+   /**
+    * Opens a {@link ZipOutputStream} that flushes but does not close the provided {@link OutputStream} when closed
+    */
+   public static ZipOutputStream openZip(OutputStream os)
+   {
+      return new ZipOutputStream(new NonClosingOutputStream(os));
+   }
+
+   /**
+    * Adds an entire directory to the provided {@link ZipOutputStream}, on the calling thread
+    * 
+    * @param root the root directory to be used
+    * @param directory the directory to be zipped
+    * @param zos the {@link ZipOutputStream} the entries are added to
+    * @throws IOException if any I/O error happens
+    */
+   public static void zip(String root, final Path directory, ZipOutputStream zos) throws IOException
+   {
+      Files.walkFileTree(directory, new SimpleFileVisitor<Path>()
+      {
+         @Override
+         public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
+         {
+            String entry = root + File.separator + directory.relativize(file).toString();
+            zos.putNextEntry(new ZipEntry(entry));
+            Files.copy(file, zos);
+            zos.closeEntry();
+            return FileVisitResult.CONTINUE;
+         }
+
+         @Override
+         public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException
+         {
+            String entry = root + File.separator + directory.relativize(dir).toString() + File.separator;
+            zos.putNextEntry(new ZipEntry(entry));
+            zos.closeEntry();
+            return FileVisitResult.CONTINUE;
+         }
+      });
+   }
+
    /**
     * Deletes a directory recursively
     * 
@@ -111,4 +157,53 @@ public class Paths
          }
       });
    }
+
+   /**
+    * Deletes the content of a directory recursively, keeping the directory itself
+    */
+   public static void deleteContents(Path directory) throws IOException
+   {
+      Files.walkFileTree(directory, new SimpleFileVisitor<Path>()
+      {
+         @Override
+         public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
+         {
+            Files.delete(file);
+            return FileVisitResult.CONTINUE;
+         }
+
+         @Override
+         public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException
+         {
+            if (!dir.equals(directory))
+            {
+               Files.delete(dir);
+            }
+            return FileVisitResult.CONTINUE;
+         }
+      });
+   }
+
+   /**
+    * Keeps the wrapped {@link OutputStream} open when the {@link ZipOutputStream} is closed
+    */
+   private static class NonClosingOutputStream extends FilterOutputStream
+   {
+      NonClosingOutputStream(OutputStream os)
+      {
+         super(os);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException
+      {
+         out.write(b, off, len);
+      }
+
+      @Override
+      public void close() throws IOException
+      {
+         flush();
+      }
+   }
 }
@@ -0,0 +1,100 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.workspace;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * The directory a project is generated in, created by {@link WorkspaceManager#create()}. The size it reserves from
+ * the memory budget or the disk quota is released once it is deleted.
+ */
+public class Workspace
+{
+   private final WorkspaceManager manager;
+   private Path path;
+   private boolean inMemory;
+   private long reserved;
+
+   Workspace(WorkspaceManager manager, Path path, boolean inMemory, long reserved)
+   {
+      this.manager = manager;
+      this.path = path;
+      this.inMemory = inMemory;
+      this.reserved = reserved;
+   }
+
+   public Path getPath()
+   {
+      return path;
+   }
+
+   /**
+    * @return <code>true</code> if the workspace is on the memory-backed volume
+    */
+   public boolean isInMemory()
+   {
+      return inMemory;
+   }
+
+   /**
+    * Measures the generated project, moving the workspace to disk if it uses more memory than a project is allowed to
+    *
+    * @param project the generated project, in this workspace
+    * @return the project path, which changes if the workspace was moved
+    * @throws WorkspaceQuotaExceededException if the project needs more disk than the quota has left, in which case the
+    *            workspace is unchanged
+    */
+   public Path checkSize(Path project) throws IOException
+   {
+      return manager.checkSize(this, project);
+   }
+
+   /**
+    * Replaces a memory workspace by an empty one on disk, for a generation that ran out of space to start over in
+    *
+    * @throws WorkspaceQuotaExceededException if the disk quota is used up, in which case the workspace is unchanged
+    */
+   public void retryOnDisk() throws IOException
+   {
+      manager.retryOnDisk(this);
+   }
+
+   /**
+    * Deletes the workspace and everything in it
+    */
+   public void delete()
+   {
+      manager.delete(this);
+   }
+
+   long getReserved()
+   {
+      return reserved;
+   }
+
+   void setReserved(long reserved)
+   {
+      this.reserved = reserved;
+   }
+
+   void moveToDisk(Path diskPath, long reserved)
+   {
+      this.path = diskPath;
+      this.inMemory = false;
+      this.reserved = reserved;
+   }
+}
@@ -0,0 +1,602 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.workspace;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.json.Json;
+import javax.json.JsonObject;
+
+import io.openshift.launchpad.backend.cleanup.DirectoryReaper;
+import io.openshift.launchpad.backend.util.Configuration;
+import io.openshift.launchpad.backend.util.Paths;
+
+/**
+ * Manages the directories Forge works in: the root selected by the pooled controllers, and the {@link Workspace}s
+ * projects are generated in.
+ * <p>
+ * Workspaces live on a configurable volume, which can be a tmpfs. They are kept in a pool and emptied by the
+ * {@link DirectoryReaper} when released, instead of being created and deleted for each request. Each workspace reserves
+ * the maximum project size from the disk quota until its project is measured; new workspaces are refused once the
+ * quota is used up. {@link #isReady()} turns false when the quota or the free space of the volume runs low, so that
+ * generation traffic goes to other pods before the disk fills.
+ * <p>
+ * When enabled, workspaces are created on a memory-backed volume such as <code>/dev/shm</code> first, so that
+ * generating, zipping and deleting a project does not touch the disk. Forge resources are backed by
+ * {@link java.io.File}s, which rules out an in-process {@link java.nio.file.FileSystem}. Memory workspaces reserve the
+ * maximum project size from the memory budget, which is capped at the usable space of the volume; workspaces are
+ * created on disk when the budget is used up, and moved to disk when their project turns out larger than the maximum.
+ * A generation that runs out of space in memory starts over on disk, see {@link Workspace#retryOnDisk()}.
+ */
+@ApplicationScoped
+public class WorkspaceManager
+{
+   private static final Logger log = Logger.getLogger(WorkspaceManager.class.getName());
+
+   private static final String LAUNCHPAD_BACKEND_WORKSPACE_DIR = "LAUNCHPAD_BACKEND_WORKSPACE_DIR";
+   private static final String LAUNCHPAD_BACKEND_WORKSPACE_POOL_SIZE = "LAUNCHPAD_BACKEND_WORKSPACE_POOL_SIZE";
+   private static final String LAUNCHPAD_BACKEND_WORKSPACE_QUOTA = "LAUNCHPAD_BACKEND_WORKSPACE_QUOTA";
+   private static final String LAUNCHPAD_BACKEND_WORKSPACE_MIN_FREE_SPACE = "LAUNCHPAD_BACKEND_WORKSPACE_MIN_FREE_SPACE";
+   private static final String LAUNCHPAD_BACKEND_MEMORY_WORKSPACE_ENABLED = "LAUNCHPAD_BACKEND_MEMORY_WORKSPACE_ENABLED";
+   private static final String LAUNCHPAD_BACKEND_MEMORY_WORKSPACE_DIR = "LAUNCHPAD_BACKEND_MEMORY_WORKSPACE_DIR";
+   private static final String LAUNCHPAD_BACKEND_MEMORY_WORKSPACE_MAX_SIZE = "LAUNCHPAD_BACKEND_MEMORY_WORKSPACE_MAX_SIZE";
+   private static final String LAUNCHPAD_BACKEND_MEMORY_WORKSPACE_MAX_PROJECT_SIZE = "LAUNCHPAD_BACKEND_MEMORY_WORKSPACE_MAX_PROJECT_SIZE";
+
+   private final Path volume;
+   private final int poolSize;
+   private final long quota;
+   private final long minFreeSpace;
+   private boolean memoryEnabled;
+   private final Path memoryDirectory;
+   private long maxMemory;
+   private final long maxProjectSize;
+
+   private Path root;
+   private Path projects;
+   private final Deque<Path> idle = new ConcurrentLinkedDeque<>();
+   private final AtomicInteger idleCount = new AtomicInteger();
+
+   private final AtomicLong reservedMemory = new AtomicLong();
+   private final AtomicLong reservedDisk = new AtomicLong();
+   private final LongAdder memoryWorkspaces = new LongAdder();
+   private final LongAdder diskWorkspaces = new LongAdder();
+   private final LongAdder recycled = new LongAdder();
+   private final LongAdder movedToDisk = new LongAdder();
+   private final LongAdder retriedOnDisk = new LongAdder();
+   private final LongAdder rejected = new LongAdder();
+
+   @Inject
+   DirectoryReaper directoryReaper;
+
+   public WorkspaceManager()
+   {
+      this(java.nio.file.Paths.get(Configuration.get(LAUNCHPAD_BACKEND_WORKSPACE_DIR,
+               Configuration.get("OPENSHIFT_TMP_DIR", System.getProperty("java.io.tmpdir")))),
+               Configuration.getInt(LAUNCHPAD_BACKEND_WORKSPACE_POOL_SIZE, 16),
+               Configuration.getLong(LAUNCHPAD_BACKEND_WORKSPACE_QUOTA, 0),
+               Configuration.getLong(LAUNCHPAD_BACKEND_WORKSPACE_MIN_FREE_SPACE, 256L * 1024 * 1024),
+               Configuration.getBoolean(LAUNCHPAD_BACKEND_MEMORY_WORKSPACE_ENABLED, false),
+               java.nio.file.Paths.get(Configuration.get(LAUNCHPAD_BACKEND_MEMORY_WORKSPACE_DIR, "/dev/shm")),
+               Configuration.getLong(LAUNCHPAD_BACKEND_MEMORY_WORKSPACE_MAX_SIZE, 256L * 1024 * 1024),
+               Configuration.getLong(LAUNCHPAD_BACKEND_MEMORY_WORKSPACE_MAX_PROJECT_SIZE, 32L * 1024 * 1024));
+   }
+
+   /**
+    * @param volume the directory holding the root and the workspaces
+    * @param poolSize the number of empty workspaces kept for reuse
+    * @param quota the disk space in bytes the workspaces may use, <code>0</code> for no quota
+    * @param minFreeSpace the free space in bytes of the volume below which the manager is not ready
+    * @param memoryEnabled <code>true</code> to create workspaces in <code>memoryDirectory</code> first
+    * @param maxMemory the memory in bytes the memory workspaces may use
+    * @param maxProjectSize the size in bytes reserved by a workspace until its project is measured
+    */
+   public WorkspaceManager(Path volume, int poolSize, long quota, long minFreeSpace, boolean memoryEnabled,
+            Path memoryDirectory, long maxMemory, long maxProjectSize)
+   {
+      this.volume = volume;
+      this.poolSize = poolSize;
+      this.quota = quota;
+      this.minFreeSpace = minFreeSpace;
+      this.memoryEnabled = memoryEnabled;
+      this.memoryDirectory = memoryDirectory;
+      this.maxMemory = maxMemory;
+      this.maxProjectSize = maxProjectSize;
+   }
+
+   @PostConstruct
+   public void init()
+   {
+      root = volume.resolve("workspace");
+      projects = volume.resolve("projects");
+      try
+      {
+         Files.createDirectories(root);
+         Files.createDirectories(projects);
+         // Workspaces left by a previous run
+         sweep(projects, true);
+         for (int i = 0; i < poolSize; i++)
+         {
+            idle.push(Files.createTempDirectory(projects, DirectoryReaper.PROJECT_DIR_PREFIX));
+            idleCount.incrementAndGet();
+         }
+      }
+      catch (IOException e)
+      {
+         log.log(Level.SEVERE, "Error while creating the workspaces in " + volume, e);
+      }
+      if (memoryEnabled)
+      {
+         if (!Files.isDirectory(memoryDirectory) || !Files.isWritable(memoryDirectory))
+         {
+            log.warning(memoryDirectory + " is not a writable directory, projects are generated on disk");
+            memoryEnabled = false;
+         }
+         else
+         {
+            sweep(memoryDirectory, false);
+            capMemory();
+         }
+      }
+   }
+
+   /**
+    * Lowers the memory budget to the usable space of the memory volume, as <code>/dev/shm</code> is often smaller than
+    * the budget in containers
+    */
+   private void capMemory()
+   {
+      try
+      {
+         long usableSpace = Files.getFileStore(memoryDirectory).getUsableSpace();
+         if (usableSpace < maxMemory)
+         {
+            log.info("Capping the memory workspace budget to the " + usableSpace + " bytes usable in "
+                     + memoryDirectory);
+            maxMemory = usableSpace;
+         }
+      }
+      catch (IOException e)
+      {
+         log.log(Level.WARNING, "Error while reading the usable space of " + memoryDirectory, e);
+      }
+   }
+
+   /**
+    * @return the directory selected by the controllers that do not generate a project
+    */
+   public Path getRoot()
+   {
+      return root;
+   }
+
+   /**
+    * Creates a workspace in memory if the budget allows it, on disk otherwise
+    *
+    * @throws WorkspaceQuotaExceededException if the disk quota is used up
+    */
+   public Workspace create() throws IOException
+   {
+      if (memoryEnabled && reserve(reservedMemory, maxProjectSize, maxMemory))
+      {
+         try
+         {
+            Path path = Files.createTempDirectory(memoryDirectory, DirectoryReaper.PROJECT_DIR_PREFIX);
+            memoryWorkspaces.increment();
+            return new Workspace(this, path, true, maxProjectSize);
+         }
+         catch (IOException e)
+         {
+            reservedMemory.addAndGet(-maxProjectSize);
+            log.log(Level.WARNING, "Error while creating a workspace in " + memoryDirectory, e);
+         }
+      }
+      return createOnDisk();
+   }
+
+   /**
+    * Creates a workspace on disk, for files that outlive the request such as the results of jobs
+    *
+    * @throws WorkspaceQuotaExceededException if the disk quota is used up
+    */
+   public Workspace createOnDisk() throws IOException
+   {
+      Path path = reserveOnDisk();
+      diskWorkspaces.increment();
+      return new Workspace(this, path, false, maxProjectSize);
+   }
+
+   /**
+    * Reserves the maximum project size from the disk quota and takes a directory from the pool, or creates one
+    */
+   private Path reserveOnDisk() throws IOException
+   {
+      if (!reserve(reservedDisk, maxProjectSize, getDiskLimit()))
+      {
+         throw quotaExceeded();
+      }
+      Path path = idle.poll();
+      if (path != null)
+      {
+         idleCount.decrementAndGet();
+         recycled.increment();
+      }
+      else
+      {
+         try
+         {
+            path = Files.createTempDirectory(projects, DirectoryReaper.PROJECT_DIR_PREFIX);
+         }
+         catch (IOException e)
+         {
+            reservedDisk.addAndGet(-maxProjectSize);
+            throw e;
+         }
+      }
+      return path;
+   }
+
+   /**
+    * @return <code>false</code> if the volume is short of free space or the quota is nearly used up
+    */
+   public boolean isReady()
+   {
+      return getReason() == null;
+   }
+
+   /**
+    * @return why the manager is not ready, or <code>null</code> if it is
+    */
+   public String getReason()
+   {
+      long freeSpace = getFreeSpace();
+      if (freeSpace >= 0 && freeSpace < minFreeSpace)
+      {
+         return "Only " + freeSpace + " bytes free in " + volume;
+      }
+      if (quota > 0 && reservedDisk.get() + maxProjectSize > quota)
+      {
+         return "The workspace quota of " + quota + " bytes is used up";
+      }
+      return null;
+   }
+
+   /**
+    * @return the usable space of the volume in bytes, or <code>-1</code> if it cannot be read
+    */
+   public long getFreeSpace()
+   {
+      try
+      {
+         return Files.getFileStore(volume).getUsableSpace();
+      }
+      catch (IOException e)
+      {
+         return -1;
+      }
+   }
+
+   public JsonObject getStatistics()
+   {
+      return Json.createObjectBuilder()
+               .add("ready", isReady())
+               .add("volume", volume.toString())
+               .add("freeSpace", getFreeSpace())
+               .add("minFreeSpace", minFreeSpace)
+               .add("quota", quota)
+               .add("reservedDisk", getReservedDisk())
+               .add("idle", getIdleCount())
+               .add("memoryEnabled", memoryEnabled)
+               .add("reservedMemory", getReservedMemory())
+               .add("maxMemory", getMaxMemory())
+               .add("memoryWorkspaces", getMemoryWorkspaces())
+               .add("diskWorkspaces", getDiskWorkspaces())
+               .add("recycled", getRecycled())
+               .add("movedToDisk", getMovedToDisk())
+               .add("retriedOnDisk", getRetriedOnDisk())
+               .add("rejected", getRejected())
+               .build();
+   }
+
+   /**
+    * @return the disk space reserved by the workspaces in use or being emptied, in bytes
+    */
+   public long getReservedDisk()
+   {
+      return reservedDisk.get();
+   }
+
+   /**
+    * @return the memory reserved by the workspaces in memory, in bytes
+    */
+   public long getReservedMemory()
+   {
+      return reservedMemory.get();
+   }
+
+   /**
+    * @return the memory in bytes the memory workspaces may use, capped at the usable space of the volume
+    */
+   public long getMaxMemory()
+   {
+      return maxMemory;
+   }
+
+   /**
+    * @return the number of empty workspaces waiting to be reused
+    */
+   public int getIdleCount()
+   {
+      return idleCount.get();
+   }
+
+   public long getMemoryWorkspaces()
+   {
+      return memoryWorkspaces.sum();
+   }
+
+   public long getDiskWorkspaces()
+   {
+      return diskWorkspaces.sum();
+   }
+
+   /**
+    * @return the number of disk workspaces taken from the pool
+    */
+   public long getRecycled()
+   {
+      return recycled.sum();
+   }
+
+   /**
+    * @return the number of workspaces moved to disk because their project was too large
+    */
+   public long getMovedToDisk()
+   {
+      return movedToDisk.sum();
+   }
+
+   /**
+    * @return the number of memory workspaces whose generation ran out of space and started over on disk
+    */
+   public long getRetriedOnDisk()
+   {
+      return retriedOnDisk.sum();
+   }
+
+   /**
+    * @return the number of workspaces refused because the quota was used up
+    */
+   public long getRejected()
+   {
+      return rejected.sum();
+   }
+
+   Path checkSize(Workspace workspace, Path project) throws IOException
+   {
+      long size = size(workspace.getPath());
+      if (!workspace.isInMemory())
+      {
+         // The reservation becomes the actual size, taking what the project needs beyond it from the quota
+         long extra = size - workspace.getReserved();
+         if (extra > 0 && !reserve(reservedDisk, extra, getDiskLimit()))
+         {
+            throw quotaExceeded();
+         }
+         if (extra < 0)
+         {
+            reservedDisk.addAndGet(extra);
+         }
+         workspace.setReserved(size);
+         return project;
+      }
+      if (size <= maxProjectSize)
+      {
+         return project;
+      }
+      if (!reserve(reservedDisk, size, getDiskLimit()))
+      {
+         throw quotaExceeded();
+      }
+      Path memoryPath = workspace.getPath();
+      Path diskPath = null;
+      try
+      {
+         diskPath = Files.createTempDirectory(projects, DirectoryReaper.PROJECT_DIR_PREFIX);
+         copy(memoryPath, diskPath);
+      }
+      catch (IOException e)
+      {
+         reservedDisk.addAndGet(-size);
+         if (diskPath != null)
+         {
+            directoryReaper.delete(diskPath);
+         }
+         throw e;
+      }
+      delete(workspace);
+      workspace.moveToDisk(diskPath, size);
+      movedToDisk.increment();
+      log.fine("Moved " + memoryPath + " to " + diskPath);
+      return diskPath.resolve(memoryPath.relativize(project).toString());
+   }
+
+   void retryOnDisk(Workspace workspace) throws IOException
+   {
+      Path memoryPath = workspace.getPath();
+      Path diskPath = reserveOnDisk();
+      delete(workspace);
+      workspace.moveToDisk(diskPath, maxProjectSize);
+      retriedOnDisk.increment();
+      log.fine("Replaced " + memoryPath + " by " + diskPath);
+   }
+
+   void delete(Workspace workspace)
+   {
+      Path path = workspace.getPath();
+      long reserved = workspace.getReserved();
+      if (workspace.isInMemory())
+      {
+         // Deleting from memory is cheap, and releases the reservation right away
+         try
+         {
+            Paths.deleteDirectory(path);
+         }
+         catch (IOException e)
+         {
+            log.log(Level.WARNING, "Error while deleting " + path, e);
+         }
+         finally
+         {
+            reservedMemory.addAndGet(-reserved);
+         }
+      }
+      else
+      {
+         // A directory that cannot be emptied is left to the sweep of the next startup, its reservation is released
+         directoryReaper.empty(path, () -> {
+            reservedDisk.addAndGet(-reserved);
+            if (!Files.isDirectory(path))
+            {
+               return;
+            }
+            if (idleCount.incrementAndGet() <= poolSize)
+            {
+               idle.push(path);
+            }
+            else
+            {
+               idleCount.decrementAndGet();
+               try
+               {
+                  Files.delete(path);
+               }
+               catch (IOException e)
+               {
+                  log.log(Level.WARNING, "Error while deleting " + path, e);
+               }
+            }
+         }, () -> reservedDisk.addAndGet(-reserved));
+      }
+   }
+
+   private long getDiskLimit()
+   {
+      return quota > 0 ? quota : Long.MAX_VALUE;
+   }
+
+   private WorkspaceQuotaExceededException quotaExceeded()
+   {
+      rejected.increment();
+      return new WorkspaceQuotaExceededException("The workspace quota of " + quota + " bytes is used up");
+   }
+
+   private static boolean reserve(AtomicLong reserved, long size, long max)
+   {
+      long current;
+      do
+      {
+         current = reserved.get();
+         if (current + size > max)
+         {
+            return false;
+         }
+      }
+      while (!reserved.compareAndSet(current, current + size));
+      return true;
+   }
+
+   private static long size(Path directory) throws IOException
+   {
+      long[] size = { 0 };
+      Files.walkFileTree(directory, new SimpleFileVisitor<Path>()
+      {
+         @Override
+         public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
+         {
+            size[0] += attrs.size();
+            return FileVisitResult.CONTINUE;
+         }
+      });
+      return size[0];
+   }
+
+   private static void copy(Path source, Path target) throws IOException
+   {
+      Files.walkFileTree(source, new SimpleFileVisitor<Path>()
+      {
+         @Override
+         public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException
+         {
+            Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+            return FileVisitResult.CONTINUE;
+         }
+
+         @Override
+         public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException
+         {
+            Files.copy(file, target.resolve(source.relativize(file).toString()), StandardCopyOption.COPY_ATTRIBUTES);
+            return FileVisitResult.CONTINUE;
+         }
+      });
+   }
+
+   /**
+    * Deletes the workspaces left by a previous run. Memory workspaces survive restarts of the process.
+    */
+   private void sweep(Path directory, boolean inBackground)
+   {
+      try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+               DirectoryReaper.PROJECT_DIR_PREFIX + "*"))
+      {
+         for (Path orphan : stream)
+         {
+            if (!Files.isDirectory(orphan))
+            {
+               continue;
+            }
+            if (inBackground)
+            {
+               directoryReaper.delete(orphan);
+            }
+            else
+            {
+               Paths.deleteDirectory(orphan);
+            }
+         }
+      }
+      catch (IOException e)
+      {
+         log.log(Level.WARNING, "Error while sweeping " + directory, e);
+      }
+   }
+}
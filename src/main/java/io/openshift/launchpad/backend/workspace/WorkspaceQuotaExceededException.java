@@ -0,0 +1,31 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.workspace;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the disk quota of the workspaces does not allow a new one
+ */
+public class WorkspaceQuotaExceededException extends IOException
+{
+   private static final long serialVersionUID = 1L;
+
+   public WorkspaceQuotaExceededException(String message)
+   {
+      super(message);
+   }
+}
@@ -0,0 +1,115 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.admission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link AdaptiveLimit}, driven with synthetic latencies on a fake clock
+ */
+public class AdaptiveLimitTest
+{
+   private static final long TARGET_NANOS = TimeUnit.MILLISECONDS.toNanos(30);
+
+   private final ConcurrencyLimiter limiter = new ConcurrencyLimiter(32, 0);
+   private long now = 1_000_000_000L;
+   private final AdaptiveLimit adaptiveLimit = new AdaptiveLimit(limiter, TARGET_NANOS, 1, 64, 0.9, () -> now);
+
+   @Test
+   public void limitShouldConvergeToTheTargetLatency() throws InterruptedException
+   {
+      long recentLatency = 0;
+      int recentSamples = 0;
+      for (int round = 0; round < 1000; round++)
+      {
+         long latency = runSaturated();
+         if (round >= 900)
+         {
+            recentLatency += latency;
+            recentSamples++;
+         }
+      }
+      // The service stays under the target up to 12 concurrent executions
+      int limit = adaptiveLimit.getLimit();
+      assertTrue("Limit " + limit, limit >= 8 && limit <= 13);
+      long averageNanos = recentLatency / recentSamples;
+      assertTrue("Average latency " + averageNanos + "ns", averageNanos <= TARGET_NANOS);
+   }
+
+   @Test
+   public void slowSamplesStartedBeforeTheLastDecreaseShouldBeIgnored()
+   {
+      long start = now;
+      now += TimeUnit.MILLISECONDS.toNanos(1);
+      adaptiveLimit.onSample(now, 2 * TARGET_NANOS);
+      assertEquals(28, adaptiveLimit.getLimit());
+      // Started during the same slow period
+      adaptiveLimit.onSample(start + 1, 2 * TARGET_NANOS);
+      assertEquals(28, adaptiveLimit.getLimit());
+      now += TimeUnit.MILLISECONDS.toNanos(1);
+      adaptiveLimit.onSample(now, 2 * TARGET_NANOS);
+      assertEquals(25, adaptiveLimit.getLimit());
+      assertEquals(25, limiter.getLimit());
+   }
+
+   @Test
+   public void unusedLimitShouldNotGrow()
+   {
+      for (int i = 0; i < 1000; i++)
+      {
+         adaptiveLimit.onSample(now, TARGET_NANOS / 2);
+      }
+      assertEquals(32, adaptiveLimit.getLimit());
+   }
+
+   /**
+    * Runs as many executions as the limit admits, all started together, as under a saturating load
+    *
+    * @return the latency of the executions
+    */
+   private long runSaturated() throws InterruptedException
+   {
+      int concurrency = 0;
+      while (limiter.acquire(0, TimeUnit.MILLISECONDS))
+      {
+         concurrency++;
+      }
+      long start = now;
+      long latency = serviceNanos(concurrency);
+      now += latency;
+      for (int i = 0; i < concurrency; i++)
+      {
+         adaptiveLimit.onSample(start, latency);
+         limiter.release();
+      }
+      // Time for the clients to send the next requests
+      now += TimeUnit.MILLISECONDS.toNanos(1);
+      return latency;
+   }
+
+   /**
+    * A generation bound by 4 CPUs, taking 10ms when running alone
+    */
+   private static long serviceNanos(int concurrency)
+   {
+      return TimeUnit.MILLISECONDS.toNanos(Math.max(10, 10 * concurrency / 4));
+   }
+}
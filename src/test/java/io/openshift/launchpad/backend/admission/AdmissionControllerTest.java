@@ -0,0 +1,59 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.admission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.openshift.launchpad.backend.metrics.Endpoint;
+import io.openshift.launchpad.backend.metrics.LaunchpadMetrics;
+
+/**
+ * Tests for {@link AdmissionController}
+ */
+public class AdmissionControllerTest
+{
+   private static final String ZIP_LIMIT = "LAUNCHPAD_BACKEND_ADMISSION_LIMIT_ZIP";
+
+   @After
+   public void tearDown()
+   {
+      System.clearProperty(ZIP_LIMIT);
+   }
+
+   @Test
+   public void unlimitedEndpointShouldNotBeAdjusted()
+   {
+      System.setProperty(ZIP_LIMIT, "0");
+      AdmissionController controller = new AdmissionController();
+      controller.metrics = new LaunchpadMetrics();
+      controller.init();
+      int missionControlLimit = controller.getLimiter(Endpoint.MISSIONCONTROL).getLimit();
+      for (int i = 0; i < 10; i++)
+      {
+         long start = System.nanoTime();
+         controller.onExecuted(Endpoint.ZIP, start, TimeUnit.MINUTES.toNanos(1));
+         controller.onExecuted(Endpoint.MISSIONCONTROL, start, TimeUnit.MINUTES.toNanos(1));
+      }
+      assertEquals(0, controller.getLimiter(Endpoint.ZIP).getLimit());
+      assertTrue(controller.getLimiter(Endpoint.MISSIONCONTROL).getLimit() < missionControlLimit);
+   }
+}
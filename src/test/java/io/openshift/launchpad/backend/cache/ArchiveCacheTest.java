@@ -0,0 +1,113 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.openshift.launchpad.backend.util.Paths;
+
+/**
+ * Tests for {@link ArchiveCache}
+ */
+public class ArchiveCacheTest
+{
+   private Path directory;
+   private ArchiveCache cache;
+
+   @Before
+   public void setup() throws IOException
+   {
+      directory = Files.createTempDirectory("archiveCacheTest");
+      cache = new ArchiveCache(true, directory, 10);
+   }
+
+   @After
+   public void tearDown() throws IOException
+   {
+      cache.clear();
+      if (Files.exists(directory))
+      {
+         Paths.deleteDirectory(directory);
+      }
+   }
+
+   @Test
+   public void committedArchiveShouldBeServed() throws IOException
+   {
+      assertNull(cache.open("a"));
+      ByteArrayOutputStream response = new ByteArrayOutputStream();
+      ArchiveCache.Writer writer = cache.store("a", response);
+      writer.write("12345".getBytes(StandardCharsets.UTF_8));
+      writer.commit();
+      assertEquals("12345", response.toString("UTF-8"));
+      assertEquals(5, cache.getArchiveSize("a"));
+
+      ByteArrayOutputStream cached = new ByteArrayOutputStream();
+      try (FileChannel channel = cache.open("a"))
+      {
+         assertNotNull(channel);
+         ArchiveCache.transfer(channel, cached);
+      }
+      assertArrayEquals(response.toByteArray(), cached.toByteArray());
+      assertEquals(1, cache.getHits());
+      assertEquals(1, cache.getMisses());
+   }
+
+   @Test
+   public void abortedArchiveShouldNotBeServed() throws IOException
+   {
+      ArchiveCache.Writer writer = cache.store("a", new ByteArrayOutputStream());
+      writer.write(1);
+      writer.abort();
+      assertNull(cache.open("a"));
+      assertEquals(0, cache.getSize());
+   }
+
+   @Test
+   public void leastRecentlyUsedArchiveShouldBeEvicted() throws IOException
+   {
+      store("a", 4);
+      store("b", 4);
+      cache.open("a").close();
+      store("c", 4);
+      assertEquals(1, cache.getEvictions());
+      assertEquals(8, cache.getSize());
+      assertNull(cache.open("b"));
+      cache.open("a").close();
+      cache.open("c").close();
+   }
+
+   private void store(String key, int size) throws IOException
+   {
+      ArchiveCache.Writer writer = cache.store(key, new ByteArrayOutputStream());
+      writer.write(new byte[size]);
+      writer.commit();
+   }
+}
@@ -0,0 +1,90 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.command;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+
+import org.jboss.forge.addon.ui.controller.WizardCommandController;
+import org.junit.Test;
+
+/**
+ * Tests for the memory accounting of {@link WizardSessionRegistry}
+ */
+public class WizardSessionRegistryTest
+{
+   private static final long BASE_SIZE = 1000;
+
+   private final WizardSessionRegistry registry = new WizardSessionRegistry(10, 60_000, 10 * BASE_SIZE, BASE_SIZE,
+            2 * BASE_SIZE);
+
+   @Test
+   public void repeatedInputShouldReplaceTheEstimate()
+   {
+      WizardSession session = registry.open("launchpad-new-project", createController());
+      for (int i = 0; i < 100; i++)
+      {
+         // A client looping over next and previous applies the same step again and again
+         assertTrue(registry.recordInput(session, 500));
+         session.setStepIndex(1);
+         assertTrue(registry.recordInput(session, 300));
+         session.setStepIndex(0);
+      }
+      assertEquals(BASE_SIZE + 800, session.getEstimatedSize());
+      assertEquals(BASE_SIZE + 800, registry.getEstimatedMemory());
+
+      assertTrue(registry.recordInput(session, 100));
+      assertEquals(BASE_SIZE + 400, registry.getEstimatedMemory());
+      assertNotNull("Other clients should still open sessions", registry.open("launchpad-new-project",
+               createController()));
+   }
+
+   @Test
+   public void sessionShouldNotExceedItsBudget()
+   {
+      WizardSession session = registry.open("launchpad-new-project", createController());
+      assertTrue(registry.recordInput(session, BASE_SIZE));
+      session.setStepIndex(1);
+      assertFalse(registry.recordInput(session, 1));
+      assertEquals(2 * BASE_SIZE, registry.getEstimatedMemory());
+
+      assertTrue(registry.close(session.getId()));
+      assertEquals(0, registry.getEstimatedMemory());
+   }
+
+   @Test
+   public void registryShouldNotExceedItsBudget()
+   {
+      for (int i = 0; i < 5; i++)
+      {
+         WizardSession session = registry.open("launchpad-new-project", createController());
+         assertTrue(registry.recordInput(session, BASE_SIZE));
+      }
+      assertEquals(10 * BASE_SIZE, registry.getEstimatedMemory());
+      assertNull(registry.open("launchpad-new-project", createController()));
+   }
+
+   private WizardCommandController createController()
+   {
+      return (WizardCommandController) Proxy.newProxyInstance(getClass().getClassLoader(),
+               new Class<?>[] { WizardCommandController.class }, (proxy, method, args) -> null);
+   }
+}
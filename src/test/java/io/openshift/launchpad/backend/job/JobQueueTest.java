@@ -0,0 +1,109 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.job;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests for {@link JobQueue}
+ */
+public class JobQueueTest
+{
+   private final JobQueue queue = new JobQueue(1, 1, 0, Executors.defaultThreadFactory(), null);
+
+   @After
+   public void tearDown()
+   {
+      queue.close();
+   }
+
+   @Test
+   public void jobsShouldBeRejectedWhenTheQueueIsFull() throws Exception
+   {
+      CountDownLatch started = new CountDownLatch(1);
+      CountDownLatch release = new CountDownLatch(1);
+      JobQueue.Task blocking = job -> {
+         started.countDown();
+         release.await();
+         throw new IllegalStateException("Generation failed");
+      };
+      Job running = queue.submit("launchpad-new-project", null, blocking);
+      assertTrue(started.await(5, TimeUnit.SECONDS));
+      Job queued = queue.submit("launchpad-new-project", null, blocking);
+      assertNotNull(queued);
+      assertEquals(Job.Status.QUEUED, queued.getStatus());
+      assertNull(queue.submit("launchpad-new-project", null, blocking));
+      assertEquals(1, queue.getRejected());
+      assertSame(running, queue.get(running.getId()));
+
+      release.countDown();
+      waitUntilDone(queued);
+      assertEquals(Job.Status.FAILED, running.getStatus());
+      assertEquals(2, queue.getFailed());
+   }
+
+   @Test
+   public void finishedJobsShouldExpire() throws Exception
+   {
+      Job job = queue.submit("launchpad-new-project", null, j -> {
+         throw new IllegalStateException();
+      });
+      waitUntilDone(job);
+      Thread.sleep(5);
+      queue.evictExpired();
+      assertNull(queue.get(job.getId()));
+   }
+
+   @Test
+   public void jobsShouldOnlyBeOwnedByTheirSubmitter() throws Exception
+   {
+      Job job = queue.submit("launchpad-new-project", "Bearer a", j -> {
+         throw new IllegalStateException();
+      });
+      assertTrue(job.isOwnedBy("Bearer a"));
+      assertFalse(job.isOwnedBy("Bearer b"));
+      assertFalse(job.isOwnedBy(null));
+      Job anonymous = queue.submit("launchpad-new-project", null, j -> {
+         throw new IllegalStateException();
+      });
+      assertTrue(anonymous.isOwnedBy(null));
+      assertFalse(anonymous.isOwnedBy("Bearer a"));
+      waitUntilDone(job);
+      waitUntilDone(anonymous);
+   }
+
+   private static void waitUntilDone(Job job) throws InterruptedException
+   {
+      long deadline = System.currentTimeMillis() + 5000;
+      while (!job.isDone() && System.currentTimeMillis() < deadline)
+      {
+         Thread.sleep(10);
+      }
+      assertTrue(job.isDone());
+   }
+}
@@ -0,0 +1,209 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.missioncontrol;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.ws.rs.core.Response;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.openshift.launchpad.backend.util.Paths;
+
+/**
+ * Uploads a project to a local HTTP server standing in for Mission Control
+ */
+public class MissionControlTest
+{
+   private static final String DESCRIPTION = "Generated by Launchpad 1.0.0";
+
+   private HttpServer server;
+   private ExecutorService executor;
+   private MissionControlClient client;
+   private Path project;
+
+   private volatile Map<String, byte[]> receivedParts;
+   private volatile String receivedAuthorization;
+   private volatile String receivedTransferEncoding;
+
+   @Before
+   public void setup() throws IOException
+   {
+      executor = Executors.newSingleThreadExecutor();
+      client = new MissionControlClient();
+      client.init();
+      server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+      server.createContext("/api/missioncontrol/upload", this::handleUpload);
+      server.start();
+      project = Files.createTempDirectory("projectDir");
+      Random random = new Random(42);
+      for (int i = 0; i < 20; i++)
+      {
+         byte[] content = new byte[64 * 1024];
+         random.nextBytes(content);
+         Path file = project.resolve("src/main/java/demo/File" + i + ".java");
+         Files.createDirectories(file.getParent());
+         Files.write(file, content);
+      }
+      Files.write(project.resolve("pom.xml"), "<project/>".getBytes(StandardCharsets.UTF_8));
+   }
+
+   @After
+   public void tearDown() throws IOException
+   {
+      server.stop(0);
+      client.destroy();
+      executor.shutdownNow();
+      Paths.deleteDirectory(project);
+   }
+
+   @Test
+   public void uploadShouldSendTheZippedProjectAndFormFields() throws Exception
+   {
+      URI uploadURI = URI.create("http://localhost:" + server.getAddress().getPort() + "/api/missioncontrol/upload");
+      MissionControl missionControl = new MissionControl(uploadURI, client, executor);
+
+      Response response = missionControl.upload("demo", project, DESCRIPTION, "Bearer token");
+
+      assertEquals(200, response.getStatus());
+      assertEquals("{\"status\":\"OK\"}", response.getEntity());
+      assertEquals("Bearer token", receivedAuthorization);
+      assertEquals("chunked", receivedTransferEncoding);
+      assertNotNull(receivedParts);
+      assertArrayEquals(DESCRIPTION.getBytes(StandardCharsets.UTF_8),
+               receivedParts.get("gitHubRepositoryDescription"));
+      assertEquals(unzip(Paths.zip("demo", project)), unzip(receivedParts.get("file")));
+      assertEquals(1, client.getRequests());
+      assertEquals(0, client.getInFlight());
+   }
+
+   private void handleUpload(HttpExchange exchange) throws IOException
+   {
+      receivedAuthorization = exchange.getRequestHeaders().getFirst("Authorization");
+      receivedTransferEncoding = exchange.getRequestHeaders().getFirst("Transfer-Encoding");
+      String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+      String boundary = contentType.substring(contentType.indexOf("boundary=") + "boundary=".length());
+      try (InputStream is = exchange.getRequestBody())
+      {
+         receivedParts = parseMultipart(readFully(is), boundary.replace("\"", ""));
+      }
+      byte[] body = "{\"status\":\"OK\"}".getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().add("Content-Type", "application/json");
+      exchange.sendResponseHeaders(200, body.length);
+      exchange.getResponseBody().write(body);
+      exchange.close();
+   }
+
+   /**
+    * @return the body of each part, indexed by the form field name
+    */
+   private static Map<String, byte[]> parseMultipart(byte[] body, String boundary)
+   {
+      Map<String, byte[]> parts = new LinkedHashMap<>();
+      byte[] delimiter = ("--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+      int start = indexOf(body, delimiter, 0);
+      while (start >= 0)
+      {
+         int headersStart = start + delimiter.length + 2;
+         int headersEnd = indexOf(body, "\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1), headersStart);
+         int next = indexOf(body, delimiter, headersStart);
+         if (headersEnd < 0 || next < 0)
+         {
+            break;
+         }
+         String headers = new String(body, headersStart, headersEnd - headersStart, StandardCharsets.ISO_8859_1);
+         int nameStart = headers.indexOf("name=\"") + "name=\"".length();
+         String name = headers.substring(nameStart, headers.indexOf('"', nameStart));
+         byte[] content = new byte[next - 2 - (headersEnd + 4)];
+         System.arraycopy(body, headersEnd + 4, content, 0, content.length);
+         parts.put(name, content);
+         start = next;
+      }
+      return parts;
+   }
+
+   private static int indexOf(byte[] data, byte[] pattern, int from)
+   {
+      outer: for (int i = from; i <= data.length - pattern.length; i++)
+      {
+         for (int j = 0; j < pattern.length; j++)
+         {
+            if (data[i + j] != pattern[j])
+            {
+               continue outer;
+            }
+         }
+         return i;
+      }
+      return -1;
+   }
+
+   /**
+    * Zip entries carry their creation time, so archives are compared by entry names and contents
+    */
+   private static Map<String, String> unzip(byte[] zip) throws IOException
+   {
+      Map<String, String> entries = new TreeMap<>();
+      try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(zip)))
+      {
+         ZipEntry entry;
+         while ((entry = zis.getNextEntry()) != null)
+         {
+            entries.put(entry.getName(), java.util.Base64.getEncoder().encodeToString(readFully(zis)));
+         }
+      }
+      assertTrue(entries.size() > 20);
+      return entries;
+   }
+
+   private static byte[] readFully(InputStream is) throws IOException
+   {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = is.read(buffer)) != -1)
+      {
+         baos.write(buffer, 0, read);
+      }
+      return baos.toByteArray();
+   }
+}
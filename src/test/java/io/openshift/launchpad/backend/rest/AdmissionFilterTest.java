@@ -0,0 +1,168 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import org.junit.Test;
+
+import io.openshift.launchpad.backend.admission.AdmissionController;
+import io.openshift.launchpad.backend.admission.ConcurrencyLimiter;
+import io.openshift.launchpad.backend.metrics.Endpoint;
+
+/**
+ * Tests for {@link AdmissionFilter}, driven as the container does
+ */
+public class AdmissionFilterTest
+{
+   private final ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 0);
+   private final AdmissionFilter filter = new AdmissionFilter(new AdmissionController()
+   {
+      @Override
+      public Endpoint classify(String method, String path)
+      {
+         return Endpoint.ZIP;
+      }
+
+      @Override
+      public ConcurrencyLimiter getLimiter(Endpoint endpoint)
+      {
+         return limiter;
+      }
+
+      @Override
+      public long getTimeoutMillis()
+      {
+         return 0;
+      }
+   });
+
+   private Response aborted;
+
+   @Test
+   public void permitShouldComeBackWhenTheResourceThrows() throws IOException
+   {
+      for (int i = 0; i < 3; i++)
+      {
+         Map<String, Object> properties = new HashMap<>();
+         ContainerRequestContext request = createRequest(properties);
+         filter.filter(request);
+         assertNull("Request " + i + " should be admitted", aborted);
+         assertEquals(1, limiter.getInFlight());
+
+         // The resource method throws an exception that is not a WebApplicationException
+         Response response = new UnhandledExceptionMapper().toResponse(new NumberFormatException("For input: x"));
+         assertEquals(500, response.getStatus());
+         assertEquals(UnhandledExceptionMapper.GENERIC_MESSAGE, response.getEntity());
+
+         filter.filter(request, createResponse(response));
+         if (response.hasEntity())
+         {
+            filter.aroundWriteTo(createWriterContext(properties));
+         }
+         assertEquals(0, limiter.getInFlight());
+         RequestCompletion.complete(properties.get(RequestCompletion.CALLBACKS));
+         assertEquals(0, limiter.getInFlight());
+      }
+   }
+
+   @Test
+   public void permitShouldComeBackWhenTheEntityIsNeverWritten() throws IOException
+   {
+      Map<String, Object> properties = new HashMap<>();
+      ContainerRequestContext request = createRequest(properties);
+      filter.filter(request);
+      assertEquals(1, limiter.getInFlight());
+      filter.filter(request, createResponse(Response.ok("entity").build()));
+      assertEquals(1, limiter.getInFlight());
+
+      // The container fails before writing the entity, then destroys the request
+      RequestCompletion.complete(properties.get(RequestCompletion.CALLBACKS));
+      assertEquals(0, limiter.getInFlight());
+   }
+
+   private ContainerRequestContext createRequest(Map<String, Object> properties)
+   {
+      UriInfo uriInfo = (UriInfo) Proxy.newProxyInstance(getClass().getClassLoader(),
+               new Class<?>[] { UriInfo.class }, (proxy, method, args) -> "launchpad/commands/zip");
+      return (ContainerRequestContext) Proxy.newProxyInstance(getClass().getClassLoader(),
+               new Class<?>[] { ContainerRequestContext.class }, (proxy, method, args) -> {
+                  switch (method.getName())
+                  {
+                  case "getMethod":
+                     return "POST";
+                  case "getUriInfo":
+                     return uriInfo;
+                  case "getProperty":
+                     return properties.get(args[0]);
+                  case "setProperty":
+                     properties.put((String) args[0], args[1]);
+                     return null;
+                  case "removeProperty":
+                     properties.remove(args[0]);
+                     return null;
+                  case "abortWith":
+                     aborted = (Response) args[0];
+                     return null;
+                  default:
+                     throw new UnsupportedOperationException(method.getName());
+                  }
+               });
+   }
+
+   private ContainerResponseContext createResponse(Response response)
+   {
+      return (ContainerResponseContext) Proxy.newProxyInstance(getClass().getClassLoader(),
+               new Class<?>[] { ContainerResponseContext.class }, (proxy, method, args) -> {
+                  if ("hasEntity".equals(method.getName()))
+                  {
+                     return response.hasEntity();
+                  }
+                  throw new UnsupportedOperationException(method.getName());
+               });
+   }
+
+   private WriterInterceptorContext createWriterContext(Map<String, Object> properties)
+   {
+      return (WriterInterceptorContext) Proxy.newProxyInstance(getClass().getClassLoader(),
+               new Class<?>[] { WriterInterceptorContext.class }, (proxy, method, args) -> {
+                  switch (method.getName())
+                  {
+                  case "getProperty":
+                     return properties.get(args[0]);
+                  case "removeProperty":
+                     properties.remove(args[0]);
+                     return null;
+                  case "proceed":
+                     return null;
+                  default:
+                     throw new UnsupportedOperationException(method.getName());
+                  }
+               });
+   }
+}
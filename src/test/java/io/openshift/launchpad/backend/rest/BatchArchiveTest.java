@@ -0,0 +1,207 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonValue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.openshift.launchpad.backend.util.Paths;
+import io.openshift.launchpad.backend.workspace.Workspace;
+import io.openshift.launchpad.backend.workspace.WorkspaceManager;
+
+/**
+ * Tests for {@link BatchArchive}
+ */
+public class BatchArchiveTest
+{
+   private final ExecutorService executor = Executors.newFixedThreadPool(2);
+   private final AtomicInteger generated = new AtomicInteger();
+   private Path volume;
+   private WorkspaceManager workspaces;
+
+   @Before
+   public void setup() throws IOException
+   {
+      volume = Files.createTempDirectory("batchArchiveTest");
+      workspaces = new WorkspaceManager(volume, 0, 0, 0, true, Files.createDirectory(volume.resolve("shm")),
+               1024 * 1024, 1000);
+      workspaces.init();
+   }
+
+   @After
+   public void tearDown() throws IOException
+   {
+      executor.shutdownNow();
+      Paths.deleteDirectory(volume);
+   }
+
+   @Test
+   public void reportShouldGiveTheOutcomeOfEveryInputSet() throws IOException
+   {
+      JsonArray items = createItems("demo", "ok", "demo", "ok", "bad", "invalid", "broken", "failed");
+      BatchArchive archive = new BatchArchive(items, 2, executor, this::generate);
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      archive.write(os);
+
+      Map<String, String> entries = unzip(os.toByteArray());
+      // Two projects share a name: the second one gets a suffix
+      assertEquals("demo", entries.get("demo/pom.xml"));
+      assertEquals("demo", entries.get("demo-2/pom.xml"));
+      assertEquals(3, entries.size());
+      String report = entries.get(BatchArchive.BATCH_REPORT);
+      assertTrue(report, report.contains("{\"index\":2,\"status\":\"INVALID\""));
+      assertTrue(report, report.contains("{\"index\":3,\"status\":\"FAILED\",\"message\":\"broken\"}"));
+      assertTrue(report, report.matches(".*\"index\":0,\"status\":\"OK\",\"directory\":\"demo(-2)?\".*"));
+      assertTrue(report, report.matches(".*\"index\":1,\"status\":\"OK\",\"directory\":\"demo(-2)?\".*"));
+      assertEquals(0, workspaces.getReservedMemory());
+   }
+
+   @Test
+   public void inputSetsShouldBeSkippedWhenTheClientGoesAway() throws IOException
+   {
+      JsonArray items = createItems("a", "ok", "b", "ok", "c", "ok", "d", "ok", "e", "ok");
+      BatchArchive[] archive = new BatchArchive[1];
+      archive[0] = new BatchArchive(items, 1, executor, (value, item) -> {
+         generate(value, item);
+         if (item.getIndex() == 1)
+         {
+            // Still generating when the client goes away
+            while (!archive[0].isCancelled())
+            {
+               Thread.yield();
+            }
+         }
+      });
+      try
+      {
+         archive[0].write(new OutputStream()
+         {
+            @Override
+            public void write(int b) throws IOException
+            {
+               throw new IOException("Connection reset");
+            }
+         });
+         fail("Writing should fail");
+      }
+      catch (IOException e)
+      {
+         // Expected
+      }
+      assertEquals("The input sets after the one in progress should be skipped", 2, generated.get());
+      assertEquals("Every workspace should be released", 0, workspaces.getReservedMemory());
+   }
+
+   @Test
+   public void nothingShouldBeGeneratedUntilTheArchiveIsWritten()
+   {
+      new BatchArchive(createItems("demo", "ok"), 2, executor, this::generate);
+      assertEquals(0, generated.get());
+   }
+
+   private void generate(JsonValue value, BatchItem item)
+   {
+      generated.incrementAndGet();
+      JsonObject content = (JsonObject) value;
+      String name = content.getString("named");
+      item.setArtifactId(name);
+      switch (content.getString("outcome"))
+      {
+      case "invalid":
+         item.invalid(Json.createObjectBuilder().add("valid", false).build());
+         return;
+      case "failed":
+         item.fail(name);
+         return;
+      default:
+         try
+         {
+            Workspace workspace = workspaces.create();
+            item.setWorkspace(workspace);
+            Path project = Files.createDirectory(workspace.getPath().resolve(name));
+            Files.write(project.resolve("pom.xml"), name.getBytes(StandardCharsets.UTF_8));
+            item.setProjectPath(project);
+         }
+         catch (IOException e)
+         {
+            throw new UncheckedIOException(e);
+         }
+      }
+   }
+
+   private static JsonArray createItems(String... namesAndOutcomes)
+   {
+      JsonArrayBuilder items = Json.createArrayBuilder();
+      for (int i = 0; i < namesAndOutcomes.length; i += 2)
+      {
+         items.add(Json.createObjectBuilder().add("named", namesAndOutcomes[i]).add("outcome",
+                  namesAndOutcomes[i + 1]));
+      }
+      return items.build();
+   }
+
+   private static Map<String, String> unzip(byte[] archive) throws IOException
+   {
+      Map<String, String> entries = new HashMap<>();
+      try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(archive)))
+      {
+         ZipEntry entry;
+         while ((entry = zis.getNextEntry()) != null)
+         {
+            if (entry.isDirectory())
+            {
+               continue;
+            }
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int n;
+            while ((n = zis.read(buffer)) > 0)
+            {
+               content.write(buffer, 0, n);
+            }
+            entries.put(entry.getName(), content.toString("UTF-8"));
+         }
+      }
+      return entries;
+   }
+}
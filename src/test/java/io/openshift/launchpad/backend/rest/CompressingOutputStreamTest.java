@@ -0,0 +1,105 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.rest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link CompressingOutputStream} and the content negotiation of {@link CompressionInterceptor}
+ */
+public class CompressingOutputStreamTest
+{
+   private final AtomicInteger compressions = new AtomicInteger();
+
+   @Test
+   public void bodiesBelowTheThresholdShouldBeWrittenAsIs() throws IOException
+   {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      CompressingOutputStream stream = new CompressingOutputStream(out, 1024, 6, compressions::incrementAndGet);
+      byte[] body = "{\"name\":\"demo\"}".getBytes(StandardCharsets.UTF_8);
+      stream.write(body);
+      stream.flush();
+      assertEquals("Nothing should be committed before finishing", 0, out.size());
+      stream.finish();
+      assertFalse(stream.isCompressed());
+      assertEquals(0, compressions.get());
+      assertArrayEquals(body, out.toByteArray());
+   }
+
+   @Test
+   public void bodiesAboveTheThresholdShouldBeGzipped() throws IOException
+   {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      CompressingOutputStream stream = new CompressingOutputStream(out, 1024, 6, compressions::incrementAndGet);
+      StringBuilder json = new StringBuilder("[");
+      for (int i = 0; i < 200; i++)
+      {
+         json.append("{\"name\":\"input").append(i).append("\",\"required\":true},");
+      }
+      byte[] body = json.append("{}]").toString().getBytes(StandardCharsets.UTF_8);
+      for (byte b : body)
+      {
+         stream.write(b);
+      }
+      stream.finish();
+      stream.finish();
+      assertTrue(stream.isCompressed());
+      assertEquals(1, compressions.get());
+      assertEquals(body.length, stream.getUncompressedBytes());
+      assertEquals(out.size(), stream.getCompressedBytes());
+      assertTrue(out.size() < body.length / 4);
+      assertArrayEquals(body, gunzip(out.toByteArray()));
+   }
+
+   @Test
+   public void gzipShouldBeNegotiatedFromAcceptEncoding()
+   {
+      assertFalse(CompressionInterceptor.acceptsGzip(null));
+      assertFalse(CompressionInterceptor.acceptsGzip("identity"));
+      assertTrue(CompressionInterceptor.acceptsGzip("gzip, deflate, br"));
+      assertTrue(CompressionInterceptor.acceptsGzip("br;q=1.0, GZIP;q=0.8"));
+      assertFalse(CompressionInterceptor.acceptsGzip("gzip;q=0, *"));
+      assertTrue(CompressionInterceptor.acceptsGzip("deflate, *;q=0.1"));
+      assertFalse(CompressionInterceptor.acceptsGzip("*;q=0"));
+   }
+
+   private static byte[] gunzip(byte[] compressed) throws IOException
+   {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed)))
+      {
+         byte[] buffer = new byte[4096];
+         int read;
+         while ((read = in.read(buffer)) != -1)
+         {
+            out.write(buffer, 0, read);
+         }
+      }
+      return out.toByteArray();
+   }
+}
@@ -0,0 +1,163 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.rest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link CompressionInterceptor}
+ */
+public class CompressionInterceptorTest
+{
+   private static final EntityTag TAG = new EntityTag("3f2a");
+
+   private final CompressionInterceptor interceptor = new CompressionInterceptor(true, 64, 6, 4);
+
+   private final byte[] json = createJson();
+
+   private int written;
+
+   @Test
+   public void conditionalRequestShouldMatchTheGzipTag() throws IOException
+   {
+      interceptor.headers = createHeaders("gzip, deflate");
+      MultivaluedMap<String, Object> responseHeaders = new MultivaluedHashMap<>();
+      ByteArrayOutputStream body = write(responseHeaders);
+      assertEquals("gzip", responseHeaders.getFirst(HttpHeaders.CONTENT_ENCODING));
+      EntityTag sent = (EntityTag) responseHeaders.getFirst(HttpHeaders.ETAG);
+      assertEquals(new EntityTag(TAG.getValue() + "-gzip"), sent);
+      assertArrayEquals(json, gunzip(body.toByteArray()));
+
+      // The client sends back the tag of the representation it holds, strong or weakened by a proxy
+      assertEquals(sent, CompressionInterceptor.matchingTag(TAG, '"' + sent.getValue() + '"'));
+      assertEquals(sent, CompressionInterceptor.matchingTag(TAG, "W/\"" + sent.getValue() + '"'));
+      // A client holding the uncompressed representation still matches the entity tag
+      assertEquals(TAG, CompressionInterceptor.matchingTag(TAG, '"' + TAG.getValue() + '"'));
+      assertEquals(TAG, CompressionInterceptor.matchingTag(TAG, null));
+   }
+
+   @Test
+   public void cacheHitShouldSkipTheWriter() throws IOException
+   {
+      interceptor.headers = createHeaders("gzip");
+      byte[] first = write(new MultivaluedHashMap<>()).toByteArray();
+      assertEquals(1, written);
+      MultivaluedMap<String, Object> responseHeaders = new MultivaluedHashMap<>();
+      byte[] second = write(responseHeaders).toByteArray();
+      assertEquals("The cached body should be sent without serializing the entity", 1, written);
+      assertArrayEquals(first, second);
+      assertEquals(new EntityTag(TAG.getValue() + "-gzip"), responseHeaders.getFirst(HttpHeaders.ETAG));
+   }
+
+   @Test
+   public void identityClientShouldKeepTheEntityTag() throws IOException
+   {
+      interceptor.headers = createHeaders(null);
+      MultivaluedMap<String, Object> responseHeaders = new MultivaluedHashMap<>();
+      ByteArrayOutputStream body = write(responseHeaders);
+      assertFalse(responseHeaders.containsKey(HttpHeaders.CONTENT_ENCODING));
+      assertEquals(TAG, responseHeaders.getFirst(HttpHeaders.ETAG));
+      assertArrayEquals(json, body.toByteArray());
+   }
+
+   private ByteArrayOutputStream write(MultivaluedMap<String, Object> responseHeaders) throws IOException
+   {
+      responseHeaders.putSingle(HttpHeaders.ETAG, TAG);
+      ByteArrayOutputStream body = new ByteArrayOutputStream();
+      OutputStream[] current = { body };
+      WriterInterceptorContext context = (WriterInterceptorContext) Proxy.newProxyInstance(
+               getClass().getClassLoader(), new Class<?>[] { WriterInterceptorContext.class },
+               (proxy, method, args) -> {
+                  switch (method.getName())
+                  {
+                  case "getHeaders":
+                     return responseHeaders;
+                  case "getMediaType":
+                     return MediaType.APPLICATION_JSON_TYPE;
+                  case "getOutputStream":
+                     return current[0];
+                  case "setOutputStream":
+                     current[0] = (OutputStream) args[0];
+                     return null;
+                  case "proceed":
+                     written++;
+                     current[0].write(json);
+                     return null;
+                  default:
+                     throw new UnsupportedOperationException(method.getName());
+                  }
+               });
+      interceptor.aroundWriteTo(context);
+      return body;
+   }
+
+   private HttpHeaders createHeaders(String acceptEncoding)
+   {
+      return (HttpHeaders) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { HttpHeaders.class },
+               (proxy, method, args) -> {
+                  if ("getHeaderString".equals(method.getName()))
+                  {
+                     return HttpHeaders.ACCEPT_ENCODING.equals(args[0]) ? acceptEncoding : null;
+                  }
+                  throw new UnsupportedOperationException(method.getName());
+               });
+   }
+
+   private static byte[] createJson()
+   {
+      StringBuilder json = new StringBuilder("{\"inputs\":[");
+      for (int i = 0; i < 20; i++)
+      {
+         json.append(i == 0 ? "" : ",").append("{\"name\":\"input").append(i).append("\",\"value\":\"\"}");
+      }
+      return json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+   }
+
+   private static byte[] gunzip(byte[] bytes) throws IOException
+   {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes)))
+      {
+         byte[] buffer = new byte[256];
+         int n;
+         while ((n = in.read(buffer)) > 0)
+         {
+            out.write(buffer, 0, n);
+         }
+      }
+      return out.toByteArray();
+   }
+}
@@ -50,6 +50,8 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.wildfly.swarm.jaxrs.JAXRSArchive;
 
+import io.openshift.launchpad.backend.missioncontrol.MissionControlClient;
+
 /**
  *
  */
@@ -78,6 +80,8 @@ public class HealthResourceIT
       return deployment;
    }
 
+   private static final long WARM_UP_TIMEOUT_MILLIS = 120_000;
+
    @ArquillianResource
    private URI deploymentUri;
 
@@ -93,9 +97,17 @@ public class HealthResourceIT
 
    @Test
    @RunAsClient
-   public void readinessCheck()
+   public void readinessCheck() throws InterruptedException
    {
-      final Response response = readyTarget.request().get();
+      // Not ready until the commands are warmed up
+      Response response = readyTarget.request().get();
+      long deadline = System.currentTimeMillis() + WARM_UP_TIMEOUT_MILLIS;
+      while (response.getStatus() == 503 && System.currentTimeMillis() < deadline)
+      {
+         response.close();
+         Thread.sleep(500);
+         response = readyTarget.request().get();
+      }
       assertNotNull(response);
       assertEquals(200, response.getStatus());
       String body = response.readEntity(String.class);
@@ -110,7 +122,7 @@ public class HealthResourceIT
    @RunAsClient
    public void catapultReadinessCheck() throws Exception
    {
-      URI catapultServiceURI = HealthResource.createMissionControlUri();
+      URI catapultServiceURI = MissionControlClient.createMissionControlUri();
       WebTarget catapultReadyTarget = client.target(catapultServiceURI);
       final Response response = catapultReadyTarget.request().get();
       assertNotNull(response);
@@ -0,0 +1,81 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.rest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonStructure;
+import javax.ws.rs.core.MediaType;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link JsonStructureWriter}
+ */
+public class JsonStructureWriterTest
+{
+   private final JsonStructureWriter writer = new JsonStructureWriter();
+
+   @Test
+   public void objectsShouldBeWrittenAsJsonWriterDoes() throws IOException
+   {
+      JsonObject object = Json.createObjectBuilder()
+               .add("metadata", Json.createObjectBuilder()
+                        .add("name", "Launchpad: New Project")
+                        .add("description", "G\u00e9n\u00e9rer un projet \"booster\"\n\t\u00e0 partir d'un mod\u00e8le")
+                        .addNull("intention"))
+               .add("state", Json.createObjectBuilder()
+                        .add("valid", true)
+                        .add("canExecute", false))
+               .add("messages", Json.createArrayBuilder())
+               .add("inputs", Json.createArrayBuilder()
+                        .add(Json.createObjectBuilder()
+                                 .add("name", "named")
+                                 .add("value", "demo")
+                                 .add("valueChoices", Json.createArrayBuilder().add(1).add(2.5).add("\u2603"))))
+               .add("stepIndex", 2)
+               .build();
+      assertArrayEquals(object.toString().getBytes(StandardCharsets.UTF_8), write(object));
+      assertEquals(object.toString(), JsonStructureWriter.toString(object));
+   }
+
+   @Test
+   public void arraysShouldBeWrittenAsJsonWriterDoes() throws IOException
+   {
+      JsonArray array = Json.createArrayBuilder()
+               .add(Json.createObjectBuilder().add("id", "vertx"))
+               .add(Json.createArrayBuilder().add(true).addNull())
+               .add(Long.MAX_VALUE)
+               .build();
+      assertArrayEquals(array.toString().getBytes(StandardCharsets.UTF_8), write(array));
+   }
+
+   private byte[] write(JsonStructure structure) throws IOException
+   {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      writer.writeTo(structure, structure.getClass(), structure.getClass(), null, MediaType.APPLICATION_JSON_TYPE,
+               null, out);
+      return out.toByteArray();
+   }
+}
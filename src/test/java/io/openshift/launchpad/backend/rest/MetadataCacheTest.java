@@ -0,0 +1,118 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link MetadataCache}
+ */
+public class MetadataCacheTest
+{
+   private static final String COMMAND = "launchpad-new-project";
+
+   private final MetadataCache cache = new MetadataCache(
+            Arrays.asList(HttpHeaders.ACCEPT_LANGUAGE, HttpHeaders.AUTHORIZATION), 2);
+
+   @Test
+   public void keyShouldDependOnTheWhitelistedHeadersOnly()
+   {
+      String key = cache.createKey(COMMAND, createHeaders("en", "Bearer alice", "Mozilla"));
+      assertEquals(key, cache.createKey(COMMAND, createHeaders("en", "Bearer alice", "curl")));
+      assertFalse(key.equals(cache.createKey(COMMAND, createHeaders("fr", "Bearer alice", "Mozilla"))));
+      assertFalse(key.equals(cache.createKey("launchpad-new-starter-project",
+               createHeaders("en", "Bearer alice", "Mozilla"))));
+   }
+
+   @Test
+   public void callersShouldNotShareEntries()
+   {
+      String alice = cache.createKey(COMMAND, createHeaders("en", "Bearer alice", null));
+      String bob = cache.createKey(COMMAND, createHeaders("en", "Bearer bob", null));
+      String anonymous = cache.createKey(COMMAND, createHeaders("en", null, null));
+      assertFalse(alice.equals(bob));
+      assertFalse(alice.equals(anonymous));
+      assertFalse("The key should not contain the credentials", alice.contains("alice"));
+
+      cache.put(alice, "{\"choices\":[\"alice-org\"]}");
+      assertNull(cache.get(bob));
+      assertNull(cache.get(anonymous));
+   }
+
+   @Test
+   public void responsesShouldVaryOnTheWhitelistedHeaders()
+   {
+      Response response = cache.addCacheHeaders(Response.ok("{}")).build();
+      assertEquals("Accept-Language, Authorization", response.getHeaderString(HttpHeaders.VARY));
+      assertEquals("private", response.getHeaderString(HttpHeaders.CACHE_CONTROL));
+
+      MetadataCache anonymous = new MetadataCache(Collections.singletonList(HttpHeaders.ACCEPT_LANGUAGE), 2);
+      response = anonymous.addCacheHeaders(Response.ok("{}")).build();
+      assertEquals("Accept-Language", response.getHeaderString(HttpHeaders.VARY));
+      assertNull(response.getHeaderString(HttpHeaders.CACHE_CONTROL));
+   }
+
+   @Test
+   public void entriesShouldBeEvictedAndCleared()
+   {
+      MetadataCache.Entry first = cache.put("first", "{\"name\":\"first\"}");
+      assertEquals(MetadataCache.sha256("{\"name\":\"first\"}"), first.getEntityTag().getValue());
+      cache.put("second", "{\"name\":\"second\"}");
+      // Reading the first entry makes the second one the least recently used
+      assertSame(first, cache.get("first"));
+      cache.put("third", "{\"name\":\"third\"}");
+      assertEquals(2, cache.size());
+      assertNull(cache.get("second"));
+      assertNotNull(cache.get("first"));
+
+      cache.clear();
+      assertEquals(0, cache.size());
+      assertNull(cache.get("first"));
+      assertNull(cache.get("third"));
+   }
+
+   private static HttpHeaders createHeaders(String language, String authorization, String userAgent)
+   {
+      Map<String, String> values = new HashMap<>();
+      values.put(HttpHeaders.ACCEPT_LANGUAGE, language);
+      values.put(HttpHeaders.AUTHORIZATION, authorization);
+      values.put(HttpHeaders.USER_AGENT, userAgent);
+      return (HttpHeaders) Proxy.newProxyInstance(MetadataCacheTest.class.getClassLoader(),
+               new Class<?>[] { HttpHeaders.class }, (proxy, method, args) -> {
+                  if ("getRequestHeader".equals(method.getName()))
+                  {
+                     String value = values.get(args[0]);
+                     return value == null ? null : Collections.singletonList(value);
+                  }
+                  throw new UnsupportedOperationException(method.getName());
+               });
+   }
+}
@@ -0,0 +1,93 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.rest;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link RequestCompletion} and {@link ReleasingOutput}
+ */
+public class RequestCompletionTest
+{
+   private final AtomicInteger releases = new AtomicInteger();
+   private final Map<String, Object> properties = new HashMap<>();
+
+   @Test
+   public void unwrittenEntityShouldBeReleasedWhenTheRequestIsOver()
+   {
+      ReleasingOutput entity = new ReleasingOutput(os -> os.write(1), releases::incrementAndGet);
+      new RequestCompletion().filter(createRequest(), createResponse(entity));
+      assertEquals(0, releases.get());
+
+      RequestCompletion.complete(properties.get(RequestCompletion.CALLBACKS));
+      assertEquals(1, releases.get());
+   }
+
+   @Test
+   public void writtenEntityShouldBeReleasedOnce() throws IOException
+   {
+      ReleasingOutput entity = new ReleasingOutput(os -> os.write(1), releases::incrementAndGet);
+      new RequestCompletion().filter(createRequest(), createResponse(entity));
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      entity.write(os);
+      assertEquals(1, os.size());
+      assertEquals(1, releases.get());
+
+      RequestCompletion.complete(properties.get(RequestCompletion.CALLBACKS));
+      assertEquals(1, releases.get());
+   }
+
+   private ContainerRequestContext createRequest()
+   {
+      return (ContainerRequestContext) Proxy.newProxyInstance(getClass().getClassLoader(),
+               new Class<?>[] { ContainerRequestContext.class }, (proxy, method, args) -> {
+                  switch (method.getName())
+                  {
+                  case "getProperty":
+                     return properties.get(args[0]);
+                  case "setProperty":
+                     properties.put((String) args[0], args[1]);
+                     return null;
+                  default:
+                     throw new UnsupportedOperationException(method.getName());
+                  }
+               });
+   }
+
+   private ContainerResponseContext createResponse(Object entity)
+   {
+      return (ContainerResponseContext) Proxy.newProxyInstance(getClass().getClassLoader(),
+               new Class<?>[] { ContainerResponseContext.class }, (proxy, method, args) -> {
+                  if ("getEntity".equals(method.getName()))
+                  {
+                     return entity;
+                  }
+                  throw new UnsupportedOperationException(method.getName());
+               });
+   }
+}
@@ -0,0 +1,129 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link ValidationDeltas}
+ */
+public class ValidationDeltasTest
+{
+   private final ValidationDeltas deltas = new ValidationDeltas(2);
+
+   @Test
+   public void firstResponseShouldBeFull()
+   {
+      JsonObject response = createResponse(true, "named", "demo", "groupId", "io.openshift");
+      JsonObject full = deltas.respond(response, null);
+      assertTrue(full.getBoolean(ValidationDeltas.FULL));
+      assertEquals(response.get("inputs"), full.get("inputs"));
+      assertEquals(response.get("valid"), full.get("valid"));
+      assertEquals(1, deltas.getFullResponses());
+   }
+
+   @Test
+   public void unchangedResponseShouldHaveTheDeltaShape()
+   {
+      String version = version(deltas.respond(createResponse(true, "named", "demo"), null));
+      JsonObject delta = deltas.respond(createResponse(true, "named", "demo"), version);
+      assertEquals(version, version(delta));
+      assertFalse(delta.getBoolean(ValidationDeltas.FULL));
+      assertEquals(0, delta.getJsonArray(ValidationDeltas.INPUTS).size());
+      assertEquals(0, delta.getJsonArray(ValidationDeltas.REMOVED_INPUTS).size());
+      assertEquals(0, delta.getJsonArray(ValidationDeltas.REMOVED).size());
+      assertEquals(5, delta.size());
+   }
+
+   @Test
+   public void changedAttributeShouldBeSent()
+   {
+      String version = version(deltas.respond(createResponse(true, "named", "demo"), null));
+      JsonObject delta = deltas.respond(createResponse(false, "named", "demo"), version);
+      assertFalse(version.equals(version(delta)));
+      assertFalse(delta.getBoolean("valid"));
+      assertEquals(0, delta.getJsonArray(ValidationDeltas.INPUTS).size());
+      assertEquals(6, delta.size());
+   }
+
+   @Test
+   public void inputChangesShouldBeSentByName()
+   {
+      String version = version(deltas.respond(createResponse(true, "named", "demo", "groupId", "io.openshift"), null));
+      JsonObject delta = deltas.respond(createResponse(true, "named", "other", "version", "1.0.0"), version);
+      // named changed, version was added and groupId removed
+      assertEquals(2, delta.getJsonArray(ValidationDeltas.INPUTS).size());
+      assertEquals(input("named", "other"), delta.getJsonArray(ValidationDeltas.INPUTS).get(0));
+      assertEquals(input("version", "1.0.0"), delta.getJsonArray(ValidationDeltas.INPUTS).get(1));
+      assertEquals(1, delta.getJsonArray(ValidationDeltas.REMOVED_INPUTS).size());
+      assertEquals("groupId", delta.getJsonArray(ValidationDeltas.REMOVED_INPUTS).getString(0));
+      assertFalse(delta.containsKey("valid"));
+   }
+
+   @Test
+   public void removedAttributeShouldBeListed()
+   {
+      JsonObject response = createResponse(true, "named", "demo");
+      String version = version(deltas.respond(Json.createObjectBuilder().add("messages", "none")
+               .add("valid", true).add("inputs", response.get("inputs")).build(), null));
+      JsonObject delta = deltas.respond(response, version);
+      assertEquals(1, delta.getJsonArray(ValidationDeltas.REMOVED).size());
+      assertEquals("messages", delta.getJsonArray(ValidationDeltas.REMOVED).getString(0));
+   }
+
+   @Test
+   public void unknownOrEvictedVersionShouldGetTheFullResponse()
+   {
+      assertTrue(deltas.respond(createResponse(true, "named", "demo"), "unknown").getBoolean(ValidationDeltas.FULL));
+      String evicted = version(deltas.respond(createResponse(true, "named", "first"), null));
+      deltas.respond(createResponse(true, "named", "second"), null);
+      deltas.respond(createResponse(true, "named", "third"), null);
+      assertEquals(2, deltas.size());
+      JsonObject response = deltas.respond(createResponse(true, "named", "first"), evicted);
+      assertTrue(response.getBoolean(ValidationDeltas.FULL));
+      assertEquals(createResponse(true, "named", "first").get("inputs"), response.get("inputs"));
+      assertEquals(5, deltas.getFullResponses());
+      assertEquals(0, deltas.getDeltas());
+   }
+
+   private static String version(JsonObject response)
+   {
+      return response.getString(ValidationDeltas.STATE_VERSION);
+   }
+
+   private static JsonObject createResponse(boolean valid, String... namesAndValues)
+   {
+      JsonArrayBuilder inputs = Json.createArrayBuilder();
+      for (int i = 0; i < namesAndValues.length; i += 2)
+      {
+         inputs.add(input(namesAndValues[i], namesAndValues[i + 1]));
+      }
+      return Json.createObjectBuilder().add("valid", valid).add("inputs", inputs).build();
+   }
+
+   private static JsonObject input(String name, String value)
+   {
+      return Json.createObjectBuilder().add("name", name).add("value", value).build();
+   }
+}
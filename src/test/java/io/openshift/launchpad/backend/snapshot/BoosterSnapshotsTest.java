@@ -0,0 +1,147 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.snapshot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Locale;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.openshift.launchpad.backend.util.Paths;
+
+/**
+ * Tests for {@link BoosterSnapshots}, with a generator that does not copy the project name verbatim everywhere
+ */
+public class BoosterSnapshotsTest
+{
+   private static final String COMMAND = "launchpad-new-project";
+
+   private Path workDir;
+   private BoosterSnapshots snapshots;
+
+   @Before
+   public void setup() throws IOException
+   {
+      workDir = Files.createTempDirectory("boosterSnapshotsTest");
+      snapshots = new BoosterSnapshots(workDir.resolve("snapshots"), Collections.singleton(COMMAND),
+               Collections.singletonList("named"), 10, Runnable::run);
+   }
+
+   @After
+   public void tearDown() throws IOException
+   {
+      Paths.deleteDirectory(workDir);
+   }
+
+   @Test
+   public void valuesLeftUnchangedByTheGeneratorShouldBeServedFromTheSnapshot() throws Exception
+   {
+      snapshots.record(COMMAND, content("demo"), BoosterSnapshotsTest::generate);
+      assertEquals(1, snapshots.getCount());
+
+      Path project = snapshots.materialize(COMMAND, content("other"), Files.createTempDirectory(workDir, "out"));
+      assertNotNull(project);
+      Path expected = generate(content("other"), Files.createTempDirectory(workDir, "expected"));
+      assertEquals(expected.getFileName(), project.getFileName());
+      assertEquals(read(expected.resolve("pom.xml")), read(project.resolve("pom.xml")));
+      assertEquals(read(expected.resolve("README.md")), read(project.resolve("README.md")));
+   }
+
+   @Test
+   public void valuesTransformedByTheGeneratorShouldNotBeServedFromTheSnapshot() throws Exception
+   {
+      snapshots.record(COMMAND, content("demo"), BoosterSnapshotsTest::generate);
+      for (String value : new String[] { "Demo", "a&b", "a<b", "demo-App" })
+      {
+         assertNull(value, snapshots.materialize(COMMAND, content(value), workDir));
+         // Lower casing or escaping the sentinels changes them, so the canary check fails
+         snapshots.record(COMMAND, content(value), BoosterSnapshotsTest::generate);
+         assertNull(value, snapshots.materialize(COMMAND, content(value), workDir));
+      }
+      assertEquals(1, snapshots.getCount());
+      assertEquals(4, snapshots.getUnsafeCount());
+   }
+
+   @Test
+   public void snapshotsShouldBeLoadedByTheNextRunOfTheSameVersion() throws Exception
+   {
+      Path outdated = Files.createDirectories(workDir.resolve("outdated"));
+      BoosterSnapshots recorded = new BoosterSnapshots(workDir.resolve("current"), Collections.singleton(COMMAND),
+               Collections.singletonList("named"), 10, Runnable::run);
+      recorded.record(COMMAND, content("demo"), BoosterSnapshotsTest::generate);
+      assertEquals(1, recorded.getCount());
+
+      BoosterSnapshots loaded = new BoosterSnapshots(workDir.resolve("current"), Collections.singleton(COMMAND),
+               Collections.singletonList("named"), 10, Runnable::run);
+      loaded.load();
+      assertEquals(1, loaded.getCount());
+      Path project = loaded.materialize(COMMAND, content("other"), Files.createTempDirectory(workDir, "out"));
+      assertNotNull(project);
+      assertEquals("<artifactId>other</artifactId>\n", read(project.resolve("pom.xml")));
+      assertFalse(Files.exists(outdated));
+   }
+
+   @Test
+   public void valuesWithSpacesShouldNotBeSnapshotted() throws Exception
+   {
+      snapshots.record(COMMAND, content("my app"), BoosterSnapshotsTest::generate);
+      assertEquals(0, snapshots.getCount());
+      assertEquals(0, snapshots.getUnsafeCount());
+      assertNull(snapshots.materialize(COMMAND, content("my app"), workDir));
+   }
+
+   /**
+    * Escapes the name in the pom and lower cases it in the README, as some boosters do
+    */
+   private static Path generate(JsonObject content, Path directory) throws IOException
+   {
+      String name = content.getJsonArray("inputs").getJsonObject(0).getString("value");
+      Path project = Files.createDirectories(directory.resolve(name));
+      Files.write(project.resolve("pom.xml"), ("<artifactId>" + name.replace("&", "&amp;").replace("<", "&lt;")
+               + "</artifactId>\n").getBytes(StandardCharsets.UTF_8));
+      Files.write(project.resolve("README.md"),
+               ("# " + name.toLowerCase(Locale.ENGLISH) + "\n").getBytes(StandardCharsets.UTF_8));
+      return project;
+   }
+
+   private static JsonObject content(String name)
+   {
+      return Json.createObjectBuilder()
+               .add("stepIndex", 1)
+               .add("inputs", Json.createArrayBuilder()
+                        .add(Json.createObjectBuilder().add("name", "named").add("value", name)))
+               .build();
+   }
+
+   private static String read(Path file) throws IOException
+   {
+      return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+   }
+}
@@ -0,0 +1,134 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.snapshot;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.openshift.launchpad.backend.util.Paths;
+
+/**
+ * Tests for {@link Snapshot}
+ */
+public class SnapshotTest
+{
+   private static final byte[] BINARY = { 0, (byte) 0xFF, 'P', 'K', 3, 4 };
+
+   private Path workDir;
+
+   @Before
+   public void setup() throws IOException
+   {
+      workDir = Files.createTempDirectory("snapshotTest");
+   }
+
+   @After
+   public void tearDown() throws IOException
+   {
+      Paths.deleteDirectory(workDir);
+   }
+
+   @Test
+   public void materializedSnapshotShouldMatchTheGeneratedProject() throws IOException
+   {
+      Path template = Files.createDirectories(workDir.resolve("template"));
+      Path canary = Files.createDirectories(workDir.resolve("canary"));
+      Path expected = Files.createDirectories(workDir.resolve("expected"));
+      generate(template, "sentinel", "sen.tinel", "");
+      generate(canary, "canary", "can.ary", "");
+      generate(expected, "demo", "io.openshift", "");
+
+      Snapshot snapshot = Snapshot.capture(template, template.resolve("sentinel"),
+               values("sentinel", "sen.tinel", "sentinel", "sen.tinel"));
+      assertTrue(snapshot.matches(canary, canary.resolve("canary"),
+               values("sentinel", "sen.tinel", "canary", "can.ary")));
+
+      Path file = workDir.resolve("booster.snapshot");
+      snapshot.write(file);
+      Path target = Files.createDirectories(workDir.resolve("target"));
+      Path project = Snapshot.load(file).materialize(target, values("sentinel", "sen.tinel", "demo", "io.openshift"));
+      assertEquals(target.resolve("demo"), project);
+      assertTrue(Snapshot.capture(target, project, values("demo", "io.openshift", "demo", "io.openshift"))
+               .matches(expected, expected.resolve("demo"), new Substitution(new HashMap<>())));
+      assertArrayEquals(BINARY, Files.readAllBytes(project.resolve("src/main/resources/favicon.ico")));
+      assertTrue(Files.isExecutable(project.resolve("mvnw")));
+   }
+
+   @Test
+   public void outputNotDerivedVerbatimFromTheInputsShouldNotMatch() throws IOException
+   {
+      Path template = Files.createDirectories(workDir.resolve("template"));
+      Path canary = Files.createDirectories(workDir.resolve("canary"));
+      // The name is also capitalized in the README
+      generate(template, "sentinel", "sen.tinel", "# Sentinel\n");
+      generate(canary, "canary", "can.ary", "# Canary\n");
+
+      Snapshot snapshot = Snapshot.capture(template, template.resolve("sentinel"),
+               values("sentinel", "sen.tinel", "sentinel", "sen.tinel"));
+      assertFalse(snapshot.matches(canary, canary.resolve("canary"),
+               values("sentinel", "sen.tinel", "canary", "can.ary")));
+   }
+
+   /**
+    * Writes a project the way a booster would, with the package directories derived from the group id
+    */
+   private static void generate(Path directory, String name, String groupId, String readme) throws IOException
+   {
+      Path project = Files.createDirectories(directory.resolve(name));
+      write(project.resolve("pom.xml"), "<groupId>" + groupId + "</groupId>\n<artifactId>" + name
+               + "</artifactId>\n");
+      write(project.resolve("README.md"), readme);
+      write(project.resolve("mvnw"), "#!/bin/sh\n");
+      project.resolve("mvnw").toFile().setExecutable(true);
+      write(project.resolve("src/main/java/" + groupId.replace('.', '/') + "/Application.java"),
+               "package " + groupId + ";\n");
+      Files.createDirectories(project.resolve("src/main/resources"));
+      Files.write(project.resolve("src/main/resources/favicon.ico"), BINARY);
+      Files.createDirectories(project.resolve("src/test/java"));
+   }
+
+   private static void write(Path file, String content) throws IOException
+   {
+      Files.createDirectories(file.getParent());
+      Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+   }
+
+   private static Substitution values(String fromName, String fromGroupId, String name, String groupId)
+   {
+      Map<String, String> replacements = new HashMap<>();
+      replacements.put(fromName, name);
+      String[] fromSegments = fromGroupId.split("\\.");
+      String[] segments = groupId.split("\\.");
+      for (int i = 0; i < segments.length; i++)
+      {
+         replacements.put(fromSegments[i], segments[i]);
+      }
+      return new Substitution(replacements);
+   }
+}
@@ -0,0 +1,79 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests for {@link Coalescer}
+ */
+public class CoalescerTest
+{
+   private final Coalescer<Object> coalescer = new Coalescer<>();
+   private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+   @After
+   public void tearDown()
+   {
+      executor.shutdownNow();
+   }
+
+   @Test
+   public void identicalComputationsInFlightShouldRunOnce() throws Exception
+   {
+      AtomicInteger computations = new AtomicInteger();
+      CountDownLatch started = new CountDownLatch(1);
+      CountDownLatch release = new CountDownLatch(1);
+      Object result = new Object();
+      Future<Object> first = executor.submit(() -> coalescer.get("key", () -> {
+         computations.incrementAndGet();
+         started.countDown();
+         release.await();
+         return result;
+      }));
+      assertTrue(started.await(5, TimeUnit.SECONDS));
+      Future<Object> second = executor.submit(() -> coalescer.get("key", () -> {
+         computations.incrementAndGet();
+         return new Object();
+      }));
+      // The second caller waits for the first computation
+      while (coalescer.getCoalesced() == 0)
+      {
+         Thread.sleep(1);
+      }
+      release.countDown();
+      assertSame(result, first.get(5, TimeUnit.SECONDS));
+      assertSame(result, second.get(5, TimeUnit.SECONDS));
+      assertEquals(1, computations.get());
+      assertEquals(0, coalescer.getInFlight());
+
+      // Done computations are not reused
+      assertEquals("again", coalescer.get("key", () -> "again"));
+      assertEquals(1, coalescer.getCoalesced());
+   }
+}
@@ -0,0 +1,160 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ParallelZip}
+ */
+public class ParallelZipTest
+{
+   private final ForkJoinPool pool = new ForkJoinPool(4);
+
+   private Path workDir;
+
+   @Before
+   public void setup() throws IOException
+   {
+      workDir = Files.createTempDirectory("parallelZipTest");
+   }
+
+   @After
+   public void tearDown() throws IOException
+   {
+      pool.shutdown();
+      Paths.deleteDirectory(workDir);
+   }
+
+   @Test
+   public void archiveShouldBeReadableByStandardReaders() throws IOException
+   {
+      Path project = Files.createDirectories(workDir.resolve("project"));
+      Map<String, byte[]> files = new HashMap<>();
+      Random random = new Random(42);
+      // Stored because of its size
+      files.put("README.md", "# Demo\n".getBytes(StandardCharsets.UTF_8));
+      // Deflated
+      StringBuilder source = new StringBuilder();
+      for (int i = 0; i < 2000; i++)
+      {
+         source.append("   private final String field").append(i).append(" = \"value\";\n");
+      }
+      files.put("src/main/java/Demo.java", source.toString().getBytes(StandardCharsets.UTF_8));
+      // Stored because it does not compress
+      byte[] binary = new byte[64 * 1024];
+      random.nextBytes(binary);
+      files.put("src/main/resources/favicon.ico", binary);
+      // Streamed
+      byte[] large = new byte[ParallelZip.MAX_BUFFERED_SIZE + 1];
+      random.nextBytes(large);
+      files.put("lib/large.jar", large);
+      files.put("empty.txt", new byte[0]);
+      for (Map.Entry<String, byte[]> file : files.entrySet())
+      {
+         Path path = project.resolve(file.getKey());
+         Files.createDirectories(path.getParent());
+         Files.write(path, file.getValue());
+      }
+
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      new ParallelZip(Deflater.DEFAULT_COMPRESSION, 512, pool).zip("demo", project, baos);
+      byte[] zip = baos.toByteArray();
+
+      Map<String, byte[]> fromStream = new HashMap<>();
+      try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(zip)))
+      {
+         ZipEntry entry;
+         while ((entry = zis.getNextEntry()) != null)
+         {
+            if (!entry.isDirectory())
+            {
+               fromStream.put(entry.getName(), readAll(zis));
+            }
+         }
+      }
+      Path archive = workDir.resolve("demo.zip");
+      Files.write(archive, zip);
+      Map<String, byte[]> fromFile = new HashMap<>();
+      try (ZipFile zipFile = new ZipFile(archive.toFile()))
+      {
+         Enumeration<? extends ZipEntry> entries = zipFile.entries();
+         while (entries.hasMoreElements())
+         {
+            ZipEntry entry = entries.nextElement();
+            if (entry.isDirectory())
+            {
+               assertTrue(entry.getName().startsWith("demo/"));
+               continue;
+            }
+            try (InputStream is = zipFile.getInputStream(entry))
+            {
+               fromFile.put(entry.getName(), readAll(is));
+            }
+            if (entry.getName().endsWith("Demo.java"))
+            {
+               assertEquals(ZipEntry.DEFLATED, entry.getMethod());
+            }
+            else if (!entry.getName().endsWith("large.jar"))
+            {
+               assertEquals(entry.getName(), ZipEntry.STORED, entry.getMethod());
+            }
+         }
+      }
+      assertEquals(files.size(), fromStream.size());
+      assertEquals(files.size(), fromFile.size());
+      for (Map.Entry<String, byte[]> file : files.entrySet())
+      {
+         assertArrayEquals(file.getKey(), file.getValue(), fromStream.get("demo/" + file.getKey()));
+         assertArrayEquals(file.getKey(), file.getValue(), fromFile.get("demo/" + file.getKey()));
+      }
+   }
+
+   private static byte[] readAll(InputStream is) throws IOException
+   {
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = is.read(buffer)) > 0)
+      {
+         os.write(buffer, 0, read);
+      }
+      return os.toByteArray();
+   }
+}
@@ -0,0 +1,159 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link Paths}
+ */
+public class PathsTest
+{
+   private static final int FILE_COUNT = 8;
+
+   private Path workDir;
+
+   @Before
+   public void setup() throws IOException
+   {
+      workDir = Files.createTempDirectory("pathsTest");
+   }
+
+   @After
+   public void tearDown() throws IOException
+   {
+      Paths.deleteDirectory(workDir);
+   }
+
+   @Test
+   public void zipShouldContainEveryFile() throws IOException
+   {
+      Path project = createProject("small", 1024);
+      byte[] zip = Paths.zip("demo", project);
+      Set<String> entries = new HashSet<>();
+      try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(zip)))
+      {
+         ZipEntry entry;
+         while ((entry = zis.getNextEntry()) != null)
+         {
+            entries.add(entry.getName());
+         }
+      }
+      for (int i = 0; i < FILE_COUNT; i++)
+      {
+         assertTrue(entries.contains("demo/src/File" + i + ".java"));
+      }
+   }
+
+   @Test
+   public void streamingZipShouldNotBufferTheArchive() throws IOException
+   {
+      java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+      assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+      com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+      assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+      threadBean.setThreadAllocatedMemoryEnabled(true);
+
+      int smallFileSize = 512 * 1024;
+      int largeFileSize = 8 * smallFileSize;
+      Path small = createProject("small", smallFileSize);
+      Path large = createProject("large", largeFileSize);
+
+      // Warm up
+      zipToNowhere(threadBean, small);
+      long smallAllocated = zipToNowhere(threadBean, small);
+      long largeAllocated = zipToNowhere(threadBean, large);
+
+      long projectGrowth = (long) FILE_COUNT * (largeFileSize - smallFileSize);
+      assertTrue("Allocation grew by " + (largeAllocated - smallAllocated) + " bytes for a project "
+               + projectGrowth + " bytes larger", largeAllocated - smallAllocated < projectGrowth / 8);
+   }
+
+   private long zipToNowhere(com.sun.management.ThreadMXBean threadBean, Path project) throws IOException
+   {
+      CountingOutputStream os = new CountingOutputStream();
+      long before = allocatedBytes(threadBean);
+      Paths.zip("demo", project, os);
+      long allocated = allocatedBytes(threadBean) - before;
+      assertTrue(os.count > 0);
+      return allocated;
+   }
+
+   /**
+    * @return the bytes allocated by every live thread, as the files are read and compressed on the pool threads
+    */
+   private static long allocatedBytes(com.sun.management.ThreadMXBean threadBean)
+   {
+      long total = 0;
+      for (long allocated : threadBean.getThreadAllocatedBytes(threadBean.getAllThreadIds()))
+      {
+         if (allocated > 0)
+         {
+            total += allocated;
+         }
+      }
+      return total;
+   }
+
+   private Path createProject(String name, int fileSize) throws IOException
+   {
+      Path src = Files.createDirectories(workDir.resolve(name).resolve("src"));
+      Random random = new Random(fileSize);
+      byte[] content = new byte[fileSize];
+      for (int i = 0; i < FILE_COUNT; i++)
+      {
+         random.nextBytes(content);
+         Files.write(src.resolve("File" + i + ".java"), content);
+      }
+      assertEquals(FILE_COUNT, src.toFile().list().length);
+      return src.getParent();
+   }
+
+   private static class CountingOutputStream extends OutputStream
+   {
+      long count;
+
+      @Override
+      public void write(int b)
+      {
+         count++;
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len)
+      {
+         count += len;
+      }
+   }
+}
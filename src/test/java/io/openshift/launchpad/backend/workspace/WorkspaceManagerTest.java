@@ -0,0 +1,227 @@
+/**
+ *  Copyright 2005-2015 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.openshift.launchpad.backend.workspace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.openshift.launchpad.backend.cleanup.DirectoryReaper;
+import io.openshift.launchpad.backend.util.Paths;
+
+/**
+ * Tests for {@link WorkspaceManager}
+ */
+public class WorkspaceManagerTest
+{
+   private Path volume;
+
+   @Before
+   public void setup() throws IOException
+   {
+      volume = Files.createTempDirectory("workspaceManagerTest");
+   }
+
+   @After
+   public void tearDown() throws IOException
+   {
+      Paths.deleteDirectory(volume);
+   }
+
+   @Test
+   public void workspacesShouldBeTakenFromThePoolUntilTheQuotaIsUsedUp() throws IOException
+   {
+      WorkspaceManager manager = new WorkspaceManager(volume, 2, 3100, 0, false, volume, 0, 1000);
+      manager.init();
+      assertTrue(Files.isDirectory(manager.getRoot()));
+      assertEquals(2, manager.getIdleCount());
+
+      Workspace first = manager.create();
+      Workspace second = manager.create();
+      assertEquals(2, manager.getRecycled());
+      assertEquals(0, manager.getIdleCount());
+      Workspace third = manager.create();
+      assertNotNull(third.getPath());
+      assertEquals(3000, manager.getReservedDisk());
+      assertFalse(manager.isReady());
+      try
+      {
+         manager.create();
+         fail("The quota should be used up");
+      }
+      catch (WorkspaceQuotaExceededException e)
+      {
+         assertEquals(1, manager.getRejected());
+      }
+
+      // Measuring a project releases the unused part of its reservation
+      Files.write(first.getPath().resolve("pom.xml"), new byte[100]);
+      first.checkSize(first.getPath());
+      assertEquals(2100, manager.getReservedDisk());
+      assertTrue(manager.isReady());
+      assertNotNull(manager.create());
+      assertNotNull(second);
+   }
+
+   @Test
+   public void memoryWorkspacesShouldMoveToDiskWhenFullOrTooLarge() throws IOException
+   {
+      Path memory = Files.createDirectory(volume.resolve("shm"));
+      WorkspaceManager manager = createMemoryManager(memory, 2000);
+      Workspace first = manager.create();
+      Workspace second = manager.create();
+      assertTrue(first.isInMemory());
+      assertTrue(first.getPath().startsWith(memory));
+      assertEquals(2000, manager.getReservedMemory());
+      // The memory budget is used up
+      Workspace third = manager.create();
+      assertFalse(third.isInMemory());
+      assertEquals(1000, manager.getReservedDisk());
+
+      Path memoryPath = first.getPath();
+      Path project = Files.createDirectory(memoryPath.resolve("demo"));
+      Files.write(project.resolve("pom.xml"), new byte[1500]);
+      Path moved = first.checkSize(project);
+      assertFalse(first.isInMemory());
+      assertEquals(first.getPath().resolve("demo"), moved);
+      assertEquals(1500, Files.size(moved.resolve("pom.xml")));
+      assertFalse(Files.exists(memoryPath));
+      assertEquals(1000, manager.getReservedMemory());
+      assertEquals(2500, manager.getReservedDisk());
+      assertEquals(1, manager.getMovedToDisk());
+
+      first.delete();
+      second.delete();
+      third.delete();
+      assertEquals(0, manager.getReservedMemory());
+      assertEquals(0, manager.getReservedDisk());
+   }
+
+   @Test
+   public void generationShouldStartOverOnDisk() throws IOException
+   {
+      Path memory = Files.createDirectory(volume.resolve("shm"));
+      WorkspaceManager manager = createMemoryManager(memory, 2000);
+      Workspace workspace = manager.create();
+      Path memoryPath = workspace.getPath();
+      Files.write(memoryPath.resolve("pom.xml"), new byte[100]);
+
+      workspace.retryOnDisk();
+      assertFalse(workspace.isInMemory());
+      assertFalse(Files.exists(memoryPath));
+      assertTrue(Files.isDirectory(workspace.getPath()));
+      assertFalse(Files.exists(workspace.getPath().resolve("pom.xml")));
+      assertEquals(0, manager.getReservedMemory());
+      assertEquals(1000, manager.getReservedDisk());
+      assertEquals(1, manager.getRetriedOnDisk());
+
+      workspace.delete();
+      assertEquals(0, manager.getReservedDisk());
+   }
+
+   @Test
+   public void memoryBudgetShouldNotExceedTheVolume() throws IOException
+   {
+      Path memory = Files.createDirectory(volume.resolve("shm"));
+      WorkspaceManager manager = createMemoryManager(memory, Long.MAX_VALUE);
+      assertTrue(manager.getMaxMemory() <= Files.getFileStore(memory).getTotalSpace());
+   }
+
+   @Test
+   public void movingToDiskShouldRespectTheQuota() throws IOException
+   {
+      Path memory = Files.createDirectory(volume.resolve("shm"));
+      WorkspaceManager manager = createMemoryManager(memory, 1000, 2000);
+      Workspace workspace = manager.create();
+      Workspace onDisk = manager.createOnDisk();
+      Path project = Files.createDirectory(workspace.getPath().resolve("demo"));
+      Files.write(project.resolve("pom.xml"), new byte[1500]);
+      try
+      {
+         workspace.checkSize(project);
+         fail("The quota should be used up");
+      }
+      catch (WorkspaceQuotaExceededException e)
+      {
+         assertTrue(workspace.isInMemory());
+         assertEquals(1000, manager.getReservedDisk());
+         assertEquals(1, manager.getRejected());
+      }
+      workspace.delete();
+      onDisk.delete();
+      assertEquals(0, manager.getReservedMemory());
+      assertEquals(0, manager.getReservedDisk());
+   }
+
+   @Test
+   public void reservationShouldBeReleasedWhenEmptyingFails() throws IOException
+   {
+      WorkspaceManager manager = new WorkspaceManager(volume, 1, 0, 0, false, null, 0, 1000);
+      manager.directoryReaper = new DirectoryReaper()
+      {
+         @Override
+         public void empty(Path directory, Runnable onEmptied, Runnable onFailed)
+         {
+            onFailed.run();
+         }
+      };
+      manager.init();
+      Workspace workspace = manager.create();
+      assertEquals(1000, manager.getReservedDisk());
+      workspace.delete();
+      assertEquals(0, manager.getReservedDisk());
+   }
+
+   private WorkspaceManager createMemoryManager(Path memory, long maxMemory)
+   {
+      return createMemoryManager(memory, maxMemory, 0);
+   }
+
+   private WorkspaceManager createMemoryManager(Path memory, long maxMemory, long quota)
+   {
+      WorkspaceManager manager = new WorkspaceManager(volume, 0, quota, 0, true, memory, maxMemory, 1000);
+      // Empties the disk workspaces right away
+      manager.directoryReaper = new DirectoryReaper()
+      {
+         @Override
+         public void empty(Path directory, Runnable onEmptied, Runnable onFailed)
+         {
+            try
+            {
+               Paths.deleteDirectory(directory);
+            }
+            catch (IOException e)
+            {
+               throw new UncheckedIOException(e);
+            }
+            onEmptied.run();
+         }
+      };
+      manager.init();
+      return manager;
+   }
+}